@@ -0,0 +1,25 @@
+// A heap whose elements can be addressed after insertion, through the Handle returned
+// by insert(). Handles allow changing the priority of an element or deleting it without
+// searching for it, and two heaps of the same kind can be melded into one.
+
+// Methods (in addition to those of "Heap.java"):
+// insert(element)             --> handle  : adds element and returns a handle to it
+// decreaseKey(handle, value)  --> void    : replaces the element of handle by a value that is not greater
+// delete(handle)              --> void    : removes the element of handle
+// meld(other)                 --> void    : moves all elements of other into this heap; other becomes empty.
+//                                           Handles of other's elements stay valid and now belong to this heap.
+// decreaseKey and delete throw IllegalArgumentException for a handle of a removed element or of another heap.
+
+interface AddressableHeap<T> extends Heap<T> {
+    interface Handle<T> {
+        T getValue();
+    }
+
+    Handle<T> insert(T elem);
+
+    void decreaseKey(Handle<T> handle, T newValue);
+
+    void delete(Handle<T> handle);
+
+    void meld(AddressableHeap<T> other);
+}
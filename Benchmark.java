@@ -0,0 +1,505 @@
+// This program benchmarks the core operations of every structure in this repository against
+// its java.util equivalent, so that regressions show up as numbers instead of impressions.
+
+// to run, execute the following command (needs every other .java file of the repository):
+
+// javac *.java; java -Xmx16g Benchmark [maxSize] [filter]
+
+// Sizes go from 10^2 up to maxSize (default 10^6, at most 10^9) in powers of 10; 10^8
+// elements need a large heap, hence the -Xmx. Only cases whose name contains 'filter' are run (e.g.
+// "Stack" or "append"). Cases whose cost grows faster than linearly are capped at a
+// smaller size, and are reported as skipped above it.
+
+// For every case and size, the input is prepared outside of the measurement (as is the
+// fresh structure of cases that need a new one per run, like the union-find ones), the
+// case is run a few times as warm-up (small sizes only), and the best of the measured runs
+// is reported as:
+//    ops/ms      --> operations per millisecond
+//    bytes/op    --> bytes allocated per operation by the benchmark thread, from
+//                    com.sun.management.ThreadMXBean (n/a on JVMs without it)
+// Each case returns a checksum that is printed at the end, so the JIT cannot drop the work.
+
+// This harness needs nothing but a JDK. The JMH benchmarks in benchmarks/ (run with
+// "gradle :benchmarks:jmh") measure the same operations with forking, proper warm-up and
+// the gc profiler.
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+class Benchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+    private static final long MAX_SIZE = 1_000_000_000; // largest power of 10 that fits an array
+    private static final int LARGE_SIZE = 10_000_000; // no warm-up and a single run from here on
+    private static final int SAMPLED_OPS = 1_000; // operations per run for the O(n) per-operation cases
+
+    // prepares the input for size n (not measured) and returns the measured part
+    private interface Operation {
+        LongSupplier prepare(int n);
+    }
+
+    // a measured part that needs fresh state for every run, e.g. a new UnionFind:
+    // setup() builds it before each run, outside of the measurement
+    private interface Stateful extends LongSupplier {
+        void setup();
+    }
+
+    // counts the operations of one run for size n
+    private interface OpCount {
+        long of(int n);
+    }
+
+    private static class Case {
+        private final String name;
+        private final int maxSize;
+        private final OpCount ops;
+        private final Operation operation;
+
+        private Case(String name, int maxSize, OpCount ops, Operation operation) {
+            this.name = name;
+            this.maxSize = maxSize;
+            this.ops = ops;
+            this.operation = operation;
+        }
+    }
+
+    private static final List<Case> CASES = new ArrayList<>();
+    private static Integer[] elements = new Integer[0]; // random elements of the current size
+    private static long checksum;
+
+    private static void add(String name, int maxSize, OpCount ops, Operation operation) {
+        CASES.add(new Case(name, maxSize, ops, operation));
+    }
+
+    private static int[] randomInts(int count, int bound, long seed) {
+        Random random = new Random(seed);
+        int[] ints = new int[count];
+        for (int i = 0; i < count; i++) {
+            ints[i] = random.nextInt(bound);
+        }
+        return ints;
+    }
+
+    static {
+        // DynamicArray vs ArrayList
+        add("DynamicArray.append", Integer.MAX_VALUE, n -> n, n -> () -> {
+            DynamicArray<Integer> da = new DynamicArray<>();
+            for (int i = 0; i < n; i++) {
+                da.append(elements[i]);
+            }
+            return da.getSize();
+        });
+        add("ArrayList.add", Integer.MAX_VALUE, n -> n, n -> () -> {
+            ArrayList<Integer> list = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                list.add(elements[i]);
+            }
+            return list.size();
+        });
+        add("DynamicArray.insertAt", 1_000_000, n -> 2L * SAMPLED_OPS, n -> {
+            DynamicArray<Integer> da = new DynamicArray<>();
+            for (int i = 0; i < n; i++) {
+                da.append(elements[i]);
+            }
+            return () -> {
+                for (int i = 0; i < SAMPLED_OPS; i++) {
+                    da.insertAt(n / 2, elements[i % n]);
+                }
+                for (int i = 0; i < SAMPLED_OPS; i++) { // restore the size for the next run
+                    da.deleteAt(n / 2);
+                }
+                return n;
+            };
+        });
+        add("ArrayList.add(index)", 1_000_000, n -> 2L * SAMPLED_OPS, n -> {
+            ArrayList<Integer> list = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                list.add(elements[i]);
+            }
+            return () -> {
+                for (int i = 0; i < SAMPLED_OPS; i++) {
+                    list.add(n / 2, elements[i % n]);
+                }
+                for (int i = 0; i < SAMPLED_OPS; i++) {
+                    list.remove(n / 2);
+                }
+                return list.size();
+            };
+        });
+        add("DynamicArray.iterate", Integer.MAX_VALUE, n -> n, n -> {
+            DynamicArray<Integer> da = new DynamicArray<>();
+            for (int i = 0; i < n; i++) {
+                da.append(elements[i]);
+            }
+            return () -> {
+                long sum = 0;
+                for (Integer elem : da) {
+                    sum += elem;
+                }
+                return sum;
+            };
+        });
+        add("ArrayList.iterate", Integer.MAX_VALUE, n -> n, n -> {
+            ArrayList<Integer> list = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                list.add(elements[i]);
+            }
+            return () -> {
+                long sum = 0;
+                for (Integer elem : list) {
+                    sum += elem;
+                }
+                return sum;
+            };
+        });
+
+        // compressed arrays vs DynamicArray<Long>, over sorted ids with gaps of 1 to 16
+        add("DynamicArray<Long>.iterate ids", Integer.MAX_VALUE, n -> n, n -> {
+            DynamicArray<Long> da = new DynamicArray<>();
+            long id = 0;
+            for (int i = 0; i < n; i++) {
+                id += 1 + (elements[i] & 15);
+                da.append(id);
+            }
+            return () -> {
+                long sum = 0;
+                for (Long elem : da) {
+                    sum += elem;
+                }
+                return sum;
+            };
+        });
+        add("BitPackedArray.iterate ids", Integer.MAX_VALUE, n -> n, n -> {
+            BitPackedArray ary = new BitPackedArray();
+            long id = 0;
+            for (int i = 0; i < n; i++) {
+                id += 1 + (elements[i] & 15);
+                ary.append(id);
+            }
+            return () -> {
+                long sum = 0;
+                java.util.PrimitiveIterator.OfLong itr = ary.iterator();
+                while (itr.hasNext()) {
+                    sum += itr.nextLong();
+                }
+                return sum;
+            };
+        });
+        add("DeltaEncodedArray.iterate ids", Integer.MAX_VALUE, n -> n, n -> {
+            DeltaEncodedArray ary = new DeltaEncodedArray();
+            long id = 0;
+            for (int i = 0; i < n; i++) {
+                id += 1 + (elements[i] & 15);
+                ary.append(id);
+            }
+            return () -> {
+                long sum = 0;
+                java.util.PrimitiveIterator.OfLong itr = ary.iterator();
+                while (itr.hasNext()) {
+                    sum += itr.nextLong();
+                }
+                return sum;
+            };
+        });
+        add("DeltaEncodedArray.binarySearch ids", Integer.MAX_VALUE, n -> SAMPLED_OPS, n -> {
+            DeltaEncodedArray ary = new DeltaEncodedArray();
+            long id = 0;
+            for (int i = 0; i < n; i++) {
+                id += 1 + (elements[i] & 15);
+                ary.append(id);
+            }
+            long maxId = id;
+            return () -> {
+                long sum = 0;
+                for (int i = 0; i < SAMPLED_OPS; i++) {
+                    sum += ary.binarySearch((elements[i % n] & Long.MAX_VALUE) % (maxId + 1));
+                }
+                return sum;
+            };
+        });
+
+        // DoublyLinkedList vs LinkedList
+        add("DoublyLinkedList.append", Integer.MAX_VALUE, n -> n, n -> () -> {
+            DoublyLinkedList<Integer> dll = new DoublyLinkedList<>();
+            for (int i = 0; i < n; i++) {
+                dll.append(elements[i]);
+            }
+            return dll.getSize();
+        });
+        add("LinkedList.add", Integer.MAX_VALUE, n -> n, n -> () -> {
+            LinkedList<Integer> list = new LinkedList<>();
+            for (int i = 0; i < n; i++) {
+                list.add(elements[i]);
+            }
+            return list.size();
+        });
+        add("DoublyLinkedList.iterate", Integer.MAX_VALUE, n -> n, n -> {
+            DoublyLinkedList<Integer> dll = new DoublyLinkedList<>();
+            for (int i = 0; i < n; i++) {
+                dll.append(elements[i]);
+            }
+            return () -> {
+                long sum = 0;
+                for (Integer elem : dll) {
+                    sum += elem;
+                }
+                return sum;
+            };
+        });
+        add("LinkedList.iterate", Integer.MAX_VALUE, n -> n, n -> {
+            LinkedList<Integer> list = new LinkedList<>();
+            for (int i = 0; i < n; i++) {
+                list.add(elements[i]);
+            }
+            return () -> {
+                long sum = 0;
+                for (Integer elem : list) {
+                    sum += elem;
+                }
+                return sum;
+            };
+        });
+
+        // Queue and Stack vs ArrayDeque
+        add("Queue.enqueue+dequeue", Integer.MAX_VALUE, n -> 2L * n, n -> () -> {
+            Queue<Integer> queue = new Queue<>();
+            for (int i = 0; i < n; i++) {
+                queue.enqueue(elements[i]);
+            }
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += queue.dequeue();
+            }
+            return sum;
+        });
+        add("ArrayDeque.offer+poll", Integer.MAX_VALUE, n -> 2L * n, n -> () -> {
+            ArrayDeque<Integer> deque = new ArrayDeque<>();
+            for (int i = 0; i < n; i++) {
+                deque.offer(elements[i]);
+            }
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += deque.poll();
+            }
+            return sum;
+        });
+        add("Stack.push+pop", Integer.MAX_VALUE, n -> 2L * n, n -> () -> {
+            Stack<Integer> stack = new Stack<>();
+            for (int i = 0; i < n; i++) {
+                stack.push(elements[i]);
+            }
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += stack.pop();
+            }
+            return sum;
+        });
+        add("ArrayDeque.push+pop", Integer.MAX_VALUE, n -> 2L * n, n -> () -> {
+            ArrayDeque<Integer> deque = new ArrayDeque<>();
+            for (int i = 0; i < n; i++) {
+                deque.push(elements[i]);
+            }
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += deque.pop();
+            }
+            return sum;
+        });
+
+        // heaps vs java.util.PriorityQueue
+        add("PriorityQueue.add+poll", Integer.MAX_VALUE, n -> 2L * n, n -> () -> {
+            PriorityQueue<Integer> pq = PriorityQueue.create();
+            for (int i = 0; i < n; i++) {
+                pq.add(elements[i]);
+            }
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += pq.poll();
+            }
+            return sum;
+        });
+        add("PriorityQueueQuickRemoval.add+poll", Integer.MAX_VALUE, n -> 2L * n, n -> () -> {
+            PriorityQueueQuickRemoval<Integer> pq = new PriorityQueueQuickRemoval<>();
+            for (int i = 0; i < n; i++) {
+                pq.add(elements[i]);
+            }
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += pq.poll();
+            }
+            return sum;
+        });
+        add("java.util.PriorityQueue.add+poll", Integer.MAX_VALUE, n -> 2L * n, n -> () -> {
+            java.util.PriorityQueue<Integer> pq = new java.util.PriorityQueue<>();
+            for (int i = 0; i < n; i++) {
+                pq.add(elements[i]);
+            }
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += pq.poll();
+            }
+            return sum;
+        });
+        add("PriorityQueueQuickRemoval.remove", Integer.MAX_VALUE, n -> 2L * Math.min(n, SAMPLED_OPS), n -> {
+            PriorityQueueQuickRemoval<Integer> pq = new PriorityQueueQuickRemoval<>(java.util.Arrays.copyOf(elements, n));
+            int[] victims = randomInts(Math.min(n, SAMPLED_OPS), n, n);
+            return () -> {
+                for (int index : victims) {
+                    pq.remove(elements[index]);
+                }
+                for (int index : victims) { // put them back for the next run
+                    pq.add(elements[index]);
+                }
+                return pq.getSize();
+            };
+        });
+        // java.util.PriorityQueue.remove(Object) is a linear search
+        add("java.util.PriorityQueue.remove", 1_000_000, n -> 2L * Math.min(n, SAMPLED_OPS), n -> {
+            java.util.PriorityQueue<Integer> pq = new java.util.PriorityQueue<>(java.util.Arrays.asList(elements).subList(0, n));
+            int[] victims = randomInts(Math.min(n, SAMPLED_OPS), n, n);
+            return () -> {
+                for (int index : victims) {
+                    pq.remove(elements[index]);
+                }
+                for (int index : victims) {
+                    pq.add(elements[index]);
+                }
+                return pq.size();
+            };
+        });
+
+        // union-find: there is no java.util equivalent, so the boxed-element UnionFind is
+        // compared with IntUnionFind on the same random unions
+        add("UnionFind.unify+find", 10_000_000, n -> 2L * n, n -> {
+            Set<Integer> set = new HashSet<>();
+            for (int i = 0; i < n; i++) {
+                set.add(i);
+            }
+            int[] ids = randomInts(2 * n, n, n);
+            Integer[] boxed = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                boxed[i] = i;
+            }
+            return new Stateful() {
+                private UnionFind<Integer> uf;
+
+                @Override
+                public void setup() {
+                    this.uf = new UnionFind<>(set);
+                }
+
+                @Override
+                public long getAsLong() {
+                    for (int i = 0; i < n; i++) {
+                        this.uf.unify(boxed[ids[2 * i]], boxed[ids[2 * i + 1]]);
+                    }
+                    long sum = 0;
+                    for (int i = 0; i < n; i++) {
+                        sum += this.uf.find(boxed[ids[i]]);
+                    }
+                    return sum;
+                }
+            };
+        });
+        add("IntUnionFind.unify+find", Integer.MAX_VALUE, n -> 2L * n, n -> {
+            int[] ids = randomInts(2 * n, n, n);
+            return new Stateful() {
+                private IntUnionFind uf;
+
+                @Override
+                public void setup() {
+                    this.uf = new IntUnionFind(n);
+                }
+
+                @Override
+                public long getAsLong() {
+                    for (int i = 0; i < n; i++) {
+                        this.uf.unify(ids[2 * i], ids[2 * i + 1]);
+                    }
+                    long sum = 0;
+                    for (int i = 0; i < n; i++) {
+                        sum += this.uf.find(ids[i]);
+                    }
+                    return sum;
+                }
+            };
+        });
+    }
+
+    private static void setup(LongSupplier run) {
+        if (run instanceof Stateful) {
+            ((Stateful) run).setup();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) {
+        long maxSize = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        String filter = args.length > 1 ? args[1] : "";
+        com.sun.management.ThreadMXBean allocation = allocationBean();
+        long threadId = Thread.currentThread().getId();
+
+        System.out.printf("%-36s %12s %14s %12s%n", "case", "size", "ops/ms", "bytes/op");
+        for (long size = 100; size <= Math.min(maxSize, MAX_SIZE); size *= 10) {
+            int n = (int) size;
+            Random random = new Random(n);
+            elements = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                elements[i] = random.nextInt();
+            }
+            int warmups = n >= LARGE_SIZE ? 0 : WARMUP_RUNS;
+            int runs = n >= LARGE_SIZE ? 1 : MEASURED_RUNS;
+
+            for (Case c : CASES) {
+                if (!c.name.contains(filter)) {
+                    continue;
+                }
+                if (n > c.maxSize) {
+                    System.out.printf("%-36s %12d %14s %12s%n", c.name, n, "skipped", "");
+                    continue;
+                }
+                LongSupplier run = c.operation.prepare(n);
+                for (int i = 0; i < warmups; i++) {
+                    setup(run);
+                    checksum += run.getAsLong();
+                }
+                long bestNanos = Long.MAX_VALUE;
+                long allocated = -1;
+                for (int i = 0; i < runs; i++) {
+                    setup(run);
+                    long bytesBefore = allocation == null ? 0 : allocation.getThreadAllocatedBytes(threadId);
+                    long start = System.nanoTime();
+                    checksum += run.getAsLong();
+                    long nanos = System.nanoTime() - start;
+                    long bytesAfter = allocation == null ? 0 : allocation.getThreadAllocatedBytes(threadId);
+                    if (nanos < bestNanos) {
+                        bestNanos = nanos;
+                        allocated = bytesAfter - bytesBefore;
+                    }
+                }
+                long ops = c.ops.of(n);
+                String bytesPerOp = allocation == null ? "n/a" : String.format("%.1f", (double) allocated / ops);
+                System.out.printf("%-36s %12d %14.1f %12s%n", c.name, n, ops / (bestNanos / 1e6), bytesPerOp);
+            }
+        }
+        System.out.println("checksum: " + checksum);
+    }
+}
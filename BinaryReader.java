@@ -0,0 +1,188 @@
+// Buffered reader of primitives and codec-encoded elements from a ReadableByteChannel
+// (e.g. a FileChannel), through one reusable ByteBuffer. Reads what "BinaryWriter.java" writes.
+
+// A buffered reader reads ahead, so it may consume bytes of the channel that belong to
+// whatever follows. An exact reader leaves the channel right after the last byte it
+// returned: on a SeekableByteChannel it still reads ahead, and finish() moves the channel
+// position back over the unread bytes; on other channels it only ever reads the bytes it
+// was asked for (one small read per value). To read several records from one channel,
+// either use exact readers one after the other, or share one buffered reader.
+
+// Public Methods:
+// getByte() / getInt() / getLong()  --> value
+// getElement(codec)                 --> element  : reads one [int length][encoded element]
+// getInts / getLongs / getDoubles(array, offset, length) --> void : bulk-copies a run of primitives
+// hasRemaining()                    --> boolean  : checks if at least one more byte can be read
+// getBytesRead()                    --> long     : bytes consumed so far
+// finish()                          --> void     : exact readers: gives the bytes read ahead back to the channel
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+class BinaryReader {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buf;
+    private long consumed; // bytes consumed so far
+    private final boolean exact;
+    private final boolean readAhead; // false only for exact readers of channels that cannot seek back
+
+    public BinaryReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE, false);
+    }
+
+    public BinaryReader(ReadableByteChannel channel, int bufferSize) {
+        this(channel, bufferSize, false);
+    }
+
+    public BinaryReader(ReadableByteChannel channel, boolean exact) {
+        this(channel, DEFAULT_BUFFER_SIZE, exact);
+    }
+
+    public BinaryReader(ReadableByteChannel channel, int bufferSize, boolean exact) {
+        this.channel = channel;
+        this.buf = ByteBuffer.allocateDirect(bufferSize);
+        this.buf.limit(0); // empty, in read mode
+        this.exact = exact;
+        this.readAhead = !exact || channel instanceof SeekableByteChannel;
+    }
+
+    // make sure at least n unread bytes are in the buffer. A buffer that is too small only
+    // grows (by doubling) once it is full, so a corrupt length in the input cannot allocate
+    // much more memory than the channel really holds.
+    private void ensure(int n) throws IOException {
+        if (this.buf.remaining() >= n) {
+            return;
+        }
+        this.buf.compact();
+        while (this.buf.position() < n) {
+            if (this.buf.position() == this.buf.capacity()) {
+                ByteBuffer bigger = ByteBuffer.allocateDirect((int) Math.min(n, 2L * this.buf.capacity()));
+                this.buf.flip();
+                bigger.put(this.buf);
+                this.buf = bigger;
+            }
+            // exact readers of channels that cannot seek back read no further than needed
+            this.buf.limit(this.readAhead ? this.buf.capacity() : Math.min(n, this.buf.capacity()));
+            if (this.channel.read(this.buf) == -1) {
+                this.buf.flip();
+                throw new EOFException("Expected " + n + " bytes, found " + this.buf.remaining());
+            }
+        }
+        this.buf.flip();
+    }
+
+    // upper bound of the bytes left to read: exact for a SeekableByteChannel, unknown otherwise
+    private long available() throws IOException {
+        if (this.channel instanceof SeekableByteChannel) {
+            SeekableByteChannel seekable = (SeekableByteChannel) this.channel;
+            return this.buf.remaining() + Math.max(0, seekable.size() - seekable.position());
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public boolean hasRemaining() throws IOException {
+        if (this.buf.hasRemaining()) {
+            return true;
+        }
+        this.buf.clear();
+        if (!this.readAhead) {
+            this.buf.limit(1);
+        }
+        int n = this.channel.read(this.buf);
+        this.buf.flip();
+        return n > 0;
+    }
+
+    public byte getByte() throws IOException {
+        this.ensure(1);
+        this.consumed++;
+        return this.buf.get();
+    }
+
+    public int getInt() throws IOException {
+        this.ensure(4);
+        this.consumed += 4;
+        return this.buf.getInt();
+    }
+
+    public long getLong() throws IOException {
+        this.ensure(8);
+        this.consumed += 8;
+        return this.buf.getLong();
+    }
+
+    public void getInts(int[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            this.ensure((int) Math.min(4L * length, this.buf.capacity() & ~7)); // the whole run if it fits
+            int n = Math.min(length, this.buf.remaining() / 4);
+            this.buf.asIntBuffer().get(values, offset, n);
+            this.buf.position(this.buf.position() + 4 * n);
+            this.consumed += 4L * n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public void getLongs(long[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            this.ensure((int) Math.min(8L * length, this.buf.capacity() & ~7));
+            int n = Math.min(length, this.buf.remaining() / 8);
+            this.buf.asLongBuffer().get(values, offset, n);
+            this.buf.position(this.buf.position() + 8 * n);
+            this.consumed += 8L * n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public void getDoubles(double[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            this.ensure((int) Math.min(8L * length, this.buf.capacity() & ~7));
+            int n = Math.min(length, this.buf.remaining() / 8);
+            this.buf.asDoubleBuffer().get(values, offset, n);
+            this.buf.position(this.buf.position() + 8 * n);
+            this.consumed += 8L * n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public <T> T getElement(Codec<T> codec) throws IOException {
+        int length = this.getInt();
+        if (length < 0 || length > this.available()) {
+            throw new IOException("Invalid element length " + length);
+        }
+        this.ensure(length);
+        int end = this.buf.position() + length;
+        int limit = this.buf.limit();
+        this.buf.limit(end);
+        T elem;
+        try {
+            elem = codec.decode(this.buf);
+        } catch (RuntimeException e) { // e.g. BufferUnderflowException: the bytes are not an element of codec
+            throw new IOException("Corrupt element of " + length + " bytes", e);
+        } finally {
+            this.buf.limit(limit);
+        }
+        this.buf.position(end);
+        this.consumed += length;
+        return elem;
+    }
+
+    public long getBytesRead() {
+        return this.consumed;
+    }
+
+    public void finish() throws IOException {
+        if (this.exact && this.buf.hasRemaining()) { // only read ahead if the channel can seek
+            SeekableByteChannel seekable = (SeekableByteChannel) this.channel;
+            seekable.position(seekable.position() - this.buf.remaining());
+            this.buf.limit(this.buf.position());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+// Buffered writer of primitives and codec-encoded elements to a WritableByteChannel
+// (e.g. a FileChannel), through one reusable ByteBuffer.
+// Elements are written length-prefixed ([int length][bytes]), so that a reader can always
+// tell how many bytes it needs before decoding one. If an element does not fit in an empty
+// buffer, the buffer is doubled.
+
+// Public Methods:
+// putByte(b) / putInt(i) / putLong(l)  --> void
+// putElement(element, codec)           --> void   : writes [int length][encoded element]
+// putInts / putLongs / putDoubles(array, offset, length) --> void : bulk-copies a run of primitives
+// flush()                              --> void   : writes the buffered bytes to the channel
+// getBytesWritten()                    --> long   : bytes handed to the channel or buffered so far
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+class BinaryWriter {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buf;
+    private long flushed; // bytes already written to the channel
+
+    public BinaryWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BinaryWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buf = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private void ensureRemaining(int n) throws IOException {
+        if (this.buf.remaining() < n) {
+            this.flush();
+        }
+    }
+
+    public void putByte(byte b) throws IOException {
+        this.ensureRemaining(1);
+        this.buf.put(b);
+    }
+
+    public void putInt(int i) throws IOException {
+        this.ensureRemaining(4);
+        this.buf.putInt(i);
+    }
+
+    public void putLong(long l) throws IOException {
+        this.ensureRemaining(8);
+        this.buf.putLong(l);
+    }
+
+    public void putInts(int[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            this.ensureRemaining(4);
+            int n = Math.min(length, this.buf.remaining() / 4);
+            this.buf.asIntBuffer().put(values, offset, n);
+            this.buf.position(this.buf.position() + 4 * n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public void putLongs(long[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            this.ensureRemaining(8);
+            int n = Math.min(length, this.buf.remaining() / 8);
+            this.buf.asLongBuffer().put(values, offset, n);
+            this.buf.position(this.buf.position() + 8 * n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public void putDoubles(double[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            this.ensureRemaining(8);
+            int n = Math.min(length, this.buf.remaining() / 8);
+            this.buf.asDoubleBuffer().put(values, offset, n);
+            this.buf.position(this.buf.position() + 8 * n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public <T> void putElement(T elem, Codec<? super T> codec) throws IOException {
+        while (true) {
+            this.ensureRemaining(4);
+            int start = this.buf.position();
+            try {
+                this.buf.position(start + 4); // room for the length, filled in below
+                codec.encode(elem, this.buf);
+                this.buf.putInt(start, this.buf.position() - start - 4);
+                return;
+            } catch (BufferOverflowException e) {
+                this.buf.position(start);
+                if (start == 0) { // does not fit in an empty buffer
+                    this.buf = ByteBuffer.allocateDirect(this.buf.capacity() * 2);
+                } else {
+                    this.flush();
+                }
+            }
+        }
+    }
+
+    public void flush() throws IOException {
+        this.buf.flip();
+        while (this.buf.hasRemaining()) {
+            this.flushed += this.channel.write(this.buf);
+        }
+        this.buf.clear();
+    }
+
+    public long getBytesWritten() {
+        return this.flushed + this.buf.position();
+    }
+}
@@ -0,0 +1,272 @@
+// This program implements a BIT-PACKED DYNAMIC ARRAY of long values: every element is
+// stored in the same number of bits (the bit width), back to back in a long[], instead of
+// as a boxed Long in a "DynamicArray.java". Element i occupies bits [i * width, (i + 1) * width)
+// and may straddle two words, so get and set stay O(1).
+
+//    width = 5:   word 0 = | e0 | e1 | ... | e11 | 4 bits of e12 |
+//                 word 1 = | 1 bit of e12 | e13 | ...
+
+// The width is the number of bits of the largest value so far, i.e. values are unsigned;
+// a negative value needs all 64 bits. The width grows automatically: storing a value that
+// does not fit repacks the array with the larger width, which happens at most 64 times.
+// Like "DynamicArray.java", the backing array is doubled as it becomes full and is never
+// shrunk. With "Metrics.java" enabled, resizes are recorded.
+
+// For sorted or clustered data see "DeltaEncodedArray.java", which stores differences.
+
+// AVAILABLE METHODS:
+// - append(value)              --> void        O(1) amortized
+// - get(index)                 --> long        O(1)
+// - set(index, value)          --> void        O(1), O(n) when the width grows
+// - getSize()                  --> int         O(1)
+// - getBitWidth()              --> int         O(1)
+// - getMemoryBytes()           --> long        O(1)    bytes of the backing array
+// - contains(value)            --> boolean     O(n)
+// - indexOf(value)             --> int         O(n)
+// - iterator()                 --> PrimitiveIterator.OfLong
+// - toArray()                  --> long[]      O(n)
+// - writeTo(appendable, limit) --> void        O(n) (writes at most 'limit' elements, then how many were left out)
+// - writeTo(channel, limit)    --> void        O(n) (same, streamed through one reusable buffer, see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class BitPackedArray implements Iterable<Long> {
+    private long[] words;
+    private int bitWidth;
+    private int size;
+
+    public BitPackedArray() {
+        this(0);
+    }
+
+    public BitPackedArray(int bitWidth) {
+        if (bitWidth < 0 || bitWidth > 64) {
+            throw new IllegalArgumentException("Bit width must be between 0 and 64, got " + bitWidth);
+        }
+        this.bitWidth = bitWidth;
+        this.words = new long[2];
+    }
+
+    // number of bits needed for value, read as unsigned
+    static int bitsFor(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    // reads width bits starting at bit bitPos of words
+    static long read(long[] words, long bitPos, int width) {
+        if (width == 0) {
+            return 0;
+        }
+        int word = (int) (bitPos >>> 6);
+        int offset = (int) (bitPos & 63);
+        long value = words[word] >>> offset;
+        if (offset + width > 64) { // continues in the next word
+            value |= words[word + 1] << (64 - offset);
+        }
+        return width == 64 ? value : value & ((1L << width) - 1);
+    }
+
+    // writes the low width bits of value starting at bit bitPos of words
+    static void write(long[] words, long bitPos, int width, long value) {
+        if (width == 0) {
+            return;
+        }
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        value &= mask;
+        int word = (int) (bitPos >>> 6);
+        int offset = (int) (bitPos & 63);
+        words[word] = (words[word] & ~(mask << offset)) | (value << offset);
+        if (offset + width > 64) {
+            int written = 64 - offset;
+            words[word + 1] = (words[word + 1] & ~(mask >>> written)) | (value >>> written);
+        }
+    }
+
+    // words needed for count elements of width bits
+    private static int wordsFor(long count, int width) {
+        long words = (count * width + 63) >>> 6;
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many elements for the bit width " + width);
+        }
+        return (int) words;
+    }
+
+    private void ensureCapacity(int count) {
+        int needed = wordsFor(count, this.bitWidth);
+        if (needed > this.words.length) {
+            int newLength = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, 2L * this.words.length));
+            if (Metrics.ENABLED) {
+                Metrics.resized("BitPackedArray", this.words.length, newLength);
+            }
+            this.words = Arrays.copyOf(this.words, newLength);
+        }
+    }
+
+    // repacks every element with newWidth bits
+    private void widen(int newWidth) {
+        long[] newWords = new long[Math.max(2, wordsFor(Math.max(this.size, 1) * 2L, newWidth))];
+        for (int i = 0; i < this.size; i++) {
+            write(newWords, (long) i * newWidth, newWidth, read(this.words, (long) i * this.bitWidth, this.bitWidth));
+        }
+        if (Metrics.ENABLED) {
+            Metrics.resized("BitPackedArray", this.words.length, newWords.length);
+        }
+        this.words = newWords;
+        this.bitWidth = newWidth;
+    }
+
+    public void append(long value) {
+        int bits = bitsFor(value);
+        if (bits > this.bitWidth) {
+            this.widen(bits);
+        }
+        this.ensureCapacity(this.size + 1);
+        write(this.words, (long) this.size * this.bitWidth, this.bitWidth, value);
+        this.size++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + this.size);
+        }
+    }
+
+    public long get(int index) {
+        this.checkIndex(index);
+        return read(this.words, (long) index * this.bitWidth, this.bitWidth);
+    }
+
+    public void set(int index, long value) {
+        this.checkIndex(index);
+        int bits = bitsFor(value);
+        if (bits > this.bitWidth) {
+            this.widen(bits);
+        }
+        write(this.words, (long) index * this.bitWidth, this.bitWidth, value);
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public int getBitWidth() {
+        return this.bitWidth;
+    }
+
+    public long getMemoryBytes() {
+        return 8L * this.words.length;
+    }
+
+    public int indexOf(long value) {
+        if (bitsFor(value) > this.bitWidth) { // cannot be stored here
+            return -1;
+        }
+        for (int i = 0; i < this.size; i++) {
+            if (read(this.words, (long) i * this.bitWidth, this.bitWidth) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(long value) {
+        return this.indexOf(value) >= 0;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            int index = 0;
+            long bitPos = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public long nextLong() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                long value = read(words, bitPos, bitWidth);
+                bitPos += bitWidth;
+                index++;
+                return value;
+            }
+        };
+    }
+
+    public long[] toArray() {
+        long[] values = new long[this.size];
+        PrimitiveIterator.OfLong itr = this.iterator();
+        for (int i = 0; i < this.size; i++) {
+            values[i] = itr.nextLong();
+        }
+        return values;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n");
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        sb.append("\nsize    : ").append(this.size);
+        sb.append("\nbits    : ").append(this.bitWidth);
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        out.append("[");
+        int n = Math.min(this.size, Math.max(limit, 0));
+        PrimitiveIterator.OfLong itr = this.iterator();
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                out.append(" ");
+            } else {
+                out.append(", ");
+            }
+            Utils.appendNumber(out, itr.nextLong());
+        }
+        if (n < this.size) {
+            out.append(n == 0 ? " ... (" : ", ... (");
+            Utils.appendNumber(out, this.size - n).append(" more)");
+        }
+        out.append(" ]");
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    public static void main(String[] args) {
+        BitPackedArray ary = new BitPackedArray();
+        ary.append(2);
+        ary.append(6);
+        ary.append(1);
+        System.out.println(ary); // 3 bits each
+        ary.append(300);
+        ary.set(0, 7);
+        System.out.println(ary); // widened to 9 bits
+        System.out.println(ary.contains(6) + " " + ary.indexOf(89) + " " + ary.get(3));
+
+        // one million ids below 2^20
+        java.util.Random random = new java.util.Random(42);
+        BitPackedArray ids = new BitPackedArray();
+        for (int i = 0; i < 1_000_000; i++) {
+            ids.append(random.nextInt(1 << 20));
+        }
+        System.out.printf("%d ids in %d bits each: %,d bytes (long[]: %,d bytes)%n", ids.getSize(),
+                ids.getBitWidth(), ids.getMemoryBytes(), 8L * ids.getSize());
+    }
+}
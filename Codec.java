@@ -0,0 +1,65 @@
+// Converts elements to and from bytes, for the binary snapshot and serialization formats of
+// the data-structures in this repo. Implementations write into / read from a ByteBuffer at its
+// current position.
+// encode() must throw java.nio.BufferOverflowException (which ByteBuffer's put methods do on
+// their own) when the element does not fit in the remaining space; the caller then flushes
+// or grows the buffer and retries.
+
+// Built-in codecs: INT, LONG, DOUBLE, STRING (UTF-8, length-prefixed)
+
+// Methods:
+// encode(element, buffer)  --> void     : writes element at the buffer's position
+// decode(buffer)           --> element  : reads an element written by encode()
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+interface Codec<T> {
+    void encode(T elem, ByteBuffer buf);
+
+    T decode(ByteBuffer buf);
+
+    Codec<Integer> INT = new Codec<Integer>() {
+        public void encode(Integer elem, ByteBuffer buf) {
+            buf.putInt(elem);
+        }
+
+        public Integer decode(ByteBuffer buf) {
+            return buf.getInt();
+        }
+    };
+
+    Codec<Long> LONG = new Codec<Long>() {
+        public void encode(Long elem, ByteBuffer buf) {
+            buf.putLong(elem);
+        }
+
+        public Long decode(ByteBuffer buf) {
+            return buf.getLong();
+        }
+    };
+
+    Codec<Double> DOUBLE = new Codec<Double>() {
+        public void encode(Double elem, ByteBuffer buf) {
+            buf.putDouble(elem);
+        }
+
+        public Double decode(ByteBuffer buf) {
+            return buf.getDouble();
+        }
+    };
+
+    Codec<String> STRING = new Codec<String>() {
+        public void encode(String elem, ByteBuffer buf) {
+            byte[] bytes = elem.getBytes(StandardCharsets.UTF_8);
+            buf.putInt(bytes.length);
+            buf.put(bytes);
+        }
+
+        public String decode(ByteBuffer buf) {
+            byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+}
@@ -0,0 +1,357 @@
+// This program implements a THREAD-SAFE DYNAMIC ARRAY for read-mostly use, e.g. lookup
+// tables shared by many threads. Like "DynamicArray.java", the underlying static array is
+// doubled in size as it becomes full and is never shrunk.
+
+// Every operation goes through one StampedLock:
+//    reads (get, getSize, indexOf, contains) run as optimistic reads: they read the array
+//    without locking and then validate the stamp. Only when a write happened meanwhile are
+//    they retried under the read lock, so in the common case readers never block and never
+//    write to shared memory (no lock word to bounce between cores).
+//    writes (append, insertAt, deleteAt, growth) take the write lock.
+// Iteration, toString and writeTo work on a snapshot copy taken the same way, so they
+// never see a half-done write and never block writers while the caller consumes them.
+
+// Striped appends: with many concurrent writers, the write lock itself becomes the
+// bottleneck. appendBuffered(element) instead adds to one of several small buffers
+// (picked by the calling thread) under that buffer's own monitor, and moves a full buffer
+// into the array under a single write lock. Buffered elements become visible when their
+// buffer fills up or on flush(); their order relative to other threads' elements is
+// unspecified.
+
+// Elements are compared with equals(). With "Metrics.java" enabled, writes and resizes
+// are recorded.
+
+// AVAILABLE METHODS:
+// - get(index)                 --> element     O(1)    optimistic read
+// - getSize()                  --> int         O(1)    optimistic read
+// - indexOf(element)           --> int         O(n)    optimistic read, -1 if absent
+// - contains(element)          --> boolean     O(n)    optimistic read
+// - append(element)            --> void        O(1)    amortized, write lock
+// - insertAt(index, element)   --> void        O(n)    write lock
+// - deleteAt(index)            --> void        O(n)    write lock
+// - appendBuffered(element)    --> void        O(1)    amortized, striped; visible after its buffer drains
+// - flush()                    --> void        O(stripes * BATCH) : makes every buffered element visible
+// - toArray()                  --> Object[]    O(n)    consistent snapshot
+// - iterator()                 --> Iterator    O(n)    over a snapshot
+// - writeTo(appendable, limit) --> void        O(n)    writes at most 'limit' elements of a snapshot
+// - writeTo(channel, limit)    --> void        O(n)    same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+public class ConcurrentDynamicArray<T> implements Iterable<T> {
+    private static final int BATCH = 64; // elements per append buffer
+
+    private final StampedLock lock = new StampedLock();
+    private Object[] data;
+    private int size;
+
+    private static final class Stripe {
+        private final Object[] buffer = new Object[BATCH];
+        private int n;
+    }
+
+    private final Stripe[] stripes;
+
+    public ConcurrentDynamicArray() {
+        this.data = new Object[2];
+        // a power of two at least the number of processors
+        int nStripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        this.stripes = new Stripe[nStripes];
+        for (int i = 0; i < nStripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    // grows data to hold at least minCapacity elements; holds the write lock
+    private void ensureCapacity(int minCapacity) {
+        int capacity = this.data.length;
+        if (minCapacity <= capacity) {
+            return;
+        }
+        int newCapacity = capacity;
+        while (newCapacity < minCapacity) {
+            newCapacity *= 2;
+        }
+        if (Metrics.ENABLED) {
+            Metrics.resized("ConcurrentDynamicArray", capacity, newCapacity);
+        }
+        this.data = Arrays.copyOf(this.data, newCapacity);
+    }
+
+    public T get(int index) {
+        long stamp = this.lock.tryOptimisticRead();
+        Object[] data = this.data;
+        int size = this.size;
+        // a racing write may leave size and data inconsistent; validate() catches that
+        Object elem = index >= 0 && index < Math.min(size, data.length) ? data[index] : null;
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                size = this.size;
+                elem = index >= 0 && index < size ? this.data[index] : null;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return elementOf(elem);
+    }
+
+    public int getSize() {
+        long stamp = this.lock.tryOptimisticRead();
+        int size = this.size;
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                size = this.size;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    // data and the stripes only hold elements added as T
+    @SuppressWarnings("unchecked")
+    private static <T> T elementOf(Object elem) {
+        return (T) elem;
+    }
+
+    private static int indexOf(Object[] data, int size, Object x) {
+        int n = Math.min(size, data.length);
+        for (int i = 0; i < n; i++) {
+            if (Objects.equals(data[i], x)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int indexOf(T x) {
+        long stamp = this.lock.tryOptimisticRead();
+        int index = indexOf(this.data, this.size, x);
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                index = indexOf(this.data, this.size, x);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return index;
+    }
+
+    public boolean contains(T x) {
+        return this.indexOf(x) >= 0;
+    }
+
+    public void append(T x) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.ensureCapacity(this.size + 1);
+            this.data[this.size++] = x;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        if (Metrics.ENABLED) {
+            Metrics.DYNAMIC_ARRAY_OPS.increment();
+        }
+    }
+
+    public void insertAt(int index, T x) {
+        long stamp = this.lock.writeLock();
+        try {
+            if (index > this.size || index < 0) {
+                throw new IndexOutOfBoundsException();
+            }
+            this.ensureCapacity(this.size + 1);
+            System.arraycopy(this.data, index, this.data, index + 1, this.size - index);
+            this.data[index] = x;
+            this.size++;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        if (Metrics.ENABLED) {
+            Metrics.DYNAMIC_ARRAY_OPS.increment();
+        }
+    }
+
+    public void deleteAt(int index) {
+        long stamp = this.lock.writeLock();
+        try {
+            if (index > this.size - 1 || index < 0) {
+                throw new IndexOutOfBoundsException();
+            }
+            System.arraycopy(this.data, index + 1, this.data, index, this.size - index - 1);
+            this.data[--this.size] = null; // let go of the reference
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        if (Metrics.ENABLED) {
+            Metrics.DYNAMIC_ARRAY_OPS.increment();
+        }
+    }
+
+    // the stripe of the calling thread; stable for the thread's lifetime
+    private Stripe stripe() {
+        int h = System.identityHashCode(Thread.currentThread()) * 0x9E3779B9;
+        return this.stripes[(h ^ (h >>> 16)) & (this.stripes.length - 1)];
+    }
+
+    public void appendBuffered(T x) {
+        Stripe stripe = this.stripe();
+        synchronized (stripe) {
+            stripe.buffer[stripe.n++] = x;
+            if (stripe.n == BATCH) {
+                this.drain(stripe);
+            }
+        }
+    }
+
+    // moves the buffered elements of stripe into the array; holds stripe's monitor
+    private void drain(Stripe stripe) {
+        int n = stripe.n;
+        long stamp = this.lock.writeLock();
+        try {
+            this.ensureCapacity(this.size + n);
+            System.arraycopy(stripe.buffer, 0, this.data, this.size, n);
+            this.size += n;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        Arrays.fill(stripe.buffer, 0, n, null);
+        stripe.n = 0;
+        if (Metrics.ENABLED) {
+            Metrics.DYNAMIC_ARRAY_OPS.add(n);
+        }
+    }
+
+    public void flush() {
+        for (Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                if (stripe.n > 0) {
+                    this.drain(stripe);
+                }
+            }
+        }
+    }
+
+    public Object[] toArray() {
+        long stamp = this.lock.tryOptimisticRead();
+        Object[] data = this.data;
+        int size = this.size;
+        Object[] copy = Arrays.copyOf(data, Math.min(size, data.length));
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                copy = Arrays.copyOf(this.data, this.size);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return copy;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Object[] snapshot = this.toArray();
+        return new Iterator<T>() {
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < snapshot.length;
+            }
+
+            @Override
+            public T next() {
+                if (index >= snapshot.length) {
+                    throw new java.util.NoSuchElementException();
+                }
+                return elementOf(snapshot[index++]);
+            }
+        };
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        Object[] snapshot = this.toArray();
+        out.append("[");
+        int n = Math.min(snapshot.length, Math.max(limit, 0));
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                out.append(" ");
+            } else {
+                out.append(", ");
+            }
+            Utils.appendValue(out, snapshot[i]);
+        }
+        if (n < snapshot.length) {
+            out.append(n == 0 ? " ... (" : ", ... (");
+            Utils.appendNumber(out, snapshot.length - n).append(" more)");
+        }
+        out.append(" ]");
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentDynamicArray<Integer> da = new ConcurrentDynamicArray<>();
+        da.append(2);
+        da.append(6);
+        da.append(1);
+        da.append(8);
+        da.insertAt(2, 55);
+        System.out.println(da);
+        da.deleteAt(2);
+        System.out.println(da);
+        System.out.println(da.contains(6) + " " + da.indexOf(89) + " " + da.get(3));
+
+        // 4 writers append through the stripes while 4 readers look up
+        ConcurrentDynamicArray<Integer> table = new ConcurrentDynamicArray<>();
+        int perWriter = 100_000;
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                if (id < 4) {
+                    for (int i = 0; i < perWriter; i++) {
+                        table.appendBuffered(id * perWriter + i);
+                    }
+                } else {
+                    for (int i = 0; i < 1_000; i++) {
+                        table.contains(i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        table.flush();
+        System.out.println("size after concurrent appends: " + table.getSize()); // 400000
+        System.out.println("contains 399999: " + table.contains(399_999));
+    }
+}
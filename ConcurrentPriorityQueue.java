@@ -0,0 +1,195 @@
+// This program implements a thread-safe, lock-free Priority Queue with exact ordering,
+// backed by a skip list (java.util.concurrent.ConcurrentSkipListSet, which is lock-free).
+
+// The skip list keeps elements sorted, so poll() removes the first node and peek() reads
+// it; add() and poll() never block each other. Equal elements are kept apart by a
+// sequence number from a counter of the adding thread, plus a slot number of that thread,
+// so concurrent adds never write to a shared counter. Equal elements added by one thread
+// are polled in the order they were added.
+
+// Use "MultiQueue.java" instead when strict ordering is not needed and throughput under
+// many threads matters more.
+
+// With "Metrics.java" enabled, add and poll are counted and record their latency.
+
+// Public Methods:
+// create()          --> queue     O(1)        : empty queue in natural ordering (static)
+// add(element)      --> void      O(log(n))   : adds element to the priority queue
+// poll()            --> element   O(log(n))   : removes and returns the smallest element, or null if empty
+// peek()            --> element   O(1)        : returns the smallest element, or null if empty
+// isEmpty()         --> boolean   O(1)
+// getSize()         --> int       O(1)        : number of elements; may be stale while other threads update
+// writeTo(appendable, limit)  --> void     O(n)        : writes the elements in priority order, at most 'limit' elements
+// writeTo(channel, limit)     --> void     O(n)        : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+class ConcurrentPriorityQueue<T> implements Heap<T> {
+    private final ConcurrentSkipListSet<Entry<T>> skipList;
+    private final LongAdder size = new LongAdder();
+
+    private static final AtomicInteger NEXT_THREAD_SLOT = new AtomicInteger();
+    private static final ThreadLocal<Sequence> SEQUENCE = ThreadLocal.withInitial(Sequence::new);
+
+    // tie-breaker of equal elements, one per thread: (next, slot) pairs are never handed out twice
+    private static final class Sequence {
+        private final int slot = NEXT_THREAD_SLOT.getAndIncrement();
+        private long next;
+    }
+
+    private static class Entry<T> {
+        private final T data;
+        private final long sequence;
+        private final int slot;
+
+        public Entry(T data, long sequence, int slot) {
+            this.data = data;
+            this.sequence = sequence;
+            this.slot = slot;
+        }
+
+        @Override
+        public String toString() {
+            return this.data.toString();
+        }
+    }
+
+    public ConcurrentPriorityQueue(Comparator<? super T> comparator) {
+        Objects.requireNonNull(comparator);
+        Comparator<Entry<T>> entryComparator = (e1, e2) -> {
+            int cmp = comparator.compare(e1.data, e2.data);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = Long.compare(e1.sequence, e2.sequence);
+            return cmp != 0 ? cmp : Integer.compare(e1.slot, e2.slot);
+        };
+        this.skipList = new ConcurrentSkipListSet<>(entryComparator);
+    }
+
+    // natural ordering; the bound keeps elements that are not Comparable out at compile time
+    public static <T extends Comparable<? super T>> ConcurrentPriorityQueue<T> create() {
+        return new ConcurrentPriorityQueue<>(Comparator.<T>naturalOrder());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    // elements in priority order, as of a weakly consistent pass over the skip list
+    public void writeTo(Appendable out, int limit) throws IOException {
+        Iterator<Entry<T>> itr = this.skipList.iterator();
+        int written = 0;
+        out.append("[");
+        while (itr.hasNext() && written < limit) {
+            if (written > 0) {
+                out.append(", ");
+            }
+            Utils.appendValue(out, itr.next().data);
+            written++;
+        }
+        if (itr.hasNext()) {
+            long more = 0;
+            for (; itr.hasNext(); itr.next()) {
+                more++;
+            }
+            out.append(written == 0 ? "... (" : ", ... (");
+            Utils.appendNumber(out, more).append(" more)");
+        }
+        out.append("]");
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    @Override
+    public void add(T elem) {
+        if (elem == null) {
+            throw new IllegalArgumentException();
+        }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        Sequence sequence = SEQUENCE.get();
+        if (this.skipList.add(new Entry<>(elem, sequence.next++, sequence.slot))) {
+            this.size.increment();
+        }
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+            Metrics.HEAP_ADD_NANOS.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public T poll() {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        Entry<T> entry = this.skipList.pollFirst();
+        if (entry == null) {
+            return null;
+        }
+        this.size.decrement();
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+            Metrics.HEAP_POLL_NANOS.record(System.nanoTime() - start);
+        }
+        return entry.data;
+    }
+
+    @Override
+    public T peek() {
+        for (Entry<T> entry : this.skipList) { // the first entry, if any
+            return entry.data;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.skipList.isEmpty();
+    }
+
+    @Override
+    public int getSize() {
+        return (int) Math.max(0, this.size.sum());
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentPriorityQueue<Integer> pq = ConcurrentPriorityQueue.create();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5; i++) {
+                    pq.add(i * threads.length + offset);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.println(pq);
+        System.out.println(pq.peek());
+        System.out.println(pq.getSize());
+        while (!pq.isEmpty()) {
+            System.out.print(pq.poll() + " ");
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,104 @@
+// This program measures how the concurrent priority queues scale with the number of threads.
+// It compares a "PriorityQueue.java" guarded by one lock (the baseline), "ConcurrentPriorityQueue.java"
+// and "MultiQueue.java".
+
+// to run, execute the following command (need to compile the queues too):
+
+// javac ConcurrentPriorityQueueBenchmark.java; java ConcurrentPriorityQueueBenchmark [maxThreads] [seconds]
+
+// Each queue is pre-filled, then every thread alternates add and poll for the given time
+// (default 1 second per configuration). Thread counts go 1, 2, 4, ... up to maxThreads (default 64).
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+class ConcurrentPriorityQueueBenchmark {
+    private static final int PREFILL = 100_000;
+
+    // baseline: one lock serializing every operation
+    private static class SynchronizedPriorityQueue<T extends Comparable<? super T>> implements Heap<T> {
+        private final PriorityQueue<T> pq = PriorityQueue.create();
+
+        public synchronized void add(T elem) {
+            this.pq.add(elem);
+        }
+
+        public synchronized T poll() {
+            return this.pq.poll();
+        }
+
+        public synchronized T peek() {
+            return this.pq.peek();
+        }
+
+        public synchronized boolean isEmpty() {
+            return this.pq.isEmpty();
+        }
+
+        public synchronized int getSize() {
+            return this.pq.getSize();
+        }
+    }
+
+    // returns the total number of operations per second
+    private static double run(Heap<Integer> heap, int nThreads, long nanos) throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < PREFILL; i++) {
+            heap.add(random.nextInt());
+        }
+
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long count = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long end = System.nanoTime() + nanos;
+                while (System.nanoTime() < end) {
+                    for (int i = 0; i < 64; i++) {
+                        heap.add(rnd.nextInt());
+                        heap.poll();
+                    }
+                    count += 128;
+                }
+                ops.add(count);
+            });
+            threads[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return ops.sum() / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    private static void bench(String name, Supplier<Heap<Integer>> factory, int nThreads, long nanos)
+            throws InterruptedException {
+        run(factory.get(), nThreads, nanos / 4); // warm-up
+        double opsPerSec = run(factory.get(), nThreads, nanos);
+        System.out.printf("%-26s %8d %14.2f%n", name, nThreads, opsPerSec / 1e6);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+        long nanos = (long) (seconds * 1e9);
+
+        System.out.printf("%-26s %8s %14s%n", "queue", "threads", "Mops/s");
+        for (int nThreads = 1; nThreads <= maxThreads; nThreads *= 2) {
+            final int p = nThreads;
+            bench("synchronized PriorityQueue", SynchronizedPriorityQueue::new, p, nanos);
+            bench("ConcurrentPriorityQueue", ConcurrentPriorityQueue::create, p, nanos);
+            bench("MultiQueue", () -> MultiQueue.create(p), p, nanos);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+// This program implements a lock-free concurrent UnionFind on dense integer ids 0..n-1,
+// so that a connected-components pass over a large edge list can use every core.
+
+// The parent pointers live in an AtomicIntegerArray and every write is a CAS:
+//    find()  --> path halving: each visited node is swung to its grandparent with a CAS.
+//                A failed CAS is harmless, it only means another thread already shortened
+//                the path (parents only ever move towards the root).
+//    unify() --> linking by index: the two roots are ordered by a fixed pseudo-random
+//                priority of their ids, and the lower one is linked under the higher one
+//                with a CAS that only succeeds while it is still a root. On failure the
+//                roots are looked up again and the link is retried.
+// Ordering roots by a random priority instead of by size keeps trees shallow (expected
+// O(log(n)) depth before compression) without having to update sizes atomically together
+// with the links, so no operation ever blocks another thread.
+// The component count is kept in a LongAdder, so successful links do not contend on it.
+// With "Metrics.java" enabled, every root lookup records the number of parent links it followed.
+
+// parallelUnifyAll() splits an edge list into chunks and unifies them on a ForkJoinPool.
+// Edge lists of more than 2^31 edges are passed in several calls.
+
+// Public Methods:
+// ConcurrentUnionFind(n)            --> ConcurrentUnionFind  O(n)    : n singleton components with ids 0..n-1
+// unify(id1, id2)                   --> boolean     ~O(log(n))       : merges the two components; false if they were
+//                                                                      already connected
+// find(id)                          --> int         ~O(log(n))       : returns the current root id of the component of id
+// areConnected(id1, id2)            --> boolean     ~O(log(n))       : checks if id1 and id2 are in the same component
+// parallelUnifyAll(src, dst)        --> void        O(m/p) expected  : unifies src[i] with dst[i] for every i, in parallel
+// parallelUnifyAll(src, dst, pool)  --> void                         : same as above, on the given pool
+// getComponentCount()               --> int         O(p)             : returns the number of components
+// getSize()                         --> int         O(1)             : returns the number of ids
+// writeTo(appendable, limit)        --> void        O(n)             : writes each id with its root, at most 'limit' ids
+// writeTo(channel, limit)           --> void        O(n)             : same, streamed through one reusable buffer (see "Utils.java")
+
+// Every method may be called from any number of threads at the same time.
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+class ConcurrentUnionFind {
+    // chunks of at most this many edges are unified sequentially by one task
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    private final int nElems;
+    private final AtomicIntegerArray parent; // parent[i] == i for roots
+    private final LongAdder nLinks = new LongAdder(); // number of successful unify() calls
+
+    public ConcurrentUnionFind(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Invalid size " + n);
+        }
+        this.nElems = n;
+        this.parent = new AtomicIntegerArray(n);
+        for (int i = 0; i < n; i++) {
+            this.parent.set(i, i);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        int n = Math.min(this.nElems, Math.max(limit, 0));
+        for (int i = 0; i < n; i++) {
+            Utils.appendNumber(out, i).append(" -> ");
+            Utils.appendNumber(out, this.find(i)).append("\n");
+        }
+        if (n < this.nElems) {
+            out.append("... (");
+            Utils.appendNumber(out, this.nElems - n).append(" more)\n");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= this.nElems) {
+            throw new IllegalArgumentException("Invalid id " + id);
+        }
+    }
+
+    // fixed pseudo-random priority of an id (a bijection on ints, so there are no ties)
+    private static int priority(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // path halving
+    private int findRoot(int id) {
+        int pathLength = 0;
+        while (true) {
+            int p = this.parent.get(id);
+            if (p == id) {
+                break;
+            }
+            int gp = this.parent.get(p);
+            if (gp == p) {
+                id = p;
+                pathLength++;
+                break;
+            }
+            this.parent.compareAndSet(id, p, gp);
+            id = gp;
+            pathLength += 2;
+        }
+        if (Metrics.ENABLED) {
+            Metrics.UNION_FIND_OPS.increment();
+            Metrics.UNION_FIND_PATH_LENGTH.record(pathLength);
+        }
+        return id;
+    }
+
+    public int find(int id) {
+        this.checkId(id);
+        return this.findRoot(id);
+    }
+
+    private boolean unifyIds(int id1, int id2) {
+        while (true) {
+            int root1 = this.findRoot(id1);
+            int root2 = this.findRoot(id2);
+            if (root1 == root2) {
+                return false;
+            }
+            // link the root with the lower priority under the other one
+            if (priority(root1) > priority(root2)) {
+                int tmp = root1;
+                root1 = root2;
+                root2 = tmp;
+            }
+            if (this.parent.compareAndSet(root1, root1, root2)) {
+                this.nLinks.increment();
+                return true;
+            }
+            // root1 was linked by another thread in the meantime; start from the new roots
+            id1 = root1;
+            id2 = root2;
+        }
+    }
+
+    public boolean unify(int id1, int id2) {
+        this.checkId(id1);
+        this.checkId(id2);
+        return this.unifyIds(id1, id2);
+    }
+
+    public boolean areConnected(int id1, int id2) {
+        this.checkId(id1);
+        this.checkId(id2);
+        while (true) {
+            int root1 = this.findRoot(id1);
+            int root2 = this.findRoot(id2);
+            if (root1 == root2) {
+                return true;
+            }
+            // if root1 is still a root, the two were in different components when root2 was read
+            if (this.parent.get(root1) == root1) {
+                return false;
+            }
+            id1 = root1;
+        }
+    }
+
+    private class UnifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src;
+        private final int[] dst;
+        private final int from;
+        private final int to;
+
+        private UnifyTask(int[] src, int[] dst, int from, int to) {
+            this.src = src;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= PARALLEL_THRESHOLD) {
+                for (int i = this.from; i < this.to; i++) {
+                    ConcurrentUnionFind.this.unifyIds(this.src[i], this.dst[i]);
+                }
+                return;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            invokeAll(new UnifyTask(this.src, this.dst, this.from, mid),
+                    new UnifyTask(this.src, this.dst, mid, this.to));
+        }
+    }
+
+    public void parallelUnifyAll(int[] src, int[] dst) {
+        this.parallelUnifyAll(src, dst, ForkJoinPool.commonPool());
+    }
+
+    public void parallelUnifyAll(int[] src, int[] dst, ForkJoinPool pool) {
+        if (src.length != dst.length) {
+            throw new IllegalArgumentException("Edge arrays differ in length: " + src.length + " and " + dst.length);
+        }
+        // validate upfront, so a bad id does not leave the structure half-updated
+        for (int i = 0; i < src.length; i++) {
+            this.checkId(src[i]);
+            this.checkId(dst[i]);
+        }
+        pool.invoke(new UnifyTask(src, dst, 0, src.length));
+    }
+
+    public int getComponentCount() {
+        return this.nElems - (int) this.nLinks.sum();
+    }
+
+    public int getSize() {
+        return this.nElems;
+    }
+
+    public static void main(String[] args) {
+        ConcurrentUnionFind uf = new ConcurrentUnionFind(8);
+        uf.unify(0, 1);
+        uf.unify(2, 3);
+        uf.parallelUnifyAll(new int[] { 1, 4, 6 }, new int[] { 3, 5, 7 });
+        System.out.print(uf);
+        System.out.println(uf.areConnected(0, 2) + " " + uf.areConnected(0, 4));
+        System.out.println(uf.getComponentCount());
+
+        // random graph; compare with the sequential IntUnionFind
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 22;
+        int m = 4 * n;
+        Random random = new Random(42);
+        int[] src = new int[m];
+        int[] dst = new int[m];
+        for (int i = 0; i < m; i++) {
+            src[i] = random.nextInt(n);
+            dst[i] = random.nextInt(n);
+        }
+
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            IntUnionFind sequential = new IntUnionFind(n);
+            for (int i = 0; i < m; i++) {
+                sequential.unify(src[i], dst[i]);
+            }
+            long sequentialNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ConcurrentUnionFind concurrent = new ConcurrentUnionFind(n);
+            concurrent.parallelUnifyAll(src, dst);
+            long concurrentNanos = System.nanoTime() - start;
+
+            System.out.printf("n=%d m=%d: sequential %.1f ms (%d components), parallel on %d threads %.1f ms (%d components)%n",
+                    n, m, sequentialNanos / 1e6, sequential.getComponentCount(),
+                    ForkJoinPool.commonPool().getParallelism(), concurrentNanos / 1e6, concurrent.getComponentCount());
+        }
+    }
+}
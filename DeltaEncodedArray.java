@@ -0,0 +1,334 @@
+// This program implements a DELTA-ENCODED DYNAMIC ARRAY of long values, for data that is
+// sorted or changes slowly, such as id lists and timestamps. Elements are grouped in blocks
+// of 128; a full block keeps its first value as is and the 127 differences to the previous
+// element with frame-of-reference encoding: the smallest difference of the block is stored
+// once, and every difference minus that minimum is bit-packed (see "BitPackedArray.java")
+// with the fewest bits that fit the block's largest one. Sorted ids with small gaps thus
+// take a few bits each, and evenly spaced values take none at all.
+
+//    block := first value, min delta, bit width, offset into the packed bits
+//    value[j] = value[j - 1] + min delta + packed[j]      (j = 1 .. 127)
+
+// Elements are appended to an uncompressed block of 128 values, which is packed once it is
+// full. Reading element i decodes its whole block, so the last decoded block is cached:
+// sequential reads cost O(1) each, random reads O(128). Iteration decodes block by block.
+// When the values are sorted (in non-decreasing order), binarySearch() searches the first
+// values of the blocks and then a single decoded block.
+
+// AVAILABLE METHODS:
+// - append(value)              --> void        O(1) amortized
+// - get(index)                 --> long        O(1) sequentially, O(128) at random
+// - getSize()                  --> int         O(1)
+// - isSorted()                 --> boolean     O(1)    true if the values are in non-decreasing order
+// - binarySearch(value)        --> int         O(log n + 128) : like Arrays.binarySearch; needs sorted values
+// - getMemoryBytes()           --> long        O(1)    bytes of the backing arrays
+// - contains(value)            --> boolean     O(n)
+// - indexOf(value)             --> int         O(n)
+// - iterator()                 --> PrimitiveIterator.OfLong
+// - toArray()                  --> long[]      O(n)
+// - writeTo(appendable, limit) --> void        O(n) (writes at most 'limit' elements, then how many were left out)
+// - writeTo(channel, limit)    --> void        O(n) (same, streamed through one reusable buffer, see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class DeltaEncodedArray implements Iterable<Long> {
+    private static final int BLOCK_BITS = 7;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS; // 128
+
+    // per packed block
+    private long[] firstValues = new long[2];
+    private long[] minDeltas = new long[2];
+    private byte[] bitWidths = new byte[2];
+    private long[] bitOffsets = new long[2];
+    private int nBlocks;
+
+    private long[] packed = new long[2]; // the bit-packed deltas of every block
+    private long nBits; // bits of packed in use
+
+    private final long[] pending = new long[BLOCK_SIZE]; // the last, not yet packed block
+    private int nPending;
+
+    private int size;
+    private boolean sorted = true;
+
+    private final long[] cache = new long[BLOCK_SIZE]; // values of the last decoded block
+    private int cachedBlock = -1;
+
+    public DeltaEncodedArray() {
+    }
+
+    private void packPending() {
+        if (this.nBlocks == this.firstValues.length) {
+            int newLength = 2 * this.nBlocks;
+            this.firstValues = Arrays.copyOf(this.firstValues, newLength);
+            this.minDeltas = Arrays.copyOf(this.minDeltas, newLength);
+            this.bitWidths = Arrays.copyOf(this.bitWidths, newLength);
+            this.bitOffsets = Arrays.copyOf(this.bitOffsets, newLength);
+        }
+        long minDelta = Long.MAX_VALUE;
+        for (int j = 1; j < BLOCK_SIZE; j++) {
+            minDelta = Math.min(minDelta, this.pending[j] - this.pending[j - 1]);
+        }
+        long maxPacked = 0; // unsigned
+        for (int j = 1; j < BLOCK_SIZE; j++) {
+            long value = this.pending[j] - this.pending[j - 1] - minDelta;
+            if (Long.compareUnsigned(value, maxPacked) > 0) {
+                maxPacked = value;
+            }
+        }
+        int width = BitPackedArray.bitsFor(maxPacked);
+
+        long neededWords = (this.nBits + (long) (BLOCK_SIZE - 1) * width + 63) >>> 6;
+        if (neededWords > this.packed.length) {
+            long newLength = Math.max(neededWords, 2L * this.packed.length);
+            if (newLength > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many elements");
+            }
+            if (Metrics.ENABLED) {
+                Metrics.resized("DeltaEncodedArray", this.packed.length, newLength);
+            }
+            this.packed = Arrays.copyOf(this.packed, (int) newLength);
+        }
+        int b = this.nBlocks;
+        this.firstValues[b] = this.pending[0];
+        this.minDeltas[b] = minDelta;
+        this.bitWidths[b] = (byte) width;
+        this.bitOffsets[b] = this.nBits;
+        for (int j = 1; j < BLOCK_SIZE; j++) {
+            BitPackedArray.write(this.packed, this.nBits, width, this.pending[j] - this.pending[j - 1] - minDelta);
+            this.nBits += width;
+        }
+        this.nBlocks++;
+        this.nPending = 0;
+    }
+
+    public void append(long value) {
+        if (this.size == Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many elements");
+        }
+        if (this.size > 0 && value < this.last()) {
+            this.sorted = false;
+        }
+        this.pending[this.nPending++] = value;
+        this.size++;
+        if (this.nPending == BLOCK_SIZE) {
+            this.packPending();
+        }
+    }
+
+    private long last() {
+        if (this.nPending > 0) {
+            return this.pending[this.nPending - 1];
+        }
+        return this.block(this.nBlocks - 1)[BLOCK_SIZE - 1];
+    }
+
+    // decodes packed block b into out
+    private void decode(int b, long[] out) {
+        long value = this.firstValues[b];
+        long minDelta = this.minDeltas[b];
+        int width = this.bitWidths[b];
+        long bitPos = this.bitOffsets[b];
+        out[0] = value;
+        if (width == 0) { // evenly spaced
+            for (int j = 1; j < BLOCK_SIZE; j++) {
+                value += minDelta;
+                out[j] = value;
+            }
+            return;
+        }
+        // unpack with the current word kept in a local, instead of a read() per value
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        int word = (int) (bitPos >>> 6);
+        int offset = (int) (bitPos & 63);
+        long bits = this.packed[word];
+        for (int j = 1; j < BLOCK_SIZE; j++) {
+            long delta = bits >>> offset;
+            offset += width;
+            if (offset >= 64) { // continues in the next word
+                offset -= 64;
+                word++;
+                bits = word < this.packed.length ? this.packed[word] : 0;
+                if (offset > 0) {
+                    delta |= bits << (width - offset);
+                }
+            }
+            value += minDelta + (delta & mask);
+            out[j] = value;
+        }
+    }
+
+    // the values of block b, which may be the pending block
+    private long[] block(int b) {
+        if (b == this.nBlocks) {
+            return this.pending;
+        }
+        if (b != this.cachedBlock) {
+            this.decode(b, this.cache);
+            this.cachedBlock = b;
+        }
+        return this.cache;
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + this.size);
+        }
+        return this.block(index >>> BLOCK_BITS)[index & (BLOCK_SIZE - 1)];
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public boolean isSorted() {
+        return this.sorted;
+    }
+
+    public long getMemoryBytes() {
+        return 8L * this.packed.length + 25L * this.firstValues.length + 8L * (this.pending.length + this.cache.length);
+    }
+
+    public int binarySearch(long value) {
+        if (!this.sorted) {
+            throw new IllegalStateException("binarySearch needs values in non-decreasing order");
+        }
+        int nAll = this.nBlocks + (this.nPending > 0 ? 1 : 0);
+        if (nAll == 0) {
+            return -1;
+        }
+        // last block whose first value is <= value
+        int lo = 0;
+        int hi = nAll - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            long first = mid < this.nBlocks ? this.firstValues[mid] : this.pending[0];
+            if (first <= value) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int length = lo < this.nBlocks ? BLOCK_SIZE : this.nPending;
+        int found = Arrays.binarySearch(this.block(lo), 0, length, value);
+        int base = lo << BLOCK_BITS;
+        return found >= 0 ? base + found : -(base - (found + 1)) - 1;
+    }
+
+    public int indexOf(long value) {
+        PrimitiveIterator.OfLong itr = this.iterator();
+        for (int i = 0; i < this.size; i++) {
+            if (itr.nextLong() == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(long value) {
+        return this.sorted ? this.binarySearch(value) >= 0 : this.indexOf(value) >= 0;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            final long[] values = new long[BLOCK_SIZE]; // own buffer, so get() calls do not interfere
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public long nextLong() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                int b = index >>> BLOCK_BITS;
+                if (b == nBlocks) {
+                    return pending[index++ & (BLOCK_SIZE - 1)];
+                }
+                if ((index & (BLOCK_SIZE - 1)) == 0) {
+                    decode(b, values);
+                }
+                return values[index++ & (BLOCK_SIZE - 1)];
+            }
+        };
+    }
+
+    public long[] toArray() {
+        long[] values = new long[this.size];
+        PrimitiveIterator.OfLong itr = this.iterator();
+        for (int i = 0; i < this.size; i++) {
+            values[i] = itr.nextLong();
+        }
+        return values;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n");
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        sb.append("\nsize    : ").append(this.size);
+        sb.append("\nblocks  : ").append(this.nBlocks);
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        out.append("[");
+        int n = Math.min(this.size, Math.max(limit, 0));
+        PrimitiveIterator.OfLong itr = this.iterator();
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                out.append(" ");
+            } else {
+                out.append(", ");
+            }
+            Utils.appendNumber(out, itr.nextLong());
+        }
+        if (n < this.size) {
+            out.append(n == 0 ? " ... (" : ", ... (");
+            Utils.appendNumber(out, this.size - n).append(" more)");
+        }
+        out.append(" ]");
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    public static void main(String[] args) {
+        DeltaEncodedArray ary = new DeltaEncodedArray();
+        for (int i = 0; i < 300; i++) {
+            ary.append(1000 + 3 * i);
+        }
+        System.out.println(ary.get(0) + " " + ary.get(200) + " " + ary.get(299));
+        System.out.println(ary.binarySearch(1600) + " " + ary.binarySearch(1601) + " " + ary.contains(1897));
+
+        // one million sorted ids with gaps of 1 to 16
+        java.util.Random random = new java.util.Random(42);
+        DeltaEncodedArray ids = new DeltaEncodedArray();
+        BitPackedArray packedIds = new BitPackedArray();
+        long id = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            id += 1 + random.nextInt(16);
+            ids.append(id);
+            packedIds.append(id);
+        }
+        System.out.printf("%d sorted ids: delta-encoded %,d bytes, bit-packed %,d bytes, long[] %,d bytes%n",
+                ids.getSize(), ids.getMemoryBytes(), packedIds.getMemoryBytes(), 8L * ids.getSize());
+        System.out.println("index of the last id: " + ids.binarySearch(id));
+    }
+}
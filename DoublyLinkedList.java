@@ -1,4 +1,5 @@
 // This program implements DOUBLY-LINKED-LIST 
+// With "Metrics.java" enabled, insertions and removals are counted.
 
 // AVAILABLE METHODS: 
 // - insertAt(element, index)   --> void            O(n)  
@@ -10,9 +11,16 @@
 // - contains()                 --> boolean         O(n) 
 // - isEmpty()                  --> boolean         O(1) 
 // - getSize()                  --> int             O(1)
+// - writeTo(appendable, limit) --> void            O(n)    writes at most 'limit' elements, then how many were left out
+// - writeTo(channel, limit)    --> void            O(n)    same, streamed through one reusable buffer (see "Utils.java")
+// - encode(channel, codec)     --> void            O(n)    compact binary format (see "SequenceCodec.java")
+// - decode(channel, codec)     --> list            O(n)    static; reads what encode() wrote
 
 
-import java.util.StringJoiner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Iterator;
 
 public class DoublyLinkedList<T> implements Iterable<T> {
@@ -48,27 +56,57 @@ public class DoublyLinkedList<T> implements Iterable<T> {
 
     @Override
     public String toString() {
-        StringJoiner sj = new StringJoiner(", ", "[", "]"); // separater, prefix, suffix
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        out.append("[");
         Node<T> n = this.head;
-        while (n != null) {
-            sj.add(n.toString());
+        int written = 0;
+        while (n != null && written < limit) {
+            if (written > 0) {
+                out.append(", ");
+            }
+            out.append(n.toString());
             n = n.next;
+            written++;
+        }
+        if (n != null) {
+            out.append(written == 0 ? "... (" : ", ... (");
+            Utils.appendNumber(out, this.size - written).append(" more)");
         }
-        return sj.toString();
+        out.append("]");
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
     }
 
     public java.util.Iterator<T> iterator() {
         return new java.util.Iterator<T>() {
-            int index = 0;
+            Node<T> trav = head;
 
             @Override
             public boolean hasNext() {
-                return index < size;
+                return trav != null;
             }
 
             @Override
             public T next() {
-                return peekAt(index++);
+                if (trav == null) {
+                    throw new java.util.NoSuchElementException();
+                }
+                T data = trav.data;
+                trav = trav.next;
+                return data;
             }
         };
     }
@@ -120,6 +158,9 @@ public class DoublyLinkedList<T> implements Iterable<T> {
             trav.prev = node;
         }
         this.size++;
+        if (Metrics.ENABLED) {
+            Metrics.LINKED_LIST_OPS.increment();
+        }
     }
 
     public T removeAt(int index) {
@@ -148,6 +189,9 @@ public class DoublyLinkedList<T> implements Iterable<T> {
             trav.next.prev = trav.prev;
         }
         this.size--;
+        if (Metrics.ENABLED) {
+            Metrics.LINKED_LIST_OPS.increment();
+        }
         return data;
     }
 
@@ -185,6 +229,23 @@ public class DoublyLinkedList<T> implements Iterable<T> {
         this.insertAt(elem, this.size);
     }
 
+    public void encode(WritableByteChannel channel, Codec<? super T> codec) throws IOException {
+        SequenceCodec.write(channel, SequenceCodec.DOUBLY_LINKED_LIST, this.size, this.iterator(), codec);
+    }
+
+    public static <T> DoublyLinkedList<T> decode(ReadableByteChannel channel, Codec<T> codec) throws IOException {
+        return decode(SequenceCodec.decoder(channel, SequenceCodec.DOUBLY_LINKED_LIST, codec));
+    }
+
+    // appends every remaining element of in; also used by "Queue.java"
+    static <T> DoublyLinkedList<T> decode(SequenceCodec.Decoder<T> in) throws IOException {
+        DoublyLinkedList<T> dll = new DoublyLinkedList<>();
+        while (in.hasNext()) {
+            dll.append(in.read());
+        }
+        return dll;
+    }
+
     public T peekAt(int index) {
         // returns element at given index
         return this.getNodeAt(index).data;
@@ -4,6 +4,7 @@
 // The underlying static-array is doubled in size as its size 
 // becomes insufficient, which can happen when performiing an 
 // append/insert operation. However, the size is never shrunk. 
+// With "Metrics.java" enabled, operations and resizes are recorded.
 
 // AVAILABLE METHODS: 
 // - append(element)            --> void 
@@ -11,11 +12,22 @@
 // - deleteAt(index)            --> void  
 // - contains(element)          --> boolean
 // - indexOf(element)           --> int 
-
+// - getSize()                  --> int 
+// - writeTo(appendable, limit) --> void    (writes at most 'limit' elements, then how many were left out)
+// - writeTo(channel, limit)    --> void    (same, streamed through one reusable buffer, see "Utils.java")
+// - encode(channel, codec)     --> void    (compact binary format, see "SequenceCodec.java")
+// - decode(channel, codec)     --> DynamicArray (static; reads what encode() wrote)
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Iterator;
 
 @SuppressWarnings("unchecked")
 public class DynamicArray<T> implements Iterable<T> {
+    private static final int MAX_PREALLOCATION = 1 << 16; // elements decode() allocates upfront
+
     private int capacity;
     private int size; // current size of array
     private T[] data;
@@ -27,6 +39,9 @@ public class DynamicArray<T> implements Iterable<T> {
     }
 
     private void expandCapacity() {
+        if (Metrics.ENABLED) {
+            Metrics.resized("DynamicArray", this.capacity, this.capacity * 2L);
+        }
         // double the capacity
         this.capacity *= 2;
         T[] newData = (T[]) new Object[this.capacity];
@@ -38,21 +53,41 @@ public class DynamicArray<T> implements Iterable<T> {
 
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        sb.append("\n[");
-        for (int i = 0; i < this.size; i++) {
+        sb.append("\n");
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+
+        sb.append("\nsize    : ").append(this.size);
+        sb.append("\ncapacity: ").append(this.capacity);
+
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        out.append("[");
+        int n = Math.min(this.size, Math.max(limit, 0));
+        for (int i = 0; i < n; i++) {
             if (i == 0) {
-                sb.append(" ");
+                out.append(" ");
             } else {
-                sb.append(", ");
+                out.append(", ");
             }
-            sb.append(this.data[i]);
+            Utils.appendValue(out, this.data[i]);
         }
-        sb.append(" ]");
-
-        sb.append("\nsize    : " + this.size);
-        sb.append("\ncapacity: " + this.capacity);
+        if (n < this.size) {
+            out.append(n == 0 ? " ... (" : ", ... (");
+            Utils.appendNumber(out, this.size - n).append(" more)");
+        }
+        out.append(" ]");
+    }
 
-        return sb.toString();
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
     }
 
     @Override
@@ -78,6 +113,9 @@ public class DynamicArray<T> implements Iterable<T> {
         }
         this.data[this.size] = x;
         this.size++;
+        if (Metrics.ENABLED) {
+            Metrics.DYNAMIC_ARRAY_OPS.increment();
+        }
     }
 
     public void insertAt(int index, T x) {
@@ -99,7 +137,9 @@ public class DynamicArray<T> implements Iterable<T> {
         }
         this.data = newData;
         this.size++;
-
+        if (Metrics.ENABLED) {
+            Metrics.DYNAMIC_ARRAY_OPS.increment();
+        }
     }
 
     public void deleteAt(int index) {
@@ -110,6 +150,30 @@ public class DynamicArray<T> implements Iterable<T> {
             this.data[i] = this.data[i + 1];
         }
         this.size--;
+        if (Metrics.ENABLED) {
+            Metrics.DYNAMIC_ARRAY_OPS.increment();
+        }
+    }
+
+    public void encode(WritableByteChannel channel, Codec<? super T> codec) throws IOException {
+        SequenceCodec.write(channel, SequenceCodec.DYNAMIC_ARRAY, this.size, this.iterator(), codec);
+    }
+
+    public static <T> DynamicArray<T> decode(ReadableByteChannel channel, Codec<T> codec) throws IOException {
+        SequenceCodec.Decoder<T> in = SequenceCodec.decoder(channel, SequenceCodec.DYNAMIC_ARRAY, codec);
+        DynamicArray<T> da = new DynamicArray<>();
+        // the count comes from the input: trust it only up to MAX_PREALLOCATION, then grow as
+        // elements really arrive
+        da.capacity = Math.max(2, Math.min(in.getCount(), MAX_PREALLOCATION));
+        da.data = (T[]) new Object[da.capacity];
+        while (in.hasNext()) {
+            T elem = in.read();
+            if (da.size == da.capacity) {
+                da.expandCapacity();
+            }
+            da.data[da.size++] = elem;
+        }
+        return da;
     }
 
     public boolean contains(T x) {
@@ -133,6 +197,10 @@ public class DynamicArray<T> implements Iterable<T> {
         return -1;
     }
 
+    public int getSize() {
+        return this.size;
+    }
+
     public static void main(String[] args) {
         DynamicArray<Integer> da = new DynamicArray<>();
         System.out.println(da);
@@ -0,0 +1,455 @@
+// This program implements the data-structure Fibonacci Heap (a min-heap).
+
+// A Fibonacci heap is a circular doubly-linked list of heap-ordered trees (the root list),
+// with a pointer to the minimum root. Insertion and meld only splice root lists; the
+// work is deferred to poll(), which consolidates the root list so that no two roots
+// have the same degree. decreaseKey cuts the node out to the root list, and cascades
+// the cut up through parents that already lost a child ("marked" nodes), which keeps
+// tree sizes exponential in their degree.
+
+// With "Metrics.java" enabled, insertions and removals are counted, and insert and poll
+// record their latency.
+
+// Public Methods:
+// insert(element)             --> handle   O(1)             : adds element and returns a handle to it
+// add(element)                --> void     O(1)             : adds element
+// poll()                      --> element  O(log(n)) amort. : removes and returns root element
+// peek()                      --> element  O(1)             : returns root element
+// decreaseKey(handle, value)  --> void     O(1) amort.      : lowers the element of handle to value
+// delete(handle)              --> void     O(log(n)) amort. : removes the element of handle
+// create()                    --> heap     O(1)             : empty heap in natural ordering (static)
+// meld(other)                 --> void     O(1)             : moves all elements of other into this heap
+// isEmpty()                   --> boolean  O(1)
+// getSize()                   --> int      O(1)
+// writeTo(appendable, limit)  --> void     O(n)             : writes the trees of the root list in preorder, at most 'limit' elements
+// writeTo(channel, limit)     --> void     O(n)             : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+class FibonacciHeap<T> implements AddressableHeap<T> {
+    // degree of any node is at most log_phi(n) < 46 for n < 2^31
+    private static final int MAX_DEGREE = 64;
+
+    private Node<T> min; // minimum root; entry point to the root list
+    private int size;
+    private final Comparator<? super T> comparator;
+    private Owner owner = new Owner();
+
+    // scratch space of consolidate(), kept between polls: roots by degree, and the root list
+    private final Object[] byDegree = new Object[MAX_DEGREE];
+    private final List<Node<T>> roots = new ArrayList<>();
+
+    // identifies the heap that a node belongs to. Melding forwards the owner of the emptied
+    // heap to the owner of the receiving one, so meld stays O(1) and old handles still resolve.
+    private static final class Owner {
+        private Owner meldedInto;
+
+        private Owner resolve() {
+            Owner root = this;
+            while (root.meldedInto != null) {
+                root = root.meldedInto;
+            }
+            for (Owner trav = this; trav != root;) { // path compression
+                Owner next = trav.meldedInto;
+                trav.meldedInto = root;
+                trav = next;
+            }
+            return root;
+        }
+    }
+
+    private static class Node<T> implements AddressableHeap.Handle<T> {
+        private T data;
+        private Node<T> parent;
+        private Node<T> child; // any one child; children form a circular list
+        private Node<T> left;
+        private Node<T> right;
+        private int degree; // number of children
+        private boolean marked; // lost a child since it became a child itself
+        private boolean deleted;
+        private Owner owner;
+
+        public Node(T data) {
+            this.data = data;
+            this.left = this;
+            this.right = this;
+        }
+
+        @Override
+        public T getValue() {
+            return this.data;
+        }
+
+        @Override
+        public String toString() {
+            return this.data.toString();
+        }
+    }
+
+    public FibonacciHeap(Comparator<? super T> comparator) {
+        this.comparator = Objects.requireNonNull(comparator);
+        this.min = null;
+        this.size = 0;
+    }
+
+    // natural ordering; the bound keeps elements that are not Comparable out at compile time
+    public static <T extends Comparable<? super T>> FibonacciHeap<T> create() {
+        return new FibonacciHeap<>(Comparator.<T>naturalOrder());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    // each tree of the root list: root followed by its subtrees in parentheses, in preorder.
+    // Iterative, since cascading cuts can leave trees much deeper than log(n)
+    public void writeTo(Appendable out, int limit) throws IOException {
+        if (this.min == null) {
+            out.append("empty heap");
+            return;
+        }
+        Deque<Node<T>> open = new ArrayDeque<>(); // nodes whose child list is being written
+        int written = 0;
+        Node<T> first = this.min; // first node of the circular list trav is in
+        Node<T> trav = limit > 0 ? first : null;
+        while (trav != null) {
+            Utils.appendValue(out, trav.data);
+            if (++written == limit) {
+                break;
+            }
+            if (trav.child != null) {
+                out.append(" (");
+                open.push(trav);
+                trav = trav.child;
+                first = trav;
+                continue;
+            }
+            while (trav.right == first && !open.isEmpty()) { // last of its list: close the lists it ends
+                out.append(")");
+                trav = open.pop();
+                first = open.isEmpty() ? this.min : open.peek().child;
+            }
+            if (trav.right == first) { // last root
+                break;
+            }
+            out.append(" ");
+            trav = trav.right;
+        }
+        for (int i = open.size(); i > 0; i--) { // lists cut short by the limit
+            out.append(")");
+        }
+        if (written < this.size) {
+            out.append(written == 0 ? "... (" : " ... (");
+            Utils.appendNumber(out, this.size - written).append(" more)");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    private boolean isLess(Node<T> node1, Node<T> node2) {
+        return this.comparator.compare(node1.data, node2.data) < 0;
+    }
+
+    // splice the circular list starting at 'b' into the circular list starting at 'a'
+    private static <T> void splice(Node<T> a, Node<T> b) {
+        Node<T> aRight = a.right;
+        Node<T> bLeft = b.left;
+        a.right = b;
+        b.left = a;
+        bLeft.right = aRight;
+        aRight.left = bLeft;
+    }
+
+    // remove node from the circular list it is in, leaving it as a singleton list
+    private static <T> void unlink(Node<T> node) {
+        node.left.right = node.right;
+        node.right.left = node.left;
+        node.left = node;
+        node.right = node;
+    }
+
+    private void addToRootList(Node<T> node) {
+        node.parent = null;
+        node.marked = false;
+        if (this.min == null) {
+            this.min = node;
+        } else {
+            splice(this.min, node);
+            if (isLess(node, this.min)) {
+                this.min = node;
+            }
+        }
+    }
+
+    // make 'child' (a root) a child of 'parent' (another root)
+    private void link(Node<T> child, Node<T> parent) {
+        unlink(child);
+        child.parent = parent;
+        child.marked = false;
+        if (parent.child == null) {
+            parent.child = child;
+        } else {
+            splice(parent.child, child);
+        }
+        parent.degree++;
+    }
+
+    @SuppressWarnings("unchecked") // byDegree only ever holds nodes of this heap
+    private Node<T> rootOfDegree(int degree) {
+        return (Node<T>) this.byDegree[degree];
+    }
+
+    // merge roots of equal degree until all root degrees are distinct, then find the new min
+    private void consolidate() {
+        // collect roots first, since linking modifies the root list
+        List<Node<T>> roots = this.roots;
+        Node<T> trav = this.min;
+        do {
+            roots.add(trav);
+            trav = trav.right;
+        } while (trav != this.min);
+
+        int maxDegree = 0;
+        for (Node<T> node : roots) {
+            int degree = node.degree;
+            while (this.byDegree[degree] != null) {
+                Node<T> other = this.rootOfDegree(degree);
+                if (isLess(other, node)) {
+                    Node<T> tmp = node;
+                    node = other;
+                    other = tmp;
+                }
+                this.link(other, node);
+                this.byDegree[degree] = null;
+                degree++;
+            }
+            this.byDegree[degree] = node;
+            maxDegree = Math.max(maxDegree, degree);
+        }
+        roots.clear();
+
+        this.min = null;
+        for (int degree = 0; degree <= maxDegree; degree++) {
+            Node<T> node = this.rootOfDegree(degree);
+            if (node != null) {
+                this.byDegree[degree] = null; // leave the table empty for the next poll
+                if (this.min == null || isLess(node, this.min)) {
+                    this.min = node;
+                }
+            }
+        }
+    }
+
+    // move node (not a root) to the root list, then cascade up through marked parents
+    private void cutAndCascade(Node<T> node) {
+        Node<T> parent = node.parent;
+        if (parent.child == node) {
+            parent.child = node.right == node ? null : node.right;
+        }
+        unlink(node);
+        parent.degree--;
+        this.addToRootList(node);
+
+        if (parent.parent != null) {
+            if (parent.marked) {
+                this.cutAndCascade(parent);
+            } else {
+                parent.marked = true;
+            }
+        }
+    }
+
+    private Node<T> checkHandle(AddressableHeap.Handle<T> handle) {
+        if (!(handle instanceof Node)) {
+            throw new IllegalArgumentException("Invalid handle");
+        }
+        Node<T> node = (Node<T>) handle;
+        if (node.deleted) {
+            throw new IllegalArgumentException("Handle of a removed element");
+        }
+        node.owner = node.owner.resolve();
+        if (node.owner != this.owner) {
+            throw new IllegalArgumentException("Handle of another heap");
+        }
+        return node;
+    }
+
+    @Override
+    public AddressableHeap.Handle<T> insert(T elem) { // O(1)
+        if (elem == null) {
+            throw new IllegalArgumentException();
+        }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        Node<T> node = new Node<>(elem);
+        node.owner = this.owner;
+        this.addToRootList(node);
+        this.size++;
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+            Metrics.HEAP_ADD_NANOS.record(System.nanoTime() - start);
+        }
+        return node;
+    }
+
+    @Override
+    public void add(T elem) { // O(1)
+        this.insert(elem);
+    }
+
+    private T removeMin() {
+        if (this.min == null) {
+            return null;
+        }
+        Node<T> node = this.min;
+
+        // children of the removed root become roots
+        if (node.child != null) {
+            Node<T> child = node.child;
+            do {
+                child.parent = null;
+                child.marked = false;
+                child = child.right;
+            } while (child != node.child);
+            splice(node, node.child);
+            node.child = null;
+        }
+
+        Node<T> next = node.right;
+        unlink(node);
+        node.deleted = true;
+        this.size--;
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+        }
+
+        if (next == node) { // it was the only root
+            this.min = null;
+        } else {
+            this.min = next;
+            this.consolidate();
+        }
+        return node.data;
+    }
+
+    // remove and return root, returns null if heap is empty
+    @Override
+    public T poll() {
+        if (!Metrics.ENABLED) {
+            return this.removeMin();
+        }
+        long start = System.nanoTime();
+        T root = this.removeMin();
+        Metrics.HEAP_POLL_NANOS.record(System.nanoTime() - start);
+        return root;
+    }
+
+    @Override
+    public T peek() {
+        return this.min == null ? null : this.min.data;
+    }
+
+    @Override
+    public void decreaseKey(AddressableHeap.Handle<T> handle, T newValue) { // O(1) amortized
+        Node<T> node = this.checkHandle(handle);
+        if (newValue == null || this.comparator.compare(newValue, node.data) > 0) {
+            throw new IllegalArgumentException("New value is greater than the current one");
+        }
+        node.data = newValue;
+        if (node.parent != null && isLess(node, node.parent)) {
+            this.cutAndCascade(node);
+        }
+        if (isLess(node, this.min)) {
+            this.min = node;
+        }
+    }
+
+    @Override
+    public void delete(AddressableHeap.Handle<T> handle) {
+        // equivalent to decreasing the key to minus infinity, then polling
+        Node<T> node = this.checkHandle(handle);
+        if (node.parent != null) {
+            this.cutAndCascade(node);
+        }
+        this.min = node;
+        this.removeMin();
+    }
+
+    @Override
+    public void meld(AddressableHeap<T> other) { // O(1)
+        if (!(other instanceof FibonacciHeap) || other == this) {
+            throw new IllegalArgumentException("Can only meld another FibonacciHeap");
+        }
+        FibonacciHeap<T> that = (FibonacciHeap<T>) other;
+        if (that.min != null) {
+            if (this.min == null) {
+                this.min = that.min;
+            } else {
+                splice(this.min, that.min);
+                if (isLess(that.min, this.min)) {
+                    this.min = that.min;
+                }
+            }
+        }
+        this.size += that.size;
+        that.min = null;
+        that.size = 0;
+        that.owner.meldedInto = this.owner;
+        that.owner = new Owner();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    public static void main(String[] args) {
+        FibonacciHeap<Integer> heap = FibonacciHeap.create();
+        List<AddressableHeap.Handle<Integer>> handles = new ArrayList<>();
+        for (int i : new int[] { 9, 4, 7, 1, 8, 2, 6 }) {
+            handles.add(heap.insert(i));
+        }
+        System.out.println(heap);
+        System.out.println(heap.poll());
+        System.out.println(heap);
+
+        heap.decreaseKey(handles.get(0), 0); // 9 -> 0
+        System.out.println(heap);
+        heap.delete(handles.get(2)); // 7
+        System.out.println(heap.getSize());
+
+        FibonacciHeap<Integer> other = FibonacciHeap.create();
+        other.add(3);
+        other.add(5);
+        heap.meld(other);
+        System.out.println(other.isEmpty());
+
+        while (!heap.isEmpty()) {
+            System.out.print(heap.poll() + " ");
+        }
+        System.out.println();
+    }
+}
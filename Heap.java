@@ -0,0 +1,23 @@
+// Common interface of the priority queues in this repo ("PriorityQueue.java",
+// "PairingHeap.java", "FibonacciHeap.java", ...).
+// The root always has the highest priority for removal, i.e. it is the smallest
+// element by the heap's ordering.
+
+// Methods:
+// add(element)   --> void     : adds element to the heap
+// poll()         --> element  : removes and returns the root element, or null if the heap is empty
+// peek()         --> element  : returns the root element, or null if the heap is empty
+// isEmpty()      --> boolean
+// getSize()      --> int      : returns the number of elements
+
+interface Heap<T> {
+    void add(T elem);
+
+    T poll();
+
+    T peek();
+
+    boolean isEmpty();
+
+    int getSize();
+}
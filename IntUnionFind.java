@@ -0,0 +1,360 @@
+// This program implements UnionFind (disjoint-set) directly on dense integer ids 0..n-1.
+// It has no maps and does no boxing: find() only reads and writes the parent[] array.
+// "UnionFind.java" uses it internally after mapping its elements to ids.
+
+// Union by size, with full path compression in find(); ~O(1) is amortized (inverse Ackermann).
+// New ids can be added at any time; parent[] and size[] grow by doubling.
+// With "Metrics.java" enabled, find() records the length of each path before compressing it.
+
+// The bulk methods take parallel primitive arrays and loop over them without allocating.
+// Their parallel variants split the arrays across a ForkJoinPool; since find() writes to
+// parent[] while compressing, the parallel path uses a read-only find that only follows
+// the parent pointers. It must not run concurrently with unify() or add() (for concurrent
+// unions, see "ConcurrentUnionFind.java"). The parallel unifyAll works block by block: the
+// pairs of a block that are already connected are filtered out in parallel, and only the
+// remaining pairs are unified, sequentially. Once most ids are connected, most pairs are
+// filtered out, so most of the finds run in parallel.
+
+// Public Methods:
+// IntUnionFind(n)                --> IntUnionFind  O(n)      : n singleton components with ids 0..n-1
+// add()                          --> int           O(1)+     : adds a singleton component and returns its id
+// addAll(count)                  --> int           O(count)+ : adds count singleton components, returns the first new id
+// unify(id1, id2)                --> boolean       ~O(1)     : merges the two components; false if they were already connected
+// find(id)                       --> int           ~O(1)     : returns the root id of the component of id
+// getComponentSize(id)           --> int           ~O(1)     : returns the size of the component of id
+// areConnected(id1, id2)         --> boolean       ~O(1)     : checks if id1 and id2 are in the same component
+// getComponentCount()            --> int           O(1)      : returns the number of components
+// getSize()                      --> int           O(1)      : returns the number of ids
+// unifyAll(a, b)                 --> int           ~O(m)     : unifies a[i] with b[i] for every i; returns the number of merges
+// unifyAll(a, b, parallel)       --> int           ~O(m)     : same, optionally filtering connected pairs in parallel
+// areConnectedBatch(a, b, out)   --> void          ~O(m)     : out[i] = areConnected(a[i], b[i])
+// areConnectedBatch(a, b, out, parallel) --> void  ~O(m/p)   : same, optionally split across the common ForkJoinPool
+// findAll(in, out)               --> void          ~O(m)     : out[i] = find(in[i])
+// findAll(in, out, parallel)     --> void          ~O(m/p)   : same, optionally split across the common ForkJoinPool
+// components()                   --> int[][]       O(n)      : returns the members of every component, in ascending
+//                                                              order; components are ordered by their smallest member
+// writeTo(appendable, limit)     --> void          ~O(n)     : writes "id -> root" for at most 'limit' ids
+// writeTo(channel, limit)        --> void          ~O(n)     : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+class IntUnionFind {
+    // chunks of at most this many queries are answered sequentially by one task
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+    // the parallel unifyAll filters and unifies the pairs in this many blocks
+    private static final int UNIFY_BLOCKS = 16;
+
+    private int nElems;
+    private int nComp; // number of components
+
+    // parent[i] is the parent id of i; i is a root if parent[i] == i
+    private int[] parent;
+
+    // size[i] is the size of the component rooted at i; only valid for roots
+    private int[] size;
+
+    public IntUnionFind() {
+        this(0);
+    }
+
+    public IntUnionFind(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Invalid size " + n);
+        }
+        this.parent = new int[Math.max(n, 2)];
+        this.size = new int[Math.max(n, 2)];
+        this.nElems = 0;
+        this.nComp = 0;
+        this.addAll(n);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        int n = Math.min(this.nElems, Math.max(limit, 0));
+        for (int i = 0; i < n; i++) {
+            Utils.appendNumber(out, i).append(" -> ");
+            Utils.appendNumber(out, this.findReadOnly(i)).append("\n");
+        }
+        if (n < this.nElems) {
+            out.append("... (");
+            Utils.appendNumber(out, this.nElems - n).append(" more)\n");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    private void expandCapacity(int minCapacity) {
+        // double the capacity
+        int capacity = this.parent.length;
+        int oldCapacity = capacity;
+        while (capacity < minCapacity) {
+            capacity = (int) Math.min(Integer.MAX_VALUE - 8, 2L * capacity);
+        }
+        this.parent = java.util.Arrays.copyOf(this.parent, capacity);
+        this.size = java.util.Arrays.copyOf(this.size, capacity);
+        if (Metrics.ENABLED) {
+            Metrics.resized("IntUnionFind", oldCapacity, capacity);
+        }
+    }
+
+    public int add() {
+        return this.addAll(1);
+    }
+
+    public int addAll(int count) {
+        if (count < 0 || this.nElems + (long) count > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid count " + count);
+        }
+        int first = this.nElems;
+        if (first + count > this.parent.length) {
+            this.expandCapacity(first + count);
+        }
+        for (int i = first; i < first + count; i++) {
+            this.parent[i] = i;
+            this.size[i] = 1;
+        }
+        this.nElems += count;
+        this.nComp += count;
+        return first;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= this.nElems) {
+            throw new IllegalArgumentException("Invalid id " + id);
+        }
+    }
+
+    public int find(int id) {
+        this.checkId(id);
+        int root = id;
+        int pathLength = 0;
+        while (root != this.parent[root]) {
+            root = this.parent[root];
+            pathLength++;
+        }
+        if (Metrics.ENABLED) {
+            Metrics.UNION_FIND_OPS.increment();
+            Metrics.UNION_FIND_PATH_LENGTH.record(pathLength);
+        }
+        // Path compression: Set the parent of every element on the path directly to the root
+        while (id != root) {
+            int next = this.parent[id];
+            this.parent[id] = root;
+            id = next;
+        }
+        return root;
+    }
+
+    // find() without path compression; safe to call from several threads at once
+    // (also used by the parallel filter of "MinimumSpanningForest.java")
+    int findReadOnly(int id) {
+        this.checkId(id);
+        while (id != this.parent[id]) {
+            id = this.parent[id];
+        }
+        return id;
+    }
+
+    public boolean unify(int id1, int id2) {
+        int root1 = this.find(id1);
+        int root2 = this.find(id2);
+        if (root1 == root2) { // already unified
+            return false;
+        }
+
+        // merge smaller component into the larger component
+        if (this.size[root1] < this.size[root2]) {
+            this.parent[root1] = root2;
+            this.size[root2] += this.size[root1];
+        } else {
+            this.parent[root2] = root1;
+            this.size[root1] += this.size[root2];
+        }
+        this.nComp--;
+        return true;
+    }
+
+    public int getComponentSize(int id) {
+        return this.size[this.find(id)];
+    }
+
+    public boolean areConnected(int id1, int id2) {
+        return this.find(id1) == this.find(id2);
+    }
+
+    public int getComponentCount() {
+        return this.nComp;
+    }
+
+    public int getSize() {
+        return this.nElems;
+    }
+
+    private static void checkLengths(int length1, int length2, int length3) {
+        if (length1 != length2 || length1 != length3) {
+            throw new IllegalArgumentException("Array lengths differ: " + length1 + ", " + length2 + ", " + length3);
+        }
+    }
+
+    public int unifyAll(int[] ids1, int[] ids2) {
+        checkLengths(ids1.length, ids2.length, ids2.length);
+        int nMerged = 0;
+        for (int i = 0; i < ids1.length; i++) {
+            if (this.unify(ids1[i], ids2[i])) {
+                nMerged++;
+            }
+        }
+        return nMerged;
+    }
+
+    public int unifyAll(int[] ids1, int[] ids2, boolean parallel) {
+        checkLengths(ids1.length, ids2.length, ids2.length);
+        if (!parallel || ids1.length <= PARALLEL_THRESHOLD) {
+            return this.unifyAll(ids1, ids2);
+        }
+        boolean[] connected = new boolean[ids1.length];
+        int blockSize = Math.max(PARALLEL_THRESHOLD, ids1.length / UNIFY_BLOCKS);
+        int nMerged = 0;
+        for (int from = 0; from < ids1.length; from += blockSize) {
+            int to = (int) Math.min(ids1.length, (long) from + blockSize);
+            ForkJoinPool.commonPool().invoke(new BatchTask(ids1, ids2, null, connected, from, to));
+            for (int i = from; i < to; i++) {
+                if (!connected[i] && this.unify(ids1[i], ids2[i])) {
+                    nMerged++;
+                }
+            }
+        }
+        return nMerged;
+    }
+
+    public void areConnectedBatch(int[] ids1, int[] ids2, boolean[] out) {
+        this.areConnectedBatch(ids1, ids2, out, false);
+    }
+
+    public void areConnectedBatch(int[] ids1, int[] ids2, boolean[] out, boolean parallel) {
+        checkLengths(ids1.length, ids2.length, out.length);
+        if (parallel && ids1.length > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new BatchTask(ids1, ids2, null, out, 0, ids1.length));
+            return;
+        }
+        for (int i = 0; i < ids1.length; i++) {
+            out[i] = this.find(ids1[i]) == this.find(ids2[i]);
+        }
+    }
+
+    public void findAll(int[] in, int[] out) {
+        this.findAll(in, out, false);
+    }
+
+    public void findAll(int[] in, int[] out, boolean parallel) {
+        checkLengths(in.length, out.length, out.length);
+        if (parallel && in.length > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new BatchTask(in, null, out, null, 0, in.length));
+            return;
+        }
+        for (int i = 0; i < in.length; i++) {
+            out[i] = this.find(in[i]);
+        }
+    }
+
+    // answers findAll (ids2 == null) or areConnectedBatch (ids2 != null) over [from, to)
+    private class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] ids1;
+        private final int[] ids2;
+        private final int[] rootsOut;
+        private final boolean[] connectedOut;
+        private final int from;
+        private final int to;
+
+        private BatchTask(int[] ids1, int[] ids2, int[] rootsOut, boolean[] connectedOut, int from, int to) {
+            this.ids1 = ids1;
+            this.ids2 = ids2;
+            this.rootsOut = rootsOut;
+            this.connectedOut = connectedOut;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > PARALLEL_THRESHOLD) {
+                int mid = (this.from + this.to) >>> 1;
+                invokeAll(new BatchTask(this.ids1, this.ids2, this.rootsOut, this.connectedOut, this.from, mid),
+                        new BatchTask(this.ids1, this.ids2, this.rootsOut, this.connectedOut, mid, this.to));
+                return;
+            }
+            IntUnionFind uf = IntUnionFind.this;
+            if (this.ids2 == null) {
+                for (int i = this.from; i < this.to; i++) {
+                    this.rootsOut[i] = uf.findReadOnly(this.ids1[i]);
+                }
+            } else {
+                for (int i = this.from; i < this.to; i++) {
+                    this.connectedOut[i] = uf.findReadOnly(this.ids1[i]) == uf.findReadOnly(this.ids2[i]);
+                }
+            }
+        }
+    }
+
+    public int[][] components() { // O(n)
+        // number the components by their smallest member, in one pass over the ids
+        int[] indexOfRoot = new int[this.nElems];
+        java.util.Arrays.fill(indexOfRoot, -1);
+        int[][] components = new int[this.nComp][];
+        int[] filled = new int[this.nComp];
+        int nFound = 0;
+        for (int i = 0; i < this.nElems; i++) {
+            int root = this.find(i);
+            if (indexOfRoot[root] == -1) {
+                indexOfRoot[root] = nFound;
+                components[nFound] = new int[this.size[root]];
+                nFound++;
+            }
+            int c = indexOfRoot[root];
+            components[c][filled[c]++] = i;
+        }
+        return components;
+    }
+
+    public static void main(String[] args) {
+        IntUnionFind uf = new IntUnionFind(6);
+        uf.addAll(2);
+        uf.unify(0, 1);
+        uf.unify(2, 3);
+        uf.unify(1, 3);
+        uf.unify(5, 6);
+        System.out.println(uf);
+        System.out.println(uf.areConnected(0, 2));
+        System.out.println(uf.areConnected(0, 5));
+        System.out.println(uf.getComponentSize(3));
+        System.out.println(uf.getComponentCount());
+
+        int[] roots = new int[4];
+        uf.findAll(new int[] { 0, 2, 5, 7 }, roots);
+        Utils.printAry(roots);
+        boolean[] connected = new boolean[2];
+        uf.areConnectedBatch(new int[] { 0, 4 }, new int[] { 3, 6 }, connected, true);
+        System.out.println(java.util.Arrays.toString(connected));
+        System.out.println(java.util.Arrays.deepToString(uf.components()));
+    }
+}
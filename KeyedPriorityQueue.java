@@ -0,0 +1,294 @@
+// This program implements a keyed Priority Queue (min-heap on long priorities).
+
+// Every key appears at most once and carries a long priority; the key with the smallest
+// priority is at the root. Keys are mapped to stable slots through a hash map of primitive
+// ints ("ObjectIntHashMap.java"), and the heap itself only moves ints and longs:
+//    slotOf            --> key to slot (only consulted at the API boundary)
+//    priorities[index] --> priority of the key at heap index 'index' (kept next to the heap
+//                          order, so comparisons during sink/swim read one primitive array)
+//    slotAt[index]     --> slot of the key at heap index 'index'
+//    positionOf[slot]  --> heap index of the key in slot
+// Changing the priority of a key is therefore one hash lookup plus an O(log(n)) sift,
+// without the remove-then-add and duplicate-value ambiguity of "PriorityQueueQuickRemoval.java".
+
+// Public Methods:
+// put(key, priority)             --> void      O(log(n))   : adds key, or changes its priority if already present
+// updatePriority(key, priority)  --> boolean   O(log(n))   : changes the priority of key; false if key is absent
+// remove(key)                    --> boolean   O(log(n))   : removes key; false if key is absent
+// getPriority(key)               --> long      O(1)        : returns the priority of key
+// containsKey(key)               --> boolean   O(1)
+// pollEntry()                    --> entry     O(log(n))   : removes and returns the (key, priority) with the smallest
+//                                                            priority, or null if empty
+// pollKey()                      --> key       O(log(n))   : like pollEntry(), but returns only the key
+// peekKey()                      --> key       O(1)        : returns the key with the smallest priority, or null if empty
+// peekPriority()                 --> long      O(1)        : returns the smallest priority
+// isEmpty()                      --> boolean   O(1)
+// getSize()                      --> int       O(1)
+// writeTo(appendable, limit)     --> void      O(n)        : writes the entries in heap order, at most 'limit' entries
+// writeTo(channel, limit)        --> void      O(n)        : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+
+class KeyedPriorityQueue<K> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int heapSize; // current number of keys
+    private long[] priorities;
+    private int[] slotAt;
+    private int[] positionOf;
+    private Object[] keys; // keys[slot] is the key stored in slot
+    private int nextSlot; // slots below this have been used at least once
+    private int[] freeSlots; // stack of slots released by removals
+    private int nFreeSlots;
+    private final ObjectIntHashMap<K> slotOf;
+
+    public KeyedPriorityQueue() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public KeyedPriorityQueue(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.priorities = new long[capacity];
+        this.slotAt = new int[capacity];
+        this.positionOf = new int[capacity];
+        this.keys = new Object[capacity];
+        this.freeSlots = new int[capacity];
+        this.slotOf = new ObjectIntHashMap<>(capacity);
+        this.heapSize = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    // key=priority entries in heap order
+    public void writeTo(Appendable out, int limit) throws IOException {
+        int n = Math.min(this.heapSize, Math.max(limit, 0));
+        out.append("[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            Utils.appendValue(out, this.keys[this.slotAt[i]]).append("=");
+            Utils.appendNumber(out, this.priorities[i]);
+        }
+        if (n < this.heapSize) {
+            out.append(n == 0 ? "... (" : ", ... (");
+            Utils.appendNumber(out, this.heapSize - n).append(" more)");
+        }
+        out.append("]");
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    @SuppressWarnings("unchecked") // only keys of type K are stored in this.keys
+    private K keyOf(int slot) {
+        return (K) this.keys[slot];
+    }
+
+    private void swap(int index1, int index2) {
+        long priority = this.priorities[index1];
+        this.priorities[index1] = this.priorities[index2];
+        this.priorities[index2] = priority;
+
+        int slot1 = this.slotAt[index1];
+        int slot2 = this.slotAt[index2];
+        this.slotAt[index1] = slot2;
+        this.slotAt[index2] = slot1;
+        this.positionOf[slot1] = index2;
+        this.positionOf[slot2] = index1;
+    }
+
+    // top to bottom node sink, O(log(n))
+    private void sink(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left >= this.heapSize) {
+                return;
+            }
+            int smaller = right < this.heapSize && this.priorities[right] < this.priorities[left] ? right : left;
+            if (this.priorities[smaller] >= this.priorities[index]) {
+                return;
+            }
+            this.swap(index, smaller);
+            index = smaller;
+        }
+    }
+
+    // bottom to up node swim, O(log(n))
+    private void swim(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (this.priorities[index] >= this.priorities[parent]) {
+                return;
+            }
+            this.swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private int allocateSlot() {
+        if (this.nFreeSlots > 0) {
+            return this.freeSlots[--this.nFreeSlots];
+        }
+        if (this.nextSlot == this.keys.length) {
+            int capacity = this.keys.length * 2;
+            this.priorities = Arrays.copyOf(this.priorities, capacity);
+            this.slotAt = Arrays.copyOf(this.slotAt, capacity);
+            this.positionOf = Arrays.copyOf(this.positionOf, capacity);
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.freeSlots = Arrays.copyOf(this.freeSlots, capacity);
+        }
+        return this.nextSlot++;
+    }
+
+    private void setPriorityAt(int index, long priority) {
+        long old = this.priorities[index];
+        this.priorities[index] = priority;
+        if (priority < old) {
+            this.swim(index);
+        } else if (priority > old) {
+            this.sink(index);
+        }
+    }
+
+    public void put(K key, long priority) { // O(log(n))
+        if (key == null) {
+            throw new IllegalArgumentException();
+        }
+        int slot = this.slotOf.get(key);
+        if (slot != -1) {
+            this.setPriorityAt(this.positionOf[slot], priority);
+            return;
+        }
+        int newSlot = this.allocateSlot();
+        this.keys[newSlot] = key;
+        this.slotOf.put(key, newSlot);
+        this.priorities[this.heapSize] = priority;
+        this.slotAt[this.heapSize] = newSlot;
+        this.positionOf[newSlot] = this.heapSize;
+        this.heapSize++;
+        this.swim(this.heapSize - 1);
+    }
+
+    public boolean updatePriority(K key, long priority) { // O(log(n))
+        int slot = this.slotOf.get(key);
+        if (slot == -1) {
+            return false;
+        }
+        this.setPriorityAt(this.positionOf[slot], priority);
+        return true;
+    }
+
+    private K removeAt(int index) {
+        int slot = this.slotAt[index];
+        K key = this.keyOf(slot);
+        this.swap(index, this.heapSize - 1);
+        this.heapSize--;
+
+        this.slotOf.remove(key);
+        this.keys[slot] = null;
+        this.freeSlots[this.nFreeSlots++] = slot;
+
+        if (index < this.heapSize) {
+            this.sink(index);
+            this.swim(index);
+        }
+        return key;
+    }
+
+    public boolean remove(K key) { // O(log(n))
+        int slot = this.slotOf.get(key);
+        if (slot == -1) {
+            return false;
+        }
+        this.removeAt(this.positionOf[slot]);
+        return true;
+    }
+
+    public long getPriority(K key) { // O(1)
+        int slot = this.slotOf.get(key);
+        if (slot == -1) {
+            throw new IllegalArgumentException("Unknown key " + key);
+        }
+        return this.priorities[this.positionOf[slot]];
+    }
+
+    public boolean containsKey(K key) { // O(1)
+        return this.slotOf.containsKey(key);
+    }
+
+    public Map.Entry<K, Long> pollEntry() {
+        if (this.heapSize == 0) {
+            return null;
+        }
+        long priority = this.priorities[0];
+        return new AbstractMap.SimpleImmutableEntry<>(this.removeAt(0), priority);
+    }
+
+    public K pollKey() {
+        if (this.heapSize == 0) {
+            return null;
+        }
+        return this.removeAt(0);
+    }
+
+    public K peekKey() {
+        if (this.heapSize == 0) {
+            return null;
+        }
+        return this.keyOf(this.slotAt[0]);
+    }
+
+    public long peekPriority() {
+        if (this.heapSize == 0) {
+            throw new IllegalStateException("Empty priority queue");
+        }
+        return this.priorities[0];
+    }
+
+    public boolean isEmpty() {
+        return this.heapSize == 0;
+    }
+
+    public int getSize() {
+        return this.heapSize;
+    }
+
+    public static void main(String[] args) {
+        KeyedPriorityQueue<String> deadlines = new KeyedPriorityQueue<>();
+        deadlines.put("job-a", 300);
+        deadlines.put("job-b", 100);
+        deadlines.put("job-c", 200);
+        deadlines.put("job-d", 400);
+        System.out.println(deadlines);
+
+        deadlines.updatePriority("job-d", 50);
+        deadlines.put("job-b", 250); // existing key: priority is changed
+        deadlines.remove("job-c");
+        System.out.println(deadlines);
+        System.out.println(deadlines.getPriority("job-a"));
+        System.out.println(deadlines.peekKey() + " " + deadlines.peekPriority());
+
+        while (!deadlines.isEmpty()) {
+            System.out.println(deadlines.pollEntry());
+        }
+    }
+}
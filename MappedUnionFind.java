@@ -0,0 +1,272 @@
+// This program implements UnionFind on dense long ids 0..n-1, with its state in a
+// memory-mapped file instead of the Java heap, for more elements than fit in heap arrays
+// (or in an int index).
+
+// The file holds one long per id, after a small header:
+//    parent[i] >= 0  --> parent id of i
+//    parent[i] <  0  --> i is a root and -parent[i] is the size of its component
+// Storing the size of a root in its own parent slot keeps the file at 8 bytes per id
+// instead of 16 for separate parent[] and size[] arrays. find() uses union by size and
+// full path compression like "IntUnionFind.java".
+
+// A MappedByteBuffer covers at most 2GB, so the ids are spread over segments of 2^27 ids
+// (1GB) each; id i is at byte (i & SEGMENT_MASK) * 8 of segment i >>> SEGMENT_SHIFT.
+// The operating system pages segments in and out on demand, so only the hot part of the
+// forest needs to be in memory.
+
+// File layout (big-endian):
+//    header (4096 bytes)  --> magic (int), version (int), n (long), component count (long)
+//    parent               --> n longs, starting at byte 4096
+// Every write goes straight to the mapping, so a file that was force()d or close()d can be
+// reopened with MappedUnionFind(path) and used without recomputing anything. A process that
+// dies in the middle of unify() may leave that one union half-written.
+
+// Public Methods:
+// MappedUnionFind(path, n)       --> MappedUnionFind  O(n)   : creates (or overwrites) path with n singleton components
+// MappedUnionFind(path)          --> MappedUnionFind  O(1)   : reopens a file created by MappedUnionFind(path, n)
+// unify(id1, id2)                --> boolean   ~O(1)   : merges the two components; false if they were already connected
+// find(id)                       --> long      ~O(1)   : returns the root id of the component of id
+// getComponentSize(id)           --> long      ~O(1)   : returns the size of the component of id
+// areConnected(id1, id2)         --> boolean   ~O(1)   : checks if id1 and id2 are in the same component
+// getComponentCount()            --> long      O(1)    : returns the number of components
+// getSize()                      --> long      O(1)    : returns the number of ids
+// force()                        --> void              : writes every change to the storage device
+// close()                        --> void              : force()s and closes the file
+// writeTo(appendable, limit)     --> void      O(n)          : writes each id with its root, at most 'limit' ids
+// writeTo(channel, limit)        --> void      O(n)          : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class MappedUnionFind implements Closeable {
+    private static final int MAGIC = 0x55464D31; // "UFM1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4096;
+    private static final int N_OFFSET = 8;
+    private static final int COMPONENT_COUNT_OFFSET = 16;
+
+    private static final int SEGMENT_SHIFT = 27; // 2^27 ids of 8 bytes = 1GB per segment
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    // largest n whose parent longs fit in a file after the header
+    private static final long MAX_SIZE = (Long.MAX_VALUE - HEADER_SIZE) / 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] segments;
+    private final long nElems;
+    private long nComp; // number of components; mirrored in the header
+
+    public MappedUnionFind(Path path, long n) throws IOException {
+        if (n < 0 || n > MAX_SIZE) {
+            throw new IllegalArgumentException("Invalid size " + n);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.nElems = n;
+        try {
+            this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            this.segments = this.mapSegments();
+            for (long i = 0; i < n; i++) {
+                this.setParent(i, -1); // a root of size 1
+            }
+            this.header.putInt(0, MAGIC);
+            this.header.putInt(4, VERSION);
+            this.header.putLong(N_OFFSET, n);
+            this.setComponentCount(n);
+        } catch (Throwable t) {
+            closeAfterFailure(this.channel, t);
+            throw t;
+        }
+    }
+
+    public MappedUnionFind(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            throw new IOException("No such file " + path);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (this.channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a MappedUnionFind file");
+            }
+            this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            this.nElems = this.header.getLong(N_OFFSET);
+            // n is checked against MAX_SIZE first, so the size of the parent longs cannot overflow
+            if (this.header.getInt(0) != MAGIC || this.header.getInt(4) != VERSION || this.nElems < 0
+                    || this.nElems > MAX_SIZE || this.channel.size() < HEADER_SIZE + 8 * this.nElems) {
+                throw new IOException("Not a MappedUnionFind file, or an incompatible version");
+            }
+            this.nComp = this.header.getLong(COMPONENT_COUNT_OFFSET);
+            this.segments = this.mapSegments();
+        } catch (Throwable t) {
+            closeAfterFailure(this.channel, t);
+            throw t;
+        }
+    }
+
+    // closes the channel of a failed constructor, keeping the original failure
+    private static void closeAfterFailure(FileChannel channel, Throwable failure) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private MappedByteBuffer[] mapSegments() throws IOException {
+        int nSegments = (int) ((this.nElems + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        MappedByteBuffer[] segments = new MappedByteBuffer[nSegments];
+        for (int s = 0; s < nSegments; s++) {
+            long first = (long) s << SEGMENT_SHIFT;
+            long count = Math.min(this.nElems - first, 1L << SEGMENT_SHIFT);
+            segments[s] = this.channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + 8 * first, 8 * count);
+        }
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        long n = Math.min(this.nElems, Math.max(limit, 0));
+        for (long i = 0; i < n; i++) {
+            Utils.appendNumber(out, i).append(" -> ");
+            Utils.appendNumber(out, this.find(i)).append("\n");
+        }
+        if (n < this.nElems) {
+            out.append("... (");
+            Utils.appendNumber(out, this.nElems - n).append(" more)\n");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    private long getParent(long id) {
+        return this.segments[(int) (id >>> SEGMENT_SHIFT)].getLong((int) (id & SEGMENT_MASK) << 3);
+    }
+
+    private void setParent(long id, long value) {
+        this.segments[(int) (id >>> SEGMENT_SHIFT)].putLong((int) (id & SEGMENT_MASK) << 3, value);
+    }
+
+    private void setComponentCount(long nComp) {
+        this.nComp = nComp;
+        this.header.putLong(COMPONENT_COUNT_OFFSET, nComp);
+    }
+
+    private void checkId(long id) {
+        if (id < 0 || id >= this.nElems) {
+            throw new IllegalArgumentException("Invalid id " + id);
+        }
+    }
+
+    public long find(long id) {
+        this.checkId(id);
+        long root = id;
+        long p;
+        while ((p = this.getParent(root)) >= 0) {
+            root = p;
+        }
+        // Path compression: Set the parent of every element on the path directly to the root
+        while (id != root) {
+            long next = this.getParent(id);
+            if (next != root) {
+                this.setParent(id, root);
+            }
+            id = next;
+        }
+        return root;
+    }
+
+    public boolean unify(long id1, long id2) {
+        long root1 = this.find(id1);
+        long root2 = this.find(id2);
+        if (root1 == root2) { // already unified
+            return false;
+        }
+
+        // merge smaller component into the larger component
+        long size1 = -this.getParent(root1);
+        long size2 = -this.getParent(root2);
+        if (size1 < size2) {
+            this.setParent(root1, root2);
+            this.setParent(root2, -(size1 + size2));
+        } else {
+            this.setParent(root2, root1);
+            this.setParent(root1, -(size1 + size2));
+        }
+        this.setComponentCount(this.nComp - 1);
+        return true;
+    }
+
+    public long getComponentSize(long id) {
+        return -this.getParent(this.find(id));
+    }
+
+    public boolean areConnected(long id1, long id2) {
+        return this.find(id1) == this.find(id2);
+    }
+
+    public long getComponentCount() {
+        return this.nComp;
+    }
+
+    public long getSize() {
+        return this.nElems;
+    }
+
+    public void force() {
+        for (MappedByteBuffer segment : this.segments) {
+            segment.force();
+        }
+        this.header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.force();
+        this.channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        long n = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        Path path = Files.createTempFile("union-find", ".bin");
+        try {
+            try (MappedUnionFind uf = new MappedUnionFind(path, n)) {
+                java.util.Random random = new java.util.Random(42);
+                for (long i = 0; i < n; i++) {
+                    uf.unify((long) (random.nextDouble() * n), (long) (random.nextDouble() * n));
+                }
+                System.out.println(uf.getComponentCount() + " components, size of the component of 0: "
+                        + uf.getComponentSize(0));
+                uf.unify(0, n - 1);
+            }
+
+            // reopen without recomputing
+            try (MappedUnionFind uf = new MappedUnionFind(path)) {
+                System.out.println(uf.getSize() + " ids, " + uf.getComponentCount() + " components");
+                System.out.println(uf.areConnected(0, n - 1) + " " + uf.getComponentSize(n - 1));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+// This program implements an opt-in instrumentation layer for the structures of this
+// repository: operation counts, resize events, heap sift depths, union-find path lengths
+// and latency histograms, exposed through JMX and JFR.
+
+// It is off by default and enabled with a system property:
+
+// java -Ddatastructures.metrics=true ...
+
+// Every hook in the structures is written as
+//    if (Metrics.ENABLED) { ... }
+// ENABLED is a static final boolean, so when it is false the JIT folds the condition and
+// drops the hook together with any bookkeeping that only feeds it; the disabled cost is zero.
+
+// Histograms are log-linear, in the style of HdrHistogram: values below 16 get a bucket
+// each, larger values get 8 buckets per power of two, so any recorded value is reported
+// within 12.5% and a histogram is a fixed array of 488 counters whatever the range.
+// Recording is lock-free (LongAdder and AtomicLongArray).
+
+// When enabled, the metrics are:
+//    registered as the MXBean "datastructures:type=Metrics" (see "MetricsMXBean.java"),
+//    so jconsole or any JMX client can read and reset them;
+//    emitted as JFR events when a flight recording is running: "datastructures.Resize"
+//    for every resize of a backing array, and "datastructures.MetricsSnapshot" once per
+//    second with the counters and 99th percentiles.
+
+// Public Methods:
+// Histogram.record(value)          --> void     O(1)    : records a non-negative value (negative values count as 0)
+// Histogram.getCount()             --> long     O(1)
+// Histogram.getMax()               --> long     O(1)
+// Histogram.getMean()              --> double   O(1)
+// Histogram.getValueAtPercentile(p)--> long     O(488)  : returns the value below which p percent of the values fall
+// Histogram.reset()                --> void     O(488)
+// resized(structure, old, new)     --> void     O(1)    : records a resize of a backing array
+// reset()                          --> void             : resets every counter and histogram
+// summary()                        --> String           : returns every counter and histogram in text form
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("datastructures.metrics");
+
+    static class Histogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS; // values below this get a bucket each
+        private static final int N_BUCKETS = LINEAR_LIMIT + (62 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(N_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private static int bucketOf(long value) {
+            if (value < LINEAR_LIMIT) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BUCKET_BITS + 1
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+        }
+
+        // smallest value of bucket
+        private static long lowestValueOf(int bucket) {
+            if (bucket < LINEAR_LIMIT) {
+                return bucket;
+            }
+            int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+            int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+            return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        }
+
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            this.counts.incrementAndGet(bucketOf(value));
+            this.count.increment();
+            this.sum.add(value);
+            this.max.accumulate(value);
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        public long getMax() {
+            return this.max.get();
+        }
+
+        public double getMean() {
+            long count = this.count.sum();
+            return count == 0 ? 0 : (double) this.sum.sum() / count;
+        }
+
+        public long getValueAtPercentile(double percentile) {
+            long count = this.count.sum();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int b = 0; b < N_BUCKETS; b++) {
+                seen += this.counts.get(b);
+                if (seen >= Math.max(rank, 1)) {
+                    // highest value of the bucket, but never above the largest recorded value
+                    long highest = b + 1 < N_BUCKETS ? lowestValueOf(b + 1) - 1 : Long.MAX_VALUE;
+                    return Math.min(highest, this.max.get());
+                }
+            }
+            return this.max.get();
+        }
+
+        public void reset() {
+            for (int b = 0; b < N_BUCKETS; b++) {
+                this.counts.set(b, 0);
+            }
+            this.count.reset();
+            this.sum.reset();
+            this.max.reset();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.2f p50=%d p99=%d p99.9=%d max=%d", this.getCount(), this.getMean(),
+                    this.getValueAtPercentile(50), this.getValueAtPercentile(99), this.getValueAtPercentile(99.9),
+                    this.getMax());
+        }
+    }
+
+    // operation counts
+    static final LongAdder DYNAMIC_ARRAY_OPS = new LongAdder();
+    static final LongAdder LINKED_LIST_OPS = new LongAdder();
+    static final LongAdder QUEUE_OPS = new LongAdder();
+    static final LongAdder STACK_OPS = new LongAdder();
+    static final LongAdder HEAP_OPS = new LongAdder();
+    static final LongAdder UNION_FIND_OPS = new LongAdder();
+
+    // resizes of backing arrays, and the capacities they grew to
+    static final LongAdder RESIZES = new LongAdder();
+    static final Histogram RESIZE_CAPACITY = new Histogram();
+
+    // levels moved by a single sink or swim
+    static final Histogram HEAP_SIFT_DEPTH = new Histogram();
+    // nanoseconds per heap add and poll
+    static final Histogram HEAP_ADD_NANOS = new Histogram();
+    static final Histogram HEAP_POLL_NANOS = new Histogram();
+    // parent links followed by find() before compressing the path
+    static final Histogram UNION_FIND_PATH_LENGTH = new Histogram();
+
+    private static Map<String, LongAdder> counters() {
+        Map<String, LongAdder> counters = new LinkedHashMap<>();
+        counters.put("dynamicArrayOps", DYNAMIC_ARRAY_OPS);
+        counters.put("linkedListOps", LINKED_LIST_OPS);
+        counters.put("queueOps", QUEUE_OPS);
+        counters.put("stackOps", STACK_OPS);
+        counters.put("heapOps", HEAP_OPS);
+        counters.put("unionFindOps", UNION_FIND_OPS);
+        counters.put("resizes", RESIZES);
+        return counters;
+    }
+
+    private static Map<String, Histogram> histograms() {
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        histograms.put("resizeCapacity", RESIZE_CAPACITY);
+        histograms.put("heapSiftDepth", HEAP_SIFT_DEPTH);
+        histograms.put("heapAddNanos", HEAP_ADD_NANOS);
+        histograms.put("heapPollNanos", HEAP_POLL_NANOS);
+        histograms.put("unionFindPathLength", UNION_FIND_PATH_LENGTH);
+        return histograms;
+    }
+
+    @Name("datastructures.Resize")
+    @Label("Backing Array Resize")
+    @Category("Data Structures")
+    static class ResizeEvent extends Event {
+        @Label("Structure")
+        String structure;
+
+        @Label("Old Capacity")
+        long oldCapacity;
+
+        @Label("New Capacity")
+        long newCapacity;
+    }
+
+    @Name("datastructures.MetricsSnapshot")
+    @Label("Data Structure Metrics")
+    @Category("Data Structures")
+    @Period("1 s")
+    static class SnapshotEvent extends Event {
+        @Label("Heap Operations")
+        long heapOps;
+
+        @Label("Union-Find Operations")
+        long unionFindOps;
+
+        @Label("Resizes")
+        long resizes;
+
+        @Label("Heap Sift Depth p99")
+        long heapSiftDepthP99;
+
+        @Label("Heap Poll Nanoseconds p99")
+        long heapPollNanosP99;
+
+        @Label("Union-Find Path Length p99")
+        long unionFindPathLengthP99;
+    }
+
+    private static class Bean implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> values = new LinkedHashMap<>();
+            for (Map.Entry<String, LongAdder> entry : counters().entrySet()) {
+                values.put(entry.getKey(), entry.getValue().sum());
+            }
+            return values;
+        }
+
+        @Override
+        public Map<String, String> getHistograms() {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (Map.Entry<String, Histogram> entry : histograms().entrySet()) {
+                values.put(entry.getKey(), entry.getValue().toString());
+            }
+            return values;
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(),
+                        new ObjectName("datastructures:type=Metrics"));
+            } catch (Exception e) { // e.g. already registered by another class loader
+                System.err.println("Metrics: could not register the MXBean: " + e);
+            }
+            FlightRecorder.addPeriodicEvent(SnapshotEvent.class, () -> {
+                SnapshotEvent event = new SnapshotEvent();
+                event.heapOps = HEAP_OPS.sum();
+                event.unionFindOps = UNION_FIND_OPS.sum();
+                event.resizes = RESIZES.sum();
+                event.heapSiftDepthP99 = HEAP_SIFT_DEPTH.getValueAtPercentile(99);
+                event.heapPollNanosP99 = HEAP_POLL_NANOS.getValueAtPercentile(99);
+                event.unionFindPathLengthP99 = UNION_FIND_PATH_LENGTH.getValueAtPercentile(99);
+                event.commit();
+            });
+        }
+    }
+
+    public static void resized(String structure, long oldCapacity, long newCapacity) {
+        RESIZES.increment();
+        RESIZE_CAPACITY.record(newCapacity);
+        ResizeEvent event = new ResizeEvent();
+        if (event.shouldCommit()) {
+            event.structure = structure;
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = newCapacity;
+            event.commit();
+        }
+    }
+
+    public static void reset() {
+        for (LongAdder counter : counters().values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms().values()) {
+            histogram.reset();
+        }
+    }
+
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : counters().entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue().sum()).append("\n");
+        }
+        for (Map.Entry<String, Histogram> entry : histograms().entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    // run with -Ddatastructures.metrics=true
+    public static void main(String[] args) {
+        if (!ENABLED) {
+            System.out.println("Metrics are disabled; run with -Ddatastructures.metrics=true");
+            return;
+        }
+        java.util.Random random = new java.util.Random(42);
+        PriorityQueue<Integer> pq = PriorityQueue.create();
+        DynamicArray<Integer> da = new DynamicArray<>();
+        for (int i = 0; i < 100_000; i++) {
+            pq.add(random.nextInt());
+            da.append(i);
+        }
+        while (!pq.isEmpty()) {
+            pq.poll();
+        }
+        IntUnionFind uf = new IntUnionFind(100_000);
+        for (int i = 0; i < 100_000; i++) {
+            uf.unify(random.nextInt(100_000), random.nextInt(100_000));
+        }
+        Stack<Integer> stack = new Stack<>();
+        Queue<Integer> queue = new Queue<>();
+        for (int i = 0; i < 1_000; i++) {
+            stack.push(i);
+            queue.enqueue(i);
+        }
+        System.out.print(summary());
+    }
+}
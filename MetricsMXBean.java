@@ -0,0 +1,17 @@
+// Management interface of "Metrics.java", registered as "datastructures:type=Metrics"
+// when metrics are enabled (-Ddatastructures.metrics=true).
+
+// Public Methods:
+// getCounters()     --> Map    : operation and resize counts, by name
+// getHistograms()   --> Map    : count, mean, percentiles and max of every histogram, by name
+// reset()           --> void   : resets every counter and histogram
+
+import java.util.Map;
+
+public interface MetricsMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, String> getHistograms();
+
+    void reset();
+}
@@ -0,0 +1,525 @@
+// This program computes a MINIMUM SPANNING FOREST of an undirected weighted graph with the
+// Filter-Kruskal algorithm, on top of "IntUnionFind.java" for the cycle checks.
+
+// Plain Kruskal takes the edges in order of weight (e.g. by polling a "PriorityQueue.java")
+// and keeps every edge that joins two components. Filter-Kruskal avoids ordering edges that
+// can never be kept:
+//    filterKruskal(edges):
+//        if there are few edges: sort them and run Kruskal
+//        else: pick a pivot weight, partition into light (< pivot) and heavy edges
+//              filterKruskal(light)
+//              filter: drop the heavy edges whose ends are already connected
+//              filterKruskal(remaining heavy)
+// On graphs with many more edges than vertices, most heavy edges are dropped by a filter
+// before anyone sorts them.
+
+// Edges are never materialized as objects. The engine works on four parallel arrays
+// (sortable weight key, source, destination, edge index; 20 bytes per edge) that are
+// partitioned and sorted in place. The weight key is the double weight with its bits
+// rearranged, so that comparing keys as longs orders weights as doubles.
+// With parallel = true, the work is split across the common ForkJoinPool:
+//    batches of edges are sorted by a parallel quicksort;
+//    the filter runs over chunks of the heavy edges at once, using the read-only find of
+//    "IntUnionFind.java" (the union-find is not changed while it runs), and the kept edges
+//    are then moved together.
+// The partition steps and the Kruskal scans themselves run on the calling thread.
+
+// Edges come from primitive arrays, or are streamed from a binary file through a
+// FileChannel: records of [int source][int destination][double weight], big-endian
+// (write() produces such files).
+
+// Public Methods:
+// MinimumSpanningForest(n, src, dst, weight)            --> forest  O(m log m) : computes the forest of the graph
+//                                                                    with vertices 0..n-1 and edges src[i]-dst[i]
+// MinimumSpanningForest(n, src, dst, weight, parallel)  --> forest  same, optionally single-threaded
+// read(path, n, parallel)         --> forest   O(m log m) : same, for the edges stored in the file at path
+// write(path, src, dst, weight)   --> void     O(m)       : stores the edges in the file format read() expects
+// getEdges()                      --> int[]    O(1)       : indices of the forest's edges, by ascending weight
+// getSources() / getDestinations()--> int[]    O(1)       : their ends, parallel to getEdges()
+// getWeights()                    --> double[] O(1)       : their weights, parallel to getEdges()
+// getTotalWeight()                --> double   O(1)
+// getComponentCount()             --> int      O(1)       : number of trees in the forest (isolated vertices count)
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+class MinimumSpanningForest {
+    private static final int RECORD_BYTES = 16;
+    private static final int MIN_BASE_SIZE = 1 << 16; // batches up to this size are sorted outright
+    private static final int PARALLEL_THRESHOLD = 1 << 14; // smaller ranges are sorted/filtered sequentially
+    private static final int INSERTION_SORT_THRESHOLD = 24;
+
+    // the edges, permuted in place while the algorithm runs
+    private final long[] key;
+    private final int[] src;
+    private final int[] dst;
+    private final int[] id;
+
+    private final int n;
+    private final boolean parallel;
+    private final int baseSize;
+    private final IntUnionFind uf;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private int[] forestEdges;
+    private int[] forestSources;
+    private int[] forestDestinations;
+    private double[] forestWeights;
+    private int nForest;
+    private double totalWeight;
+
+    public MinimumSpanningForest(int n, int[] src, int[] dst, double[] weight) {
+        this(n, src, dst, weight, true);
+    }
+
+    public MinimumSpanningForest(int n, int[] src, int[] dst, double[] weight, boolean parallel) {
+        this(n, src.length, parallel);
+        if (src.length != dst.length || src.length != weight.length) {
+            throw new IllegalArgumentException(
+                    "Array lengths differ: " + src.length + ", " + dst.length + ", " + weight.length);
+        }
+        for (int i = 0; i < src.length; i++) {
+            this.setEdge(i, src[i], dst[i], weight[i]);
+        }
+        this.solve();
+    }
+
+    private MinimumSpanningForest(int n, int m, boolean parallel) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Number of vertices must be non-negative, got " + n);
+        }
+        this.n = n;
+        this.parallel = parallel;
+        this.baseSize = Math.max(MIN_BASE_SIZE, 2 * n);
+        this.key = new long[m];
+        this.src = new int[m];
+        this.dst = new int[m];
+        this.id = new int[m];
+        this.uf = new IntUnionFind(n);
+    }
+
+    // doubles ordered like the longs returned here (NaN is rejected by setEdge)
+    private static long keyOf(double weight) {
+        long bits = Double.doubleToLongBits(weight);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    private static double weightOf(long key) {
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+
+    private void setEdge(int i, int u, int v, double weight) {
+        if (u < 0 || u >= this.n || v < 0 || v >= this.n) {
+            throw new IllegalArgumentException(
+                    "Edge " + i + " (" + u + ", " + v + ") has a vertex outside 0.." + (this.n - 1));
+        }
+        if (Double.isNaN(weight)) {
+            throw new IllegalArgumentException("Edge " + i + " has weight NaN");
+        }
+        this.key[i] = keyOf(weight);
+        this.src[i] = u;
+        this.dst[i] = v;
+        this.id[i] = i;
+    }
+
+    public static MinimumSpanningForest read(Path path, int n, boolean parallel) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % RECORD_BYTES != 0 || size / RECORD_BYTES > Integer.MAX_VALUE - 8) {
+                throw new IOException("Not an edge file of " + RECORD_BYTES + "-byte records: " + path);
+            }
+            int m = (int) (size / RECORD_BYTES);
+            MinimumSpanningForest msf = new MinimumSpanningForest(n, m, parallel);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_BYTES << 16);
+            int i = 0;
+            while (i < m) {
+                buffer.clear();
+                int nRead = 0;
+                while (buffer.hasRemaining() && nRead >= 0) { // fill the buffer, up to the end of the file
+                    nRead = channel.read(buffer);
+                }
+                buffer.flip();
+                if (buffer.remaining() % RECORD_BYTES != 0 || !buffer.hasRemaining()) {
+                    throw new IOException("Truncated edge file: " + path);
+                }
+                while (buffer.hasRemaining() && i < m) { // ignores records appended since size() was read
+                    msf.setEdge(i++, buffer.getInt(), buffer.getInt(), buffer.getDouble());
+                }
+            }
+            msf.solve();
+            return msf;
+        }
+    }
+
+    public static void write(Path path, int[] src, int[] dst, double[] weight) throws IOException {
+        if (src.length != dst.length || src.length != weight.length) {
+            throw new IllegalArgumentException(
+                    "Array lengths differ: " + src.length + ", " + dst.length + ", " + weight.length);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_BYTES << 16);
+            for (int i = 0; i < src.length; i++) {
+                buffer.putInt(src[i]).putInt(dst[i]).putDouble(weight[i]);
+                if (!buffer.hasRemaining() || i == src.length - 1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+        }
+    }
+
+    private void solve() {
+        int maxEdges = Math.max(this.n - 1, 0);
+        this.forestEdges = new int[maxEdges];
+        this.forestSources = new int[maxEdges];
+        this.forestDestinations = new int[maxEdges];
+        this.forestWeights = new double[maxEdges];
+        this.filterKruskal(0, this.key.length);
+        this.forestEdges = Arrays.copyOf(this.forestEdges, this.nForest);
+        this.forestSources = Arrays.copyOf(this.forestSources, this.nForest);
+        this.forestDestinations = Arrays.copyOf(this.forestDestinations, this.nForest);
+        this.forestWeights = Arrays.copyOf(this.forestWeights, this.nForest);
+    }
+
+    private boolean isDone() {
+        return this.nForest == this.n - 1; // spanning tree complete: no edge can be added
+    }
+
+    private void filterKruskal(int lo, int hi) {
+        if (this.isDone() || lo >= hi) {
+            return;
+        }
+        if (hi - lo <= this.baseSize) {
+            this.sort(lo, hi);
+            this.kruskal(lo, hi);
+            return;
+        }
+        long pivot = this.medianOfThree(this.randomIndex(lo, hi), this.randomIndex(lo, hi),
+                this.randomIndex(lo, hi));
+        int mid = this.partition(lo, hi, pivot, false);
+        if (mid == lo) { // pivot is the smallest weight: split off the edges equal to it instead
+            mid = this.partition(lo, hi, pivot, true);
+            if (mid == hi) { // every weight is equal
+                this.kruskal(lo, hi);
+                return;
+            }
+        }
+        this.filterKruskal(lo, mid);
+        if (this.isDone()) {
+            return;
+        }
+        this.filterKruskal(mid, this.filter(mid, hi));
+    }
+
+    // Kruskal over [lo, hi), which is sorted by weight
+    private void kruskal(int lo, int hi) {
+        for (int i = lo; i < hi && !this.isDone(); i++) {
+            if (this.uf.unify(this.src[i], this.dst[i])) {
+                double weight = weightOf(this.key[i]);
+                this.forestEdges[this.nForest] = this.id[i];
+                this.forestSources[this.nForest] = this.src[i];
+                this.forestDestinations[this.nForest] = this.dst[i];
+                this.forestWeights[this.nForest] = weight;
+                this.nForest++;
+                this.totalWeight += weight;
+            }
+        }
+    }
+
+    private int randomIndex(int lo, int hi) {
+        return lo + this.random.nextInt(hi - lo);
+    }
+
+    private long medianOfThree(int i, int j, int k) {
+        long a = this.key[i];
+        long b = this.key[j];
+        long c = this.key[k];
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private void swap(int i, int j) {
+        long k = this.key[i];
+        this.key[i] = this.key[j];
+        this.key[j] = k;
+        int t = this.src[i];
+        this.src[i] = this.src[j];
+        this.src[j] = t;
+        t = this.dst[i];
+        this.dst[i] = this.dst[j];
+        this.dst[j] = t;
+        t = this.id[i];
+        this.id[i] = this.id[j];
+        this.id[j] = t;
+    }
+
+    // moves the edges lighter than pivot (or not heavier, if inclusive) to the front of [lo, hi);
+    // returns where the others start
+    private int partition(int lo, int hi, long pivot, boolean inclusive) {
+        int i = lo;
+        int j = hi - 1;
+        while (i <= j) {
+            while (i <= j && (this.key[i] < pivot || (inclusive && this.key[i] == pivot))) {
+                i++;
+            }
+            while (i <= j && !(this.key[j] < pivot || (inclusive && this.key[j] == pivot))) {
+                j--;
+            }
+            if (i < j) {
+                this.swap(i++, j--);
+            }
+        }
+        return i;
+    }
+
+    // drops the edges of [lo, hi) whose ends are already connected; returns the new end
+    private int filter(int lo, int hi) {
+        if (!this.parallel || hi - lo <= PARALLEL_THRESHOLD) {
+            return this.filterChunk(lo, hi, false);
+        }
+        int nChunks = (hi - lo + PARALLEL_THRESHOLD - 1) / PARALLEL_THRESHOLD;
+        int[] kept = new int[nChunks];
+        ForkJoinPool.commonPool().invoke(new FilterTask(lo, hi, kept, 0, nChunks));
+        // move the kept edges of every chunk together
+        int end = kept[0];
+        for (int c = 1; c < nChunks; c++) {
+            int from = lo + c * PARALLEL_THRESHOLD;
+            int count = kept[c] - from;
+            System.arraycopy(this.key, from, this.key, end, count);
+            System.arraycopy(this.src, from, this.src, end, count);
+            System.arraycopy(this.dst, from, this.dst, end, count);
+            System.arraycopy(this.id, from, this.id, end, count);
+            end += count;
+        }
+        return end;
+    }
+
+    // compacts the kept edges of [lo, hi) to its front; returns where they end
+    private int filterChunk(int lo, int hi, boolean readOnly) {
+        int end = lo;
+        for (int i = lo; i < hi; i++) {
+            int u = this.src[i];
+            int v = this.dst[i];
+            boolean connected = readOnly ? this.uf.findReadOnly(u) == this.uf.findReadOnly(v)
+                    : this.uf.areConnected(u, v);
+            if (!connected) {
+                this.key[end] = this.key[i];
+                this.src[end] = u;
+                this.dst[end] = v;
+                this.id[end] = this.id[i];
+                end++;
+            }
+        }
+        return end;
+    }
+
+    // filters chunks [fromChunk, toChunk) of [lo, hi); kept[c] is set to where chunk c's kept edges end
+    private class FilterTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo;
+        private final int hi;
+        private final int[] kept;
+        private final int fromChunk;
+        private final int toChunk;
+
+        private FilterTask(int lo, int hi, int[] kept, int fromChunk, int toChunk) {
+            this.lo = lo;
+            this.hi = hi;
+            this.kept = kept;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.toChunk - this.fromChunk > 1) {
+                int mid = (this.fromChunk + this.toChunk) >>> 1;
+                invokeAll(new FilterTask(this.lo, this.hi, this.kept, this.fromChunk, mid),
+                        new FilterTask(this.lo, this.hi, this.kept, mid, this.toChunk));
+                return;
+            }
+            int from = this.lo + this.fromChunk * PARALLEL_THRESHOLD;
+            int to = Math.min(this.hi, from + PARALLEL_THRESHOLD);
+            this.kept[this.fromChunk] = filterChunk(from, to, true);
+        }
+    }
+
+    private void sort(int lo, int hi) {
+        if (this.parallel && hi - lo > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new SortTask(lo, hi));
+        } else {
+            this.quickSort(lo, hi);
+        }
+    }
+
+    // Hoare partition of [lo, hi) (at least 2 edges) around a median of three moved to lo;
+    // returns p with lo < p < hi, every key in [lo, p) <= every key in [p, hi)
+    private int hoarePartition(int lo, int hi) {
+        int mid = (lo + hi) >>> 1;
+        long a = this.key[lo];
+        long b = this.key[mid];
+        long c = this.key[hi - 1];
+        int median = a < b ? (b < c ? mid : (a < c ? hi - 1 : lo)) : (a < c ? lo : (b < c ? hi - 1 : mid));
+        this.swap(lo, median);
+        long pivot = this.key[lo];
+        int i = lo - 1;
+        int j = hi;
+        while (true) {
+            do {
+                i++;
+            } while (this.key[i] < pivot);
+            do {
+                j--;
+            } while (this.key[j] > pivot);
+            if (i >= j) {
+                return j + 1;
+            }
+            this.swap(i, j);
+        }
+    }
+
+    private void quickSort(int lo, int hi) {
+        while (hi - lo > INSERTION_SORT_THRESHOLD) {
+            int p = this.hoarePartition(lo, hi);
+            // recurse into the smaller side, loop on the larger one
+            if (p - lo < hi - p) {
+                this.quickSort(lo, p);
+                lo = p;
+            } else {
+                this.quickSort(p, hi);
+                hi = p;
+            }
+        }
+        for (int i = lo + 1; i < hi; i++) { // insertion sort
+            for (int j = i; j > lo && this.key[j - 1] > this.key[j]; j--) {
+                this.swap(j - 1, j);
+            }
+        }
+    }
+
+    private class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo;
+        private final int hi;
+
+        private SortTask(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.hi - this.lo <= PARALLEL_THRESHOLD) {
+                quickSort(this.lo, this.hi);
+                return;
+            }
+            int p = hoarePartition(this.lo, this.hi);
+            invokeAll(new SortTask(this.lo, p), new SortTask(p, this.hi));
+        }
+    }
+
+    public int[] getEdges() {
+        return this.forestEdges;
+    }
+
+    public int[] getSources() {
+        return this.forestSources;
+    }
+
+    public int[] getDestinations() {
+        return this.forestDestinations;
+    }
+
+    public double[] getWeights() {
+        return this.forestWeights;
+    }
+
+    public double getTotalWeight() {
+        return this.totalWeight;
+    }
+
+    public int getComponentCount() {
+        return this.uf.getComponentCount();
+    }
+
+    // Kruskal with a PriorityQueue of edge objects and a UnionFind, for comparison
+    private static double kruskalWithPriorityQueue(int n, int[] src, int[] dst, double[] weight) {
+        PriorityQueue<double[]> pq = new PriorityQueue<>((e1, e2) -> Double.compare(e1[0], e2[0]));
+        for (int i = 0; i < src.length; i++) {
+            pq.add(new double[] { weight[i], src[i], dst[i] });
+        }
+        UnionFind<Integer> uf = new UnionFind<>();
+        for (int i = 0; i < n; i++) {
+            uf.add(i);
+        }
+        double total = 0;
+        int nEdges = 0;
+        while (!pq.isEmpty() && nEdges < n - 1) {
+            double[] edge = pq.poll();
+            if (!uf.areConnected((int) edge[1], (int) edge[2])) {
+                uf.unify((int) edge[1], (int) edge[2]);
+                total += edge[0];
+                nEdges++;
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // a small graph: two triangles and an isolated vertex
+        int[] src = { 0, 1, 2, 3, 4, 5 };
+        int[] dst = { 1, 2, 0, 4, 5, 3 };
+        double[] weight = { 1.0, 2.0, 3.0, 0.5, 0.25, 4.0 };
+        MinimumSpanningForest small = new MinimumSpanningForest(7, src, dst, weight);
+        System.out.println("edges " + Arrays.toString(small.getEdges()) + ", total weight " + small.getTotalWeight()
+                + ", trees " + small.getComponentCount()); // edges [4, 3, 0, 1], total weight 3.75, trees 3
+
+        // a random graph with n vertices and 8n edges
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int m = 8 * n;
+        SplittableRandom random = new SplittableRandom(7);
+        src = new int[m];
+        dst = new int[m];
+        weight = new double[m];
+        for (int i = 0; i < m; i++) {
+            src[i] = random.nextInt(n);
+            dst[i] = random.nextInt(n);
+            weight[i] = random.nextDouble();
+        }
+        for (boolean parallel : new boolean[] { false, true }) {
+            long start = System.nanoTime();
+            MinimumSpanningForest msf = new MinimumSpanningForest(n, src, dst, weight, parallel);
+            System.out.printf("Filter-Kruskal (%s): %d edges, total weight %.6f, %d trees, %d ms%n",
+                    parallel ? "parallel" : "sequential", msf.getEdges().length, msf.getTotalWeight(),
+                    msf.getComponentCount(), (System.nanoTime() - start) / 1_000_000);
+        }
+
+        Path file = java.nio.file.Files.createTempFile("edges", ".bin");
+        try {
+            write(file, src, dst, weight);
+            long start = System.nanoTime();
+            MinimumSpanningForest msf = read(file, n, true);
+            System.out.printf("Filter-Kruskal from file: total weight %.6f, %d ms%n", msf.getTotalWeight(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            java.nio.file.Files.delete(file);
+        }
+
+        long start = System.nanoTime();
+        double total = kruskalWithPriorityQueue(n, src, dst, weight);
+        System.out.printf("PriorityQueue + UnionFind: total weight %.6f, %d ms%n", total,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,226 @@
+// This program implements a relaxed concurrent Priority Queue, the MultiQueue.
+
+// The MultiQueue consists of c*P sequential heaps ("PriorityQueue.java"), each guarded by its
+// own lock, for P threads and a small constant c (2 by default).
+// - add() inserts into a randomly chosen heap whose lock is free.
+// - poll() looks at the roots of two randomly chosen heaps and removes the smaller one.
+// Threads rarely contend for the same lock, so throughput scales with the number of threads.
+// In exchange, poll() returns an element close to, but not necessarily equal to, the
+// global minimum. The expected rank of the polled element is O(c*P).
+
+// Use "ConcurrentPriorityQueue.java" instead when exact ordering is required.
+
+// Public Methods:
+// create()          --> queue                 : 2 heaps per available core, natural ordering (static)
+// create(nThreads)  --> queue                 : 2 heaps per thread, natural ordering (static)
+// add(element)      --> void      O(log(n))   : adds element to one of the heaps
+// poll()            --> element   O(log(n))   : removes and returns a small element, or null if all heaps are empty
+// peek()            --> element   O(c*P)      : returns the smallest root of all heaps, or null if all heaps are empty
+// isEmpty()         --> boolean   O(1)
+// getSize()         --> int       O(1)        : number of elements; may be stale while other threads update
+// writeTo(appendable, limit)  --> void     O(n)        : writes the heaps, one line each, at most 'limit' elements
+// writeTo(channel, limit)     --> void     O(n)        : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+class MultiQueue<T> implements Heap<T> {
+    private static final int DEFAULT_QUEUES_PER_THREAD = 2;
+
+    private final List<PriorityQueue<T>> queues;
+    private final ReentrantLock[] locks;
+    // root of each heap, updated under its lock; read without locking to choose where to poll
+    private final AtomicReferenceArray<T> roots;
+    private final Comparator<? super T> comparator;
+    private final LongAdder size = new LongAdder();
+
+    public MultiQueue(int nQueues, Comparator<? super T> comparator) {
+        if (nQueues < 2) {
+            throw new IllegalArgumentException("Invalid number of queues " + nQueues);
+        }
+        this.comparator = Objects.requireNonNull(comparator);
+        this.queues = new ArrayList<>(nQueues);
+        this.locks = new ReentrantLock[nQueues];
+        this.roots = new AtomicReferenceArray<>(nQueues);
+        for (int i = 0; i < nQueues; i++) {
+            this.queues.add(new PriorityQueue<>(comparator));
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+    // natural ordering; the bound keeps elements that are not Comparable out at compile time
+    public static <T extends Comparable<? super T>> MultiQueue<T> create() {
+        return create(Runtime.getRuntime().availableProcessors());
+    }
+
+    public static <T extends Comparable<? super T>> MultiQueue<T> create(int nThreads) {
+        return new MultiQueue<>(nThreads * DEFAULT_QUEUES_PER_THREAD, Comparator.<T>naturalOrder());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    // one line per heap, elements in heap order
+    public void writeTo(Appendable out, int limit) throws IOException {
+        int budget = Math.max(limit, 0);
+        long skipped = 0; // elements of the heaps left out entirely
+        for (int i = 0; i < this.queues.size(); i++) {
+            this.locks[i].lock();
+            try {
+                PriorityQueue<T> queue = this.queues.get(i);
+                if (budget == 0) {
+                    skipped += queue.getSize();
+                    continue;
+                }
+                List<T> elems = queue.toList();
+                int n = Math.min(elems.size(), budget);
+                out.append("queue ");
+                Utils.appendNumber(out, i).append(": [");
+                for (int j = 0; j < n; j++) {
+                    if (j > 0) {
+                        out.append(", ");
+                    }
+                    Utils.appendValue(out, elems.get(j));
+                }
+                if (n < elems.size()) {
+                    out.append(n == 0 ? "... (" : ", ... (");
+                    Utils.appendNumber(out, elems.size() - n).append(" more)");
+                }
+                out.append("]\n");
+                budget -= n;
+            } finally {
+                this.locks[i].unlock();
+            }
+        }
+        if (skipped > 0) {
+            out.append("... (");
+            Utils.appendNumber(out, skipped).append(" more)\n");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    // index of the root that is smaller, treating empty heaps as larger than any element
+    private int smallerRoot(int index1, int index2) {
+        T root1 = this.roots.get(index1);
+        T root2 = this.roots.get(index2);
+        if (root1 == null) {
+            return index2;
+        }
+        if (root2 == null) {
+            return index1;
+        }
+        return this.comparator.compare(root1, root2) <= 0 ? index1 : index2;
+    }
+
+    @Override
+    public void add(T elem) {
+        if (elem == null) {
+            throw new IllegalArgumentException();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            int i = random.nextInt(this.queues.size());
+            if (this.locks[i].tryLock()) {
+                try {
+                    this.queues.get(i).add(elem);
+                    this.roots.set(i, this.queues.get(i).peek());
+                } finally {
+                    this.locks[i].unlock();
+                }
+                this.size.increment();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public T poll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            int i = this.smallerRoot(random.nextInt(this.queues.size()), random.nextInt(this.queues.size()));
+            if (this.roots.get(i) == null) {
+                // both picks looked empty; poll from any non-empty heap, or give up if none is left
+                i = this.firstNonEmpty();
+                if (i == -1) {
+                    return null;
+                }
+            }
+            if (this.locks[i].tryLock()) {
+                try {
+                    T elem = this.queues.get(i).poll();
+                    this.roots.set(i, this.queues.get(i).peek());
+                    if (elem != null) {
+                        this.size.decrement();
+                        return elem;
+                    }
+                } finally {
+                    this.locks[i].unlock();
+                }
+            }
+        }
+    }
+
+    private int firstNonEmpty() {
+        for (int i = 0; i < this.queues.size(); i++) {
+            if (this.roots.get(i) != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public T peek() {
+        int smallest = 0;
+        for (int i = 1; i < this.queues.size(); i++) {
+            smallest = this.smallerRoot(smallest, i);
+        }
+        return this.roots.get(smallest);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.firstNonEmpty() == -1;
+    }
+
+    @Override
+    public int getSize() {
+        return (int) Math.max(0, this.size.sum());
+    }
+
+    public static void main(String[] args) {
+        MultiQueue<Integer> mq = MultiQueue.create(2);
+        for (int i = 20; i > 0; i--) {
+            mq.add(i);
+        }
+        System.out.println(mq);
+        System.out.println(mq.peek());
+        System.out.println(mq.getSize());
+        while (!mq.isEmpty()) {
+            System.out.print(mq.poll() + " "); // approximately increasing
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,130 @@
+// Hash map from object keys to primitive int values, with open addressing (linear probing)
+// over two flat arrays. Unlike HashMap<T, Integer>, lookups neither box the value nor
+// allocate entry objects, and a probe sequence stays within one or two cache lines.
+
+// Used by "UnionFind.java" to map elements to their integer ids, and by
+// "KeyedPriorityQueue.java" to map keys to their slots.
+
+// Public Methods:
+// get(key)          --> int      O(1)  : returns the value of key, or -1 if key is absent
+// put(key, value)   --> void     O(1)  : associates value (>= 0) with key
+// remove(key)       --> int      O(1)  : removes key and returns its value, or -1 if key is absent
+// containsKey(key)  --> boolean  O(1)
+// getSize()         --> int      O(1)
+
+class ObjectIntHashMap<T> {
+    private static final int MISSING = -1;
+
+    private Object[] keys; // null marks a free slot
+    private int[] values;
+    private int size;
+    private int mask; // capacity - 1; capacity is a power of two
+
+    public ObjectIntHashMap() {
+        this(16);
+    }
+
+    public ObjectIntHashMap(int expectedSize) {
+        // keep the load factor at or below 0.5
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        this.keys = new Object[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private int slotOf(Object key) {
+        int h = key.hashCode() * 0x9E3779B9; // spread the bits of poor hash codes
+        return (h ^ (h >>> 16)) & this.mask;
+    }
+
+    public int get(T key) {
+        if (key == null) {
+            return MISSING;
+        }
+        for (int slot = this.slotOf(key);; slot = (slot + 1) & this.mask) {
+            Object k = this.keys[slot];
+            if (k == null) {
+                return MISSING;
+            }
+            if (k == key || k.equals(key)) {
+                return this.values[slot];
+            }
+        }
+    }
+
+    public boolean containsKey(T key) {
+        return this.get(key) != MISSING;
+    }
+
+    public void put(T key, int value) {
+        if (key == null || value < 0) {
+            throw new IllegalArgumentException();
+        }
+        int slot = this.slotOf(key);
+        while (this.keys[slot] != null) {
+            if (this.keys[slot].equals(key)) {
+                this.values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+        if (this.size * 2 > this.keys.length) {
+            this.resize();
+        }
+    }
+
+    public int remove(T key) {
+        if (key == null) {
+            return MISSING;
+        }
+        int slot = this.slotOf(key);
+        while (this.keys[slot] != null && !this.keys[slot].equals(key)) {
+            slot = (slot + 1) & this.mask;
+        }
+        if (this.keys[slot] == null) {
+            return MISSING;
+        }
+        int value = this.values[slot];
+        this.keys[slot] = null;
+        this.size--;
+
+        // backward-shift deletion: move later keys of the probe run into the gap, unless their
+        // home slot lies after the gap, so that no tombstones are needed
+        int gap = slot;
+        for (int next = (gap + 1) & this.mask; this.keys[next] != null; next = (next + 1) & this.mask) {
+            int home = this.slotOf(this.keys[next]);
+            if (((next - home) & this.mask) >= ((next - gap) & this.mask)) {
+                this.keys[gap] = this.keys[next];
+                this.values[gap] = this.values[next];
+                this.keys[next] = null;
+                gap = next;
+            }
+        }
+        return value;
+    }
+
+    private void resize() {
+        Object[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new Object[oldKeys.length * 2];
+        this.values = new int[oldKeys.length * 2];
+        this.mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = this.slotOf(oldKeys[i]);
+                while (this.keys[slot] != null) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+}
@@ -0,0 +1,215 @@
+// This program answers connectivity queries on a graph whose edges are added and
+// removed over time, when the whole sequence of operations is known in advance
+// (offline dynamic connectivity).
+
+// Operations are recorded first; solve() then answers every query at once:
+// 1. Time is measured in queries: an edge added after the s-th query and removed after
+//    the e-th query is present for the queries in [s, e).
+// 2. Each such interval is stored in the O(log(q)) nodes of a segment tree over the
+//    queries that cover it exactly.
+// 3. A depth-first walk of the segment tree unifies the edges of a node on the way down
+//    and rolls them back on the way up ("RollbackUnionFind.java"), so at each leaf the
+//    union-find holds exactly the edges present at that query.
+// Every edge interval is unified O(log(q)) times at O(log(n)) each, for O((m log(q) + q) log(n))
+// in total, with m edge additions and q queries.
+
+// Parallel edges are allowed: removeEdge() removes the most recently added copy.
+
+// Public Methods:
+// OfflineDynamicConnectivity(n)        --> OfflineDynamicConnectivity  : graph on vertices 0..n-1, without edges
+// addEdge(u, v)                        --> void      O(1)+  : adds the edge (u, v)
+// removeEdge(u, v)                     --> void      O(1)+  : removes the edge (u, v); it must be present
+// addConnectedQuery(u, v)              --> int       O(1)+  : records "are u and v connected?"; returns the query number
+// addComponentCountQuery()             --> int       O(1)+  : records "how many components?"; returns the query number
+// solve()                              --> int[]            : returns the answer of every query, by query number;
+//                                                             1 or 0 for connected queries
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+class OfflineDynamicConnectivity {
+    private static final int COMPONENT_COUNT = -1; // queryU of a component count query
+
+    private final int nVertices;
+
+    // queries, by query number
+    private int[] queryU = new int[16];
+    private int[] queryV = new int[16];
+    private int nQueries;
+
+    // edge intervals: edge i is (edgeU[i], edgeV[i]), present for queries [edgeStart[i], edgeEnd[i])
+    private int[] edgeU = new int[16];
+    private int[] edgeV = new int[16];
+    private int[] edgeStart = new int[16];
+    private int[] edgeEnd = new int[16];
+    private int nEdges;
+
+    // present edges: (u, v) with u <= v packed into a long --> indices of its present copies
+    private final Map<Long, ArrayDeque<Integer>> present = new HashMap<>();
+
+    public OfflineDynamicConnectivity(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Invalid size " + n);
+        }
+        this.nVertices = n;
+    }
+
+    private void checkVertex(int v) {
+        if (v < 0 || v >= this.nVertices) {
+            throw new IllegalArgumentException("Invalid vertex " + v);
+        }
+    }
+
+    private static long edgeKey(int u, int v) {
+        return u <= v ? ((long) u << 32) | v : ((long) v << 32) | u;
+    }
+
+    public void addEdge(int u, int v) {
+        this.checkVertex(u);
+        this.checkVertex(v);
+        if (this.nEdges == this.edgeU.length) {
+            int capacity = this.nEdges * 2;
+            this.edgeU = Arrays.copyOf(this.edgeU, capacity);
+            this.edgeV = Arrays.copyOf(this.edgeV, capacity);
+            this.edgeStart = Arrays.copyOf(this.edgeStart, capacity);
+            this.edgeEnd = Arrays.copyOf(this.edgeEnd, capacity);
+        }
+        this.edgeU[this.nEdges] = u;
+        this.edgeV[this.nEdges] = v;
+        this.edgeStart[this.nEdges] = this.nQueries;
+        this.edgeEnd[this.nEdges] = -1; // still present
+        this.present.computeIfAbsent(edgeKey(u, v), key -> new ArrayDeque<>()).push(this.nEdges);
+        this.nEdges++;
+    }
+
+    public void removeEdge(int u, int v) {
+        ArrayDeque<Integer> copies = this.present.get(edgeKey(u, v));
+        if (copies == null) {
+            throw new IllegalArgumentException("Edge (" + u + ", " + v + ") is not present");
+        }
+        this.edgeEnd[copies.pop()] = this.nQueries;
+        if (copies.isEmpty()) {
+            this.present.remove(edgeKey(u, v));
+        }
+    }
+
+    private int addQuery(int u, int v) {
+        if (this.nQueries == this.queryU.length) {
+            this.queryU = Arrays.copyOf(this.queryU, this.nQueries * 2);
+            this.queryV = Arrays.copyOf(this.queryV, this.nQueries * 2);
+        }
+        this.queryU[this.nQueries] = u;
+        this.queryV[this.nQueries] = v;
+        return this.nQueries++;
+    }
+
+    public int addConnectedQuery(int u, int v) {
+        this.checkVertex(u);
+        this.checkVertex(v);
+        return this.addQuery(u, v);
+    }
+
+    public int addComponentCountQuery() {
+        return this.addQuery(COMPONENT_COUNT, COMPONENT_COUNT);
+    }
+
+    // state of one solve(): edges per segment tree node, as singly linked lists of edge indices
+    private int[] nodeHead;
+    private int[] itemNext;
+    private int[] itemEdge;
+    private int nItems;
+    private RollbackUnionFind uf;
+    private int[] answers;
+
+    // stores edge in the nodes covering [from, to) within node's range [lo, hi)
+    private void insert(int node, int lo, int hi, int from, int to, int edge) {
+        if (from <= lo && hi <= to) {
+            if (this.nItems == this.itemEdge.length) {
+                this.itemNext = Arrays.copyOf(this.itemNext, this.nItems * 2);
+                this.itemEdge = Arrays.copyOf(this.itemEdge, this.nItems * 2);
+            }
+            this.itemEdge[this.nItems] = edge;
+            this.itemNext[this.nItems] = this.nodeHead[node];
+            this.nodeHead[node] = this.nItems++;
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (from < mid) {
+            this.insert(2 * node + 1, lo, mid, from, to, edge);
+        }
+        if (to > mid) {
+            this.insert(2 * node + 2, mid, hi, from, to, edge);
+        }
+    }
+
+    private void walk(int node, int lo, int hi) {
+        int checkpoint = this.uf.checkpoint();
+        for (int item = this.nodeHead[node]; item != -1; item = this.itemNext[item]) {
+            int edge = this.itemEdge[item];
+            this.uf.unify(this.edgeU[edge], this.edgeV[edge]);
+        }
+        if (hi - lo == 1) {
+            int u = this.queryU[lo];
+            if (u == COMPONENT_COUNT) {
+                this.answers[lo] = this.uf.getComponentCount();
+            } else {
+                this.answers[lo] = this.uf.areConnected(u, this.queryV[lo]) ? 1 : 0;
+            }
+        } else {
+            int mid = (lo + hi) >>> 1;
+            this.walk(2 * node + 1, lo, mid);
+            this.walk(2 * node + 2, mid, hi);
+        }
+        this.uf.rollback(checkpoint);
+    }
+
+    public int[] solve() {
+        int q = this.nQueries;
+        this.answers = new int[q];
+        if (q == 0) {
+            return this.answers;
+        }
+        this.nodeHead = new int[4 * q];
+        Arrays.fill(this.nodeHead, -1);
+        this.itemNext = new int[Math.max(16, this.nEdges)];
+        this.itemEdge = new int[Math.max(16, this.nEdges)];
+        this.nItems = 0;
+        for (int edge = 0; edge < this.nEdges; edge++) {
+            int start = this.edgeStart[edge];
+            int end = this.edgeEnd[edge] == -1 ? q : this.edgeEnd[edge];
+            if (start < end) {
+                this.insert(0, 0, q, start, end, edge);
+            }
+        }
+
+        this.uf = new RollbackUnionFind(this.nVertices);
+        this.walk(0, 0, q);
+
+        int[] answers = this.answers;
+        this.nodeHead = null;
+        this.itemNext = null;
+        this.itemEdge = null;
+        this.uf = null;
+        this.answers = null;
+        return answers;
+    }
+
+    public static void main(String[] args) {
+        OfflineDynamicConnectivity graph = new OfflineDynamicConnectivity(5);
+        graph.addEdge(0, 1);
+        graph.addEdge(1, 2);
+        graph.addConnectedQuery(0, 2); // 1
+        graph.addComponentCountQuery(); // 3
+        graph.removeEdge(1, 2);
+        graph.addConnectedQuery(0, 2); // 0
+        graph.addEdge(2, 3);
+        graph.addEdge(3, 0);
+        graph.addConnectedQuery(0, 2); // 1
+        graph.addComponentCountQuery(); // 2
+        graph.removeEdge(0, 1);
+        graph.addConnectedQuery(1, 2); // 0
+        Utils.printAry(graph.solve());
+    }
+}
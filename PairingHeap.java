@@ -0,0 +1,382 @@
+// This program implements the data-structure Pairing Heap (a min-heap).
+
+// A pairing heap is a heap-ordered multiway tree. Each node keeps a pointer to its
+// leftmost child and to its next sibling, plus a back pointer to its previous sibling
+// (or parent, for a leftmost child) so that a subtree can be cut out in O(1).
+// Linking two trees makes the one with the larger root the leftmost child of the other;
+// poll() removes the root and links its children in two passes (left to right in pairs,
+// then right to left into one tree).
+
+// Suited over "PriorityQueue.java" when priorities change often, e.g. in Dijkstra or
+// Prim, since decreaseKey does not need to search for the element.
+
+// With "Metrics.java" enabled, insertions and removals are counted, and insert and poll
+// record their latency.
+
+// Public Methods:
+// insert(element)             --> handle   O(1)             : adds element and returns a handle to it
+// add(element)                --> void     O(1)             : adds element
+// poll()                      --> element  O(log(n)) amort. : removes and returns root element
+// peek()                      --> element  O(1)             : returns root element
+// decreaseKey(handle, value)  --> void     O(1) amort.*     : lowers the element of handle to value
+// delete(handle)              --> void     O(log(n)) amort. : removes the element of handle
+// create()                    --> heap     O(1)             : empty heap in natural ordering (static)
+// meld(other)                 --> void     O(1)             : moves all elements of other into this heap
+// isEmpty()                   --> boolean  O(1)
+// getSize()                   --> int      O(1)
+// (*) the proven bound for decreaseKey is o(log(n)); O(1) is the observed behaviour in practice
+// writeTo(appendable, limit)  --> void     O(n)             : writes the trees in preorder, at most 'limit' elements
+// writeTo(channel, limit)     --> void     O(n)             : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+class PairingHeap<T> implements AddressableHeap<T> {
+    private Node<T> root;
+    private int size;
+    private final Comparator<? super T> comparator;
+    private Owner owner = new Owner();
+
+    // identifies the heap that a node belongs to. Melding forwards the owner of the emptied
+    // heap to the owner of the receiving one, so meld stays O(1) and old handles still resolve.
+    private static final class Owner {
+        private Owner meldedInto;
+
+        private Owner resolve() {
+            Owner root = this;
+            while (root.meldedInto != null) {
+                root = root.meldedInto;
+            }
+            for (Owner trav = this; trav != root;) { // path compression
+                Owner next = trav.meldedInto;
+                trav.meldedInto = root;
+                trav = next;
+            }
+            return root;
+        }
+    }
+
+    private static class Node<T> implements AddressableHeap.Handle<T> {
+        private T data;
+        private Node<T> child; // leftmost child
+        private Node<T> next; // next sibling
+        private Node<T> prev; // previous sibling, or parent if this is the leftmost child
+        private boolean deleted;
+        private Owner owner;
+
+        public Node(T data) {
+            this.data = data;
+        }
+
+        @Override
+        public T getValue() {
+            return this.data;
+        }
+
+        @Override
+        public String toString() {
+            return this.data.toString();
+        }
+    }
+
+    public PairingHeap(Comparator<? super T> comparator) {
+        this.comparator = Objects.requireNonNull(comparator);
+        this.root = null;
+        this.size = 0;
+    }
+
+    // natural ordering; the bound keeps elements that are not Comparable out at compile time
+    public static <T extends Comparable<? super T>> PairingHeap<T> create() {
+        return new PairingHeap<>(Comparator.<T>naturalOrder());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    // root followed by its subtrees, each in parentheses, in preorder. Iterative, since after
+    // sorted insertions the tree is a chain as deep as the heap is large
+    public void writeTo(Appendable out, int limit) throws IOException {
+        if (this.size == 0) {
+            out.append("empty heap");
+            return;
+        }
+        Deque<Node<T>> open = new ArrayDeque<>(); // nodes whose subtree is being written
+        int written = 0;
+        Node<T> trav = limit > 0 ? this.root : null;
+        while (trav != null) {
+            Utils.appendValue(out, trav.data);
+            if (++written == limit) {
+                break;
+            }
+            if (trav.child != null) {
+                out.append(" (");
+                open.push(trav);
+                trav = trav.child;
+                continue;
+            }
+            while (trav.next == null && !open.isEmpty()) { // last sibling: close the subtrees it ends
+                out.append(")");
+                trav = open.pop();
+            }
+            if (trav.next != null) {
+                out.append(" ");
+            }
+            trav = trav.next;
+        }
+        for (int i = open.size(); i > 0; i--) { // subtrees cut short by the limit
+            out.append(")");
+        }
+        if (written < this.size) {
+            out.append(written == 0 ? "... (" : " ... (");
+            Utils.appendNumber(out, this.size - written).append(" more)");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    private boolean isLess(Node<T> node1, Node<T> node2) {
+        return this.comparator.compare(node1.data, node2.data) < 0;
+    }
+
+    // link two roots (both without siblings) and return the new root
+    private Node<T> link(Node<T> a, Node<T> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (isLess(b, a)) {
+            Node<T> tmp = a;
+            a = b;
+            b = tmp;
+        }
+        // make b the leftmost child of a
+        b.prev = a;
+        b.next = a.child;
+        if (a.child != null) {
+            a.child.prev = b;
+        }
+        a.child = b;
+        return a;
+    }
+
+    // detach node (not the root) together with its subtree from its parent/siblings
+    private void cut(Node<T> node) {
+        if (node.prev.child == node) { // leftmost child
+            node.prev.child = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    // two-pass pairing of a sibling list, returns the single resulting root
+    private Node<T> combineSiblings(Node<T> first) {
+        if (first == null) {
+            return null;
+        }
+        // first pass: link pairs left to right. The linked pairs are chained through
+        // their 'next' pointers in reverse order, so no extra list is allocated.
+        Node<T> pairs = null;
+        Node<T> trav = first;
+        while (trav != null) {
+            Node<T> a = trav;
+            Node<T> b = a.next;
+            trav = b == null ? null : b.next;
+            a.next = null;
+            a.prev = null;
+            if (b != null) {
+                b.next = null;
+                b.prev = null;
+            }
+            Node<T> pair = this.link(a, b);
+            pair.next = pairs;
+            pairs = pair;
+        }
+        // second pass: link the pairs right to left
+        Node<T> result = pairs;
+        trav = pairs.next;
+        result.next = null;
+        while (trav != null) {
+            Node<T> pair = trav;
+            trav = trav.next;
+            pair.next = null;
+            result = this.link(pair, result);
+        }
+        return result;
+    }
+
+    private Node<T> checkHandle(AddressableHeap.Handle<T> handle) {
+        if (!(handle instanceof Node)) {
+            throw new IllegalArgumentException("Invalid handle");
+        }
+        Node<T> node = (Node<T>) handle;
+        if (node.deleted) {
+            throw new IllegalArgumentException("Handle of a removed element");
+        }
+        node.owner = node.owner.resolve();
+        if (node.owner != this.owner) {
+            throw new IllegalArgumentException("Handle of another heap");
+        }
+        return node;
+    }
+
+    @Override
+    public AddressableHeap.Handle<T> insert(T elem) { // O(1)
+        if (elem == null) {
+            throw new IllegalArgumentException();
+        }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        Node<T> node = new Node<>(elem);
+        node.owner = this.owner;
+        this.root = this.link(this.root, node);
+        this.size++;
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+            Metrics.HEAP_ADD_NANOS.record(System.nanoTime() - start);
+        }
+        return node;
+    }
+
+    @Override
+    public void add(T elem) { // O(1)
+        this.insert(elem);
+    }
+
+    private T removeRoot() {
+        if (this.root == null) {
+            return null;
+        }
+        Node<T> node = this.root;
+        this.root = this.combineSiblings(node.child);
+        node.child = null;
+        node.deleted = true;
+        this.size--;
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+        }
+        return node.data;
+    }
+
+    // remove and return root, returns null if heap is empty
+    @Override
+    public T poll() {
+        if (!Metrics.ENABLED) {
+            return this.removeRoot();
+        }
+        long start = System.nanoTime();
+        T root = this.removeRoot();
+        Metrics.HEAP_POLL_NANOS.record(System.nanoTime() - start);
+        return root;
+    }
+
+    @Override
+    public T peek() {
+        return this.root == null ? null : this.root.data;
+    }
+
+    @Override
+    public void decreaseKey(AddressableHeap.Handle<T> handle, T newValue) {
+        Node<T> node = this.checkHandle(handle);
+        if (newValue == null || this.comparator.compare(newValue, node.data) > 0) {
+            throw new IllegalArgumentException("New value is greater than the current one");
+        }
+        node.data = newValue;
+        if (node != this.root) {
+            this.cut(node);
+            this.root = this.link(this.root, node);
+        }
+    }
+
+    @Override
+    public void delete(AddressableHeap.Handle<T> handle) {
+        Node<T> node = this.checkHandle(handle);
+        if (node == this.root) {
+            this.removeRoot();
+            return;
+        }
+        this.cut(node);
+        Node<T> subtree = this.combineSiblings(node.child);
+        node.child = null;
+        node.deleted = true;
+        this.root = this.link(this.root, subtree);
+        this.size--;
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+        }
+    }
+
+    @Override
+    public void meld(AddressableHeap<T> other) { // O(1)
+        if (!(other instanceof PairingHeap) || other == this) {
+            throw new IllegalArgumentException("Can only meld another PairingHeap");
+        }
+        PairingHeap<T> that = (PairingHeap<T>) other;
+        this.root = this.link(this.root, that.root);
+        this.size += that.size;
+        that.root = null;
+        that.size = 0;
+        that.owner.meldedInto = this.owner;
+        that.owner = new Owner();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    public static void main(String[] args) {
+        PairingHeap<Integer> heap = PairingHeap.create();
+        List<AddressableHeap.Handle<Integer>> handles = new ArrayList<>();
+        for (int i : new int[] { 9, 4, 7, 1, 8, 2, 6 }) {
+            handles.add(heap.insert(i));
+        }
+        System.out.println(heap);
+        System.out.println(heap.peek());
+
+        heap.decreaseKey(handles.get(0), 0); // 9 -> 0
+        System.out.println(heap);
+        heap.delete(handles.get(2)); // 7
+        System.out.println(heap.getSize());
+
+        PairingHeap<Integer> other = PairingHeap.create();
+        other.add(3);
+        other.add(5);
+        heap.meld(other);
+        System.out.println(other.isEmpty());
+
+        while (!heap.isEmpty()) {
+            System.out.print(heap.poll() + " ");
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,548 @@
+// This program implements a PERSISTENT VECTOR: an immutable variant of "DynamicArray.java"
+// where every update returns a new vector and leaves the old one intact, so any number of
+// point-in-time versions can be kept (undo history) or handed to other threads (lock-free
+// readers) without copying.
+
+// The elements live in a 32-way bit-partitioned trie: element i is found by taking 5 bits
+// of i per level, starting with the highest, so the trie has log32(n) levels (at most 7 for
+// int indices) and every node is an array of 32 children. An update copies only the nodes
+// on the path to the element, i.e. O(log32 n) arrays of 32 references; everything else is
+// shared with the previous version. The last (up to) 32 elements are kept in a separate
+// tail array outside of the trie, so append and removeLast usually touch the tail only.
+
+//                 root (shift = 5)
+//               /      \
+//     [0 .. 31]          [32 .. 63]          tail: [64 .. 70]
+
+// A Transient is a mutable view for batches of updates. Its nodes carry an owner token, and
+// nodes owned by the transient are updated in place instead of being copied, so a batch of
+// k appends costs about k array stores instead of k path copies. snapshot() returns an
+// immutable PersistentVector of the current contents in O(1): it hands over the nodes and
+// switches the transient to a new token, so nodes reachable from the snapshot are copied
+// before they are changed again. This lets a single writer keep appending while publishing
+// snapshots for readers. persistent() does the same but ends the transient. A Transient
+// must only be used by one thread at a time; the vectors it returns are immutable and safe
+// to share.
+
+// AVAILABLE METHODS:
+// - getSize()                  --> int                 O(1)
+// - get(index)                 --> element             O(log32 n)
+// - set(index, element)        --> PersistentVector    O(log32 n)
+// - append(element)            --> PersistentVector    O(1) amortized, O(log32 n) worst case
+// - removeLast()               --> PersistentVector    O(1) amortized, O(log32 n) worst case
+// - insertAt(index, element)   --> PersistentVector    O(n - index + log32 n)
+// - deleteAt(index)            --> PersistentVector    O(n - index + log32 n)
+// - contains(element)          --> boolean             O(n)
+// - indexOf(element)           --> int                 O(n)
+// - iterator()                 --> Iterator            O(1) per element
+// - asTransient()              --> Transient           O(1)
+// - Transient.append / set / removeLast / get / getSize  : as above, in place
+// - Transient.snapshot()       --> PersistentVector    O(1) : the transient stays usable
+// - Transient.persistent()     --> PersistentVector    O(1) : the transient can no longer be used
+// - writeTo(appendable, limit) --> void                O(n) (writes at most 'limit' elements, then how many were left out)
+// - writeTo(channel, limit)    --> void                O(n) (same, streamed through one reusable buffer, see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+public class PersistentVector<T> implements Iterable<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS; // 32
+    private static final int MASK = WIDTH - 1;
+
+    private static class Node {
+        private final Object edit; // owner token; a transient with the same token may change array in place
+        private final Object[] array;
+
+        private Node(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+
+        private Node(Object edit) {
+            this(edit, new Object[WIDTH]);
+        }
+    }
+
+    private static final Node EMPTY_NODE = new Node(null);
+
+    private final int size;
+    private final int shift; // BITS * (number of levels below the root)
+    private final Node root;
+    private final Object[] tail;
+
+    public PersistentVector() {
+        this(0, BITS, EMPTY_NODE, new Object[0]);
+    }
+
+    private PersistentVector(int size, int shift, Node root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    // index of the first element in the tail
+    private static int tailOffset(int size) {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private static Object[] leafFor(int index, int size, int shift, Node root, Object[] tail) {
+        if (index >= tailOffset(size)) {
+            return tail;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.array[(index >>> level) & MASK];
+        }
+        return node.array;
+    }
+
+    // the nodes and the tail only hold elements appended as T
+    @SuppressWarnings("unchecked")
+    private static <T> T elementAt(Object[] array, int index) {
+        return (T) array[index];
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    public T get(int index) {
+        checkIndex(index, this.size);
+        return elementAt(leafFor(index, this.size, this.shift, this.root, this.tail), index & MASK);
+    }
+
+    // a chain of single-child nodes of the given height leading to node
+    private static Node newPath(Object edit, int level, Node node) {
+        if (level == 0) {
+            return node;
+        }
+        Node ret = new Node(edit);
+        ret.array[0] = newPath(edit, level - BITS, node);
+        return ret;
+    }
+
+    // copy of parent with the full tail node pushed in as the last leaf (size elements before the push)
+    private static Node pushTail(int size, int level, Node parent, Node tailNode) {
+        int subIndex = ((size - 1) >>> level) & MASK;
+        Node ret = new Node(parent.edit, parent.array.clone());
+        Node child;
+        if (level == BITS) {
+            child = tailNode;
+        } else if (parent.array[subIndex] != null) {
+            child = pushTail(size, level - BITS, (Node) parent.array[subIndex], tailNode);
+        } else {
+            child = newPath(null, level - BITS, tailNode);
+        }
+        ret.array[subIndex] = child;
+        return ret;
+    }
+
+    public PersistentVector<T> append(T x) {
+        int n = this.size - tailOffset(this.size);
+        if (n < WIDTH) { // room in the tail
+            Object[] newTail = Arrays.copyOf(this.tail, n + 1);
+            newTail[n] = x;
+            return new PersistentVector<>(this.size + 1, this.shift, this.root, newTail);
+        }
+        Node tailNode = new Node(null, this.tail);
+        Node newRoot;
+        int newShift = this.shift;
+        if ((this.size >>> BITS) > (1 << this.shift)) { // the trie is full: add a level
+            newRoot = new Node(null);
+            newRoot.array[0] = this.root;
+            newRoot.array[1] = newPath(null, this.shift, tailNode);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(this.size, this.shift, this.root, tailNode);
+        }
+        return new PersistentVector<>(this.size + 1, newShift, newRoot, new Object[] { x });
+    }
+
+    private static Node doSet(int level, Node node, int index, Object x) {
+        Node ret = new Node(node.edit, node.array.clone());
+        if (level == 0) {
+            ret.array[index & MASK] = x;
+        } else {
+            int subIndex = (index >>> level) & MASK;
+            ret.array[subIndex] = doSet(level - BITS, (Node) node.array[subIndex], index, x);
+        }
+        return ret;
+    }
+
+    public PersistentVector<T> set(int index, T x) {
+        checkIndex(index, this.size);
+        if (index >= tailOffset(this.size)) {
+            Object[] newTail = this.tail.clone();
+            newTail[index & MASK] = x;
+            return new PersistentVector<>(this.size, this.shift, this.root, newTail);
+        }
+        return new PersistentVector<>(this.size, this.shift, doSet(this.shift, this.root, index, x), this.tail);
+    }
+
+    // copy of node without its last leaf, or null if nothing would be left (size elements before the pop)
+    private static Node popTail(int size, int level, Node node) {
+        int subIndex = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Node newChild = popTail(size, level - BITS, (Node) node.array[subIndex]);
+            if (newChild == null && subIndex == 0) {
+                return null;
+            }
+            Node ret = new Node(node.edit, node.array.clone());
+            ret.array[subIndex] = newChild;
+            return ret;
+        }
+        if (subIndex == 0) {
+            return null;
+        }
+        Node ret = new Node(node.edit, node.array.clone());
+        ret.array[subIndex] = null;
+        return ret;
+    }
+
+    public PersistentVector<T> removeLast() {
+        if (this.size == 0) {
+            throw new IllegalStateException("Vector is empty");
+        }
+        if (this.size == 1) {
+            return new PersistentVector<>();
+        }
+        if (this.size - tailOffset(this.size) > 1) {
+            Object[] newTail = Arrays.copyOf(this.tail, this.tail.length - 1);
+            return new PersistentVector<>(this.size - 1, this.shift, this.root, newTail);
+        }
+        // the tail becomes empty: the last leaf of the trie becomes the new tail
+        Object[] newTail = leafFor(this.size - 2, this.size, this.shift, this.root, this.tail);
+        Node newRoot = popTail(this.size, this.shift, this.root);
+        int newShift = this.shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (this.shift > BITS && newRoot.array[1] == null) { // the root has a single child: drop a level
+            newRoot = (Node) newRoot.array[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(this.size - 1, newShift, newRoot, newTail);
+    }
+
+    // removes the elements from index on, applies the change, then appends the removed elements back
+    private PersistentVector<T> rebuildFrom(int index, T inserted, boolean insert) {
+        Transient<T> t = this.asTransient();
+        Object[] removed = new Object[this.size - index];
+        for (int i = removed.length - 1; i >= 0; i--) {
+            removed[i] = t.get(t.getSize() - 1);
+            t.removeLast();
+        }
+        if (insert) {
+            t.append(inserted);
+        }
+        for (int i = insert ? 0 : 1; i < removed.length; i++) {
+            t.append(PersistentVector.<T>elementAt(removed, i));
+        }
+        return t.persistent();
+    }
+
+    public PersistentVector<T> insertAt(int index, T x) {
+        if (index > this.size || index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.rebuildFrom(index, x, true);
+    }
+
+    public PersistentVector<T> deleteAt(int index) {
+        if (index > this.size - 1 || index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.rebuildFrom(index, null, false);
+    }
+
+    public int indexOf(T x) {
+        int i = 0;
+        for (T elem : this) {
+            if (Objects.equals(elem, x)) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    public boolean contains(T x) {
+        return this.indexOf(x) >= 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            int index = 0;
+            Object[] leaf; // leaf holding index, looked up once per 32 elements
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public T next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                if ((index & MASK) == 0) {
+                    leaf = leafFor(index, size, shift, root, tail);
+                }
+                return elementAt(leaf, index++ & MASK);
+            }
+        };
+    }
+
+    public Transient<T> asTransient() {
+        return new Transient<>(this);
+    }
+
+    public static class Transient<T> {
+        private Object edit = new Object(); // owner token of the nodes this transient may change in place
+        private int size;
+        private int shift;
+        private Node root;
+        private Object[] tail; // always WIDTH long
+
+        private Transient(PersistentVector<T> v) {
+            this.size = v.size;
+            this.shift = v.shift;
+            this.root = v.root;
+            this.tail = Arrays.copyOf(v.tail, WIDTH);
+        }
+
+        private void ensureUsable() {
+            if (this.edit == null) {
+                throw new IllegalStateException("Transient used after persistent()");
+            }
+        }
+
+        private Node editable(Node node) {
+            return node.edit == this.edit ? node : new Node(this.edit, node.array.clone());
+        }
+
+        public int getSize() {
+            this.ensureUsable();
+            return this.size;
+        }
+
+        public T get(int index) {
+            this.ensureUsable();
+            checkIndex(index, this.size);
+            return elementAt(leafFor(index, this.size, this.shift, this.root, this.tail), index & MASK);
+        }
+
+        private Node pushTail(int level, Node parent, Node tailNode) {
+            Node ret = this.editable(parent);
+            int subIndex = ((this.size - 1) >>> level) & MASK;
+            Node child;
+            if (level == BITS) {
+                child = tailNode;
+            } else if (ret.array[subIndex] != null) {
+                child = this.pushTail(level - BITS, (Node) ret.array[subIndex], tailNode);
+            } else {
+                child = newPath(this.edit, level - BITS, tailNode);
+            }
+            ret.array[subIndex] = child;
+            return ret;
+        }
+
+        public Transient<T> append(T x) {
+            this.ensureUsable();
+            int n = this.size - tailOffset(this.size);
+            if (n < WIDTH) {
+                this.tail[n] = x;
+                this.size++;
+                return this;
+            }
+            Node tailNode = new Node(this.edit, this.tail);
+            this.tail = new Object[WIDTH];
+            this.tail[0] = x;
+            if ((this.size >>> BITS) > (1 << this.shift)) {
+                Node newRoot = new Node(this.edit);
+                newRoot.array[0] = this.root;
+                newRoot.array[1] = newPath(this.edit, this.shift, tailNode);
+                this.root = newRoot;
+                this.shift += BITS;
+            } else {
+                this.root = this.pushTail(this.shift, this.root, tailNode);
+            }
+            this.size++;
+            return this;
+        }
+
+        private Node doSet(int level, Node node, int index, Object x) {
+            Node ret = this.editable(node);
+            if (level == 0) {
+                ret.array[index & MASK] = x;
+            } else {
+                int subIndex = (index >>> level) & MASK;
+                ret.array[subIndex] = this.doSet(level - BITS, (Node) ret.array[subIndex], index, x);
+            }
+            return ret;
+        }
+
+        public Transient<T> set(int index, T x) {
+            this.ensureUsable();
+            checkIndex(index, this.size);
+            if (index >= tailOffset(this.size)) {
+                this.tail[index & MASK] = x;
+            } else {
+                this.root = this.doSet(this.shift, this.root, index, x);
+            }
+            return this;
+        }
+
+        private Node popTail(int level, Node node) {
+            int subIndex = ((this.size - 2) >>> level) & MASK;
+            if (level > BITS) {
+                Node newChild = this.popTail(level - BITS, (Node) node.array[subIndex]);
+                if (newChild == null && subIndex == 0) {
+                    return null;
+                }
+                Node ret = this.editable(node);
+                ret.array[subIndex] = newChild;
+                return ret;
+            }
+            if (subIndex == 0) {
+                return null;
+            }
+            Node ret = this.editable(node);
+            ret.array[subIndex] = null;
+            return ret;
+        }
+
+        public Transient<T> removeLast() {
+            this.ensureUsable();
+            if (this.size == 0) {
+                throw new IllegalStateException("Vector is empty");
+            }
+            int n = this.size - tailOffset(this.size);
+            if (this.size == 1 || n > 1) {
+                this.tail[n - 1] = null;
+                this.size--;
+                return this;
+            }
+            // the last leaf of the trie becomes the tail; copied, as the tail is changed in place
+            Object[] newTail = leafFor(this.size - 2, this.size, this.shift, this.root, this.tail).clone();
+            Node newRoot = this.popTail(this.shift, this.root);
+            if (newRoot == null) {
+                newRoot = new Node(this.edit);
+            }
+            if (this.shift > BITS && newRoot.array[1] == null) {
+                newRoot = (Node) newRoot.array[0];
+                this.shift -= BITS;
+            }
+            this.root = newRoot;
+            this.tail = newTail;
+            this.size--;
+            return this;
+        }
+
+        public PersistentVector<T> snapshot() {
+            this.ensureUsable();
+            int n = this.size - tailOffset(this.size);
+            PersistentVector<T> v = new PersistentVector<>(this.size, this.shift, this.root,
+                    Arrays.copyOf(this.tail, n));
+            this.edit = new Object(); // nodes shared with v are copied before the next change
+            return v;
+        }
+
+        public PersistentVector<T> persistent() {
+            PersistentVector<T> v = this.snapshot();
+            this.edit = null;
+            return v;
+        }
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n");
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        sb.append("\nsize    : ").append(this.size);
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        out.append("[");
+        int n = Math.min(this.size, Math.max(limit, 0));
+        Iterator<T> itr = this.iterator();
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                out.append(" ");
+            } else {
+                out.append(", ");
+            }
+            Utils.appendValue(out, itr.next());
+        }
+        if (n < this.size) {
+            out.append(n == 0 ? " ... (" : ", ... (");
+            Utils.appendNumber(out, this.size - n).append(" more)");
+        }
+        out.append(" ]");
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    private static volatile PersistentVector<Integer> published = new PersistentVector<>();
+
+    public static void main(String[] args) throws InterruptedException {
+        PersistentVector<Integer> v0 = new PersistentVector<>();
+        PersistentVector<Integer> v1 = v0.append(2).append(6).append(1).append(8).append(3);
+        PersistentVector<Integer> v2 = v1.insertAt(2, 55);
+        PersistentVector<Integer> v3 = v2.deleteAt(0).set(0, 7);
+        // every version stays as it was
+        System.out.println(v1);
+        System.out.println(v2);
+        System.out.println(v3);
+        System.out.println(v3.contains(6) + " " + v3.indexOf(89));
+
+        // one writer appends through a transient and publishes a snapshot every 1000 elements;
+        // readers use the latest snapshot without any locking
+        Thread reader = new Thread(() -> {
+            long checked = 0;
+            while (checked < 1_000_000) {
+                PersistentVector<Integer> v = published;
+                int size = v.getSize();
+                if (size > 0 && v.get(size - 1) != size - 1) {
+                    throw new AssertionError("inconsistent snapshot");
+                }
+                checked++;
+            }
+        });
+        reader.start();
+        Transient<Integer> writer = new PersistentVector<Integer>().asTransient();
+        for (int i = 0; i < 1_000_000; i++) {
+            writer.append(i);
+            if (i % 1000 == 999) {
+                published = writer.snapshot();
+            }
+        }
+        published = writer.persistent();
+        reader.join();
+        System.out.println("published " + published.getSize() + " elements, last = "
+                + published.get(published.getSize() - 1));
+    }
+}
@@ -1,128 +1,278 @@
 // This program implements the data-structure Priority Queue using min-heap.
-// Priority queue is an abstract data structure. 
-
-// This implementation is suited over "PriorityQueueQuickRemoval.java" if 'remove' operation 
-// is NOT performed frequently. 
-
-// Public Methods: 
-// add(element)     --> void        O(log(n))   : adds element to the priority queue 
-// remove(element)  --> boolean     O(n)        : removes element from the priority queue 
-//                                                If the element occurs multiple times, the one 
-//                                                at the lowest index will be removed.
-//                                                Returns true if an element is successfully removed, else false.
-// poll()           --> element     O(1)        : removes and returns root element; root element always 
-//                                                has the highest priority for removal 
-// peek()           --> element     O(1)        : returns root element 
-// contains(element)--> boolean     O(n)        : checks if the element is contained in the PQ
+// Priority queue is an abstract data structure.
 
+// This implementation is suited over "PriorityQueueQuickRemoval.java" if 'remove' operation
+// is NOT performed frequently.
+
+// With "Metrics.java" enabled, every add and removal records the levels its sink/swim moved,
+// and add and poll record their latency.
+
+// The heap is d-ary: node i has children d*i+1 ... d*i+d, and its parent at (i-1)/d.
+// The arity d (2, 4 and 8 are the common choices) is selected at construction; a
+// larger d makes the heap shallower, so swim touches fewer levels and sink scans
+// d adjacent children per level instead of jumping to a new cache line each time.
+// With the cache-aligned layout, the root is stored at slot d-1 of the backing array,
+// so every group of siblings starts at a multiple of d and shares a cache line.
+
+// Elements are ordered by the Comparator passed to a constructor. The static factories
+// create() and of(...) use the natural ordering and only accept Comparable element types;
+// in max-heap mode the natural ordering is reversed, so the root is the largest element.
+
+// Public Methods:
+// add(element)     --> void        O(log_d(n))   : adds element to the priority queue
+// remove(element)  --> boolean     O(n)          : removes element from the priority queue
+//                                                  If the element occurs multiple times, the one
+//                                                  at the lowest index will be removed.
+//                                                  Returns true if an element is successfully removed, else false.
+// poll()           --> element     O(d*log_d(n)) : removes and returns root element; root element always
+//                                                  has the highest priority for removal
+// peek()           --> element     O(1)          : returns root element
+// contains(element)--> boolean     O(n)          : checks if the element is contained in the PQ
+// getArity()       --> int         O(1)          : returns the number of children per node
+// addAll(elements) --> void        O(n+k) or O(k*log_d(n+k)) : adds a batch of k elements; large batches
+//                                                  are appended and re-heapified in one pass
+// pollN(k)         --> list        O(k*d*log_d(n)) : removes and returns up to k root elements in priority order
+// drainTo(coll)    --> int         O(n*d*log_d(n)) : moves all elements into coll in priority order
+// merge(other)     --> void        O(n+m)        : adds all elements of other (other is left unchanged)
+// replace(element) --> element     O(d*log_d(n)) : removes and returns the root and adds element in a single sink
+// toList()         --> list        O(n)          : returns the elements in heap (not priority) order
+// getSize()        --> int         O(1)
+// isEmpty()        --> boolean     O(1)
+// writeSnapshot(channel, codec)          --> void   O(n)  : writes the whole heap array in a compact binary format
+// writeCheckpoint(channel, codec)        --> void   O(k)  : writes only the k slots changed since the last
+//                                                           snapshot or checkpoint
+// readSnapshot(channel, codec, cmp, trusted) --> PQ O(n)  : restores a heap; a trusted snapshot is loaded as is,
+//                                                           otherwise it is re-heapified
+// applyCheckpoint(channel, codec, trusted)   --> void     : applies a checkpoint to a restored heap
+// (each of the four also takes a BinaryWriter / BinaryReader instead of a channel, see below)
+// writeTo(appendable, limit)             --> void   O(n)  : writes the heap level by level, at most 'limit' elements
+// writeTo(channel, limit)                --> void   O(n)  : same, streamed through one reusable buffer (see "Utils.java")
+
+// Snapshot format (big-endian):
+//    int magic, byte kind (0 = snapshot, 1 = checkpoint), long base generation, long generation,
+//    int arity, byte cacheAligned, int heapSize, then
+//    snapshot:   heapSize elements in heap order
+//    checkpoint: int count, then count (int index, element) pairs
+// Every element is written as [int length][bytes produced by the Codec].
+// A checkpoint can only be applied to the heap state of its base generation, i.e. to the
+// restored snapshot or checkpoint that was written right before it.
+// A snapshot and its checkpoints may follow each other on one channel. The channel methods
+// read exactly one snapshot or checkpoint (see "BinaryReader.java"), leaving the channel at
+// the start of the next one; passing one BinaryReader to all of them reads the sequence
+// with full read-ahead instead. Likewise, the BinaryWriter methods leave flushing to the caller.
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Arrays;
 
-class PriorityQueue<T extends Comparable> {
+class PriorityQueue<T> implements Heap<T> {
+    private static final int DEFAULT_ARITY = 2;
+    private static final int SNAPSHOT_MAGIC = 0x50514831; // "PQH1"
+    private static final byte KIND_SNAPSHOT = 0;
+    private static final byte KIND_CHECKPOINT = 1;
+
+    private final int arity; // number of children per node
+    private final int offset; // slot of the root in this.heap; non-zero only for the cache-aligned layout
+    private final Comparator<? super T> comparator;
     private int heapSize; // current number of elements
     private List<T> heap;
 
-    public PriorityQueue(T[] elements) {
-        this.heap = new ArrayList<T>(Arrays.asList(elements));
-        this.heapSize = elements.length;
-        this.heapify();
+    // heap indices written since the last snapshot or checkpoint; null until the first snapshot
+    private BitSet dirty;
+    private long generation; // number of snapshots and checkpoints written or restored
+
+    public PriorityQueue(Comparator<? super T> comparator) {
+        this(Collections.<T>emptyList(), comparator, DEFAULT_ARITY, false, false);
+    }
+
+    public PriorityQueue(T[] elements, Comparator<? super T> comparator) {
+        this(elements, comparator, DEFAULT_ARITY, false);
+    }
+
+    public PriorityQueue(T[] elements, Comparator<? super T> comparator, int arity, boolean cacheAligned) {
+        this(Arrays.asList(elements), comparator, arity, cacheAligned, true);
+    }
+
+    private PriorityQueue(List<? extends T> elements, Comparator<? super T> comparator, int arity,
+            boolean cacheAligned, boolean heapify) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("Invalid arity " + arity);
+        }
+        if (comparator == null) {
+            throw new IllegalArgumentException();
+        }
+        this.comparator = comparator;
+        this.arity = arity;
+        this.offset = cacheAligned ? arity - 1 : 0;
+        this.heap = new ArrayList<T>(this.offset + elements.size());
+        for (int i = 0; i < this.offset; i++) {
+            this.heap.add(null); // padding so that sibling groups start at multiples of arity
+        }
+        this.heap.addAll(elements);
+        this.heapSize = elements.size();
+        if (heapify) {
+            this.heapify();
+        }
+    }
+
+    // natural ordering; the bound keeps elements that are not Comparable out at compile time
+    public static <T extends Comparable<? super T>> PriorityQueue<T> create() {
+        return new PriorityQueue<>(Comparator.<T>naturalOrder());
+    }
+
+    public static <T extends Comparable<? super T>> PriorityQueue<T> of(T[] elements) {
+        return of(elements, DEFAULT_ARITY, false);
+    }
+
+    public static <T extends Comparable<? super T>> PriorityQueue<T> of(T[] elements, boolean maxHeap) {
+        return new PriorityQueue<>(elements, maxHeap ? Comparator.<T>reverseOrder() : Comparator.<T>naturalOrder());
+    }
+
+    public static <T extends Comparable<? super T>> PriorityQueue<T> of(T[] elements, int arity) {
+        return of(elements, arity, false);
+    }
+
+    public static <T extends Comparable<? super T>> PriorityQueue<T> of(T[] elements, int arity,
+            boolean cacheAligned) {
+        return new PriorityQueue<>(elements, Comparator.<T>naturalOrder(), arity, cacheAligned);
     }
 
     @Override
     public String toString() {
-        int SPACING = 1;
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
 
-        String str = "empty heap";
-        if (this.heapSize > 0) {
-            str = "";
-            int levels = (int)((Math.log(this.heapSize))/(Math.log(2))) + 1; 
-            int startIndex = 0;
-            for (int i = 0; i < levels; i++) {
-                int nElemMax = (int) Math.pow(2, i);
-                String strLine = ""; // str representation for depth i
-                for (int j = 0; j < nElemMax && startIndex + j < this.heapSize; j++) {
-                    String elemStr = this.heap.get(startIndex + j).toString();
-                    for (int k = 0; k < SPACING; k++) {
-                        elemStr += " ";
-                    }
-                    strLine += elemStr;
-                }
-                str += strLine + "\n";
-                startIndex += nElemMax;
+    // one line per level of the heap
+    public void writeTo(Appendable out, int limit) throws IOException {
+        if (this.heapSize == 0) {
+            out.append("empty heap");
+            return;
+        }
+        int n = Math.min(this.heapSize, Math.max(limit, 0));
+        long startIndex = 0;
+        for (long nElemMax = 1; startIndex < n; nElemMax *= this.arity) {
+            for (long i = startIndex; i < startIndex + nElemMax && i < n; i++) {
+                Utils.appendValue(out, this.get((int) i)).append(" ");
             }
+            out.append("\n");
+            startIndex += nElemMax;
         }
-        return str;
+        if (n < this.heapSize) {
+            out.append("... (");
+            Utils.appendNumber(out, this.heapSize - n).append(" more)\n");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    public int getArity() {
+        return this.arity;
     }
 
-    private void heapify() {
-        for (int i = Math.max(0, (this.heapSize / 2)) - 1; i >= 0; i--) {
+    private void heapify() { // O(n)
+        // the last node with a child is the parent of the last node
+        for (int i = (this.heapSize - 2) / this.arity; i >= 0; i--) {
             this.sink(i);
         }
     }
 
+    // element at heap index 'index', taking the layout offset into account
+    private T get(int index) {
+        return this.heap.get(index + this.offset);
+    }
+
+    private void set(int index, T node) {
+        this.heap.set(index + this.offset, node);
+        if (this.dirty != null) {
+            this.dirty.set(index);
+        }
+    }
+
     private boolean isLess(int index1, int index2) {
-        T node1 = this.heap.get(index1);
-        T node2 = this.heap.get(index2);
-        return node1.compareTo(node2) < 0;
+        T node1 = this.get(index1);
+        T node2 = this.get(index2);
+        return this.comparator.compare(node1, node2) < 0;
     }
 
     private void swap(int index1, int index2) {
         // swaps the nodes in two indices
-        T node1 = this.heap.get(index1);
-        T node2 = this.heap.get(index2);
-        this.heap.set(index1, node2);
-        this.heap.set(index2, node1);
-    }
-
-    // top to bottom node sink, O(log(n))
-    private void sink(int index) {
-        int left = 2 * index + 1; // left child node index
-        int right = 2 * index + 2; // right child node index
-
-        if (right < this.heapSize) {
-            if (isLess(left, index) && isLess(right, index)) {
-                if (isLess(left, right)) {
-                    this.swap(index, left);
-                    this.sink(left);
-                } else {
-                    this.swap(index, right);
-                    this.sink(right);
-                }
-            } else if (isLess(left, index)) {
-                this.swap(index, left);
-                this.sink(left);
-            } else if (isLess(right, index)) {
-                this.swap(index, right);
-                this.sink(right);
-            }
-        } else if (right == this.heapSize) { // very last element lies on left branch
-            if (isLess(left, index)) {
-                this.swap(index, left);
+        T node1 = this.get(index1);
+        T node2 = this.get(index2);
+        this.set(index1, node2);
+        this.set(index2, node1);
+    }
+
+    // top to bottom node sink, O(d*log_d(n)); returns the number of levels moved
+    private int sink(int index) {
+        int first = this.arity * index + 1; // first child node index
+        if (first >= this.heapSize) { // leaf
+            return 0;
+        }
+        int last = Math.min(first + this.arity, this.heapSize); // one past the last child node index
+
+        // siblings are adjacent, so scanning them for the smallest stays within a few cache lines
+        int smallest = first;
+        for (int child = first + 1; child < last; child++) {
+            if (isLess(child, smallest)) {
+                smallest = child;
             }
         }
+        if (isLess(smallest, index)) {
+            this.swap(index, smallest);
+            return 1 + this.sink(smallest);
+        }
+        return 0;
     }
 
-    // bottom to up node swim, O(log(n))
-    private void swim(int index) {
+    // bottom to up node swim, O(log_d(n)); returns the number of levels moved
+    private int swim(int index) {
         if (index == 0) { // base case
-            return;
+            return 0;
         }
 
-        int parent = (index - 1) / 2; // parent node index
+        int parent = (index - 1) / this.arity; // parent node index
         if (isLess(index, parent)) {
             this.swap(index, parent);
-            this.swim(parent);
+            return 1 + this.swim(parent);
         }
+        return 0;
     }
 
-    public void add(T elem) { // O(log(n))
+    @Override
+    public void add(T elem) { // O(log_d(n))
         if (elem == null) {
             throw new IllegalArgumentException();
         }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
         this.heap.add(elem);
-        this.swim(this.heapSize);
+        if (this.dirty != null) {
+            this.dirty.set(this.heapSize);
+        }
+        int depth = this.swim(this.heapSize);
         this.heapSize++;
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+            Metrics.HEAP_SIFT_DEPTH.record(depth);
+            Metrics.HEAP_ADD_NANOS.record(System.nanoTime() - start);
+        }
     }
 
     private T removeAt(int index) {
@@ -139,14 +289,25 @@ class PriorityQueue<T extends Comparable> {
         // 3. restore heap invariant by first (trying to) sink the swapped
         // element, followed by swimming it.
 
-        T node = this.heap.get(index);
+        T node = this.get(index);
         this.swap(index, this.heapSize - 1);
-        this.heap.remove(this.heapSize - 1);
+        this.heap.remove(this.offset + this.heapSize - 1);
         this.heapSize--;
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+        }
+
+        if (index == this.heapSize) { // removed the last element; nothing was moved
+            return node;
+        }
 
-        this.sink(index);
-        if (this.heap.get(index).equals(node)) { // trying to sink didn't work; so swim
-            this.swim(index);
+        T moved = this.get(index);
+        int depth = this.sink(index);
+        if (this.get(index) == moved) { // trying to sink didn't work; so swim
+            depth = this.swim(index);
+        }
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_SIFT_DEPTH.record(depth);
         }
         return node;
     }
@@ -158,7 +319,7 @@ class PriorityQueue<T extends Comparable> {
         // get index, O(n)
         int index = -1;
         for (int i = 0; i < this.heapSize; i++) {
-            if (this.heap.get(i).equals(elem)) {
+            if (this.get(i).equals(elem)) {
                 index = i;
                 break;
             }
@@ -171,37 +332,337 @@ class PriorityQueue<T extends Comparable> {
         return true;
     }
 
-    // remove and return root, O(1)
+    // remove and return root, O(d*log_d(n))
+    @Override
     public T poll() {
-        return this.removeAt(0);
+        if (!Metrics.ENABLED) {
+            return this.removeAt(0);
+        }
+        long start = System.nanoTime();
+        T root = this.removeAt(0);
+        Metrics.HEAP_POLL_NANOS.record(System.nanoTime() - start);
+        return root;
     }
 
     // return root if exists, else return null, O(1)
+    @Override
     public T peek() {
         if (this.heapSize > 0) {
-            return this.heap.get(0);
+            return this.get(0);
         }
         return null;
     }
 
     public boolean contains(T elem) { // O(n)
         for (int i = 0; i < this.heapSize; i++) {
-            if (this.heap.get(i).equals(elem)) {
+            if (this.get(i).equals(elem)) {
                 return true;
             }
         }
         return false;
     }
 
-    public static void main(String[] args) {
+    public void addAll(Collection<? extends T> elems) {
+        int k = elems.size();
+        if (k == 0) {
+            return;
+        }
+
+        // k individual swims cost about k*log_d(n+k) comparisons, re-heapifying costs
+        // about n+k; pick whichever is cheaper for this batch
+        long total = (long) this.heapSize + k;
+        int levels = (63 - Long.numberOfLeadingZeros(total)) / (31 - Integer.numberOfLeadingZeros(this.arity)) + 1;
+        if ((long) k * levels < total) {
+            for (T elem : elems) {
+                this.add(elem);
+            }
+            return;
+        }
+
+        for (T elem : elems) {
+            if (elem == null) {
+                throw new IllegalArgumentException();
+            }
+        }
+        this.heap.addAll(elems);
+        if (this.dirty != null) {
+            this.dirty.set(this.heapSize, this.heapSize + k);
+        }
+        this.heapSize += k;
+        this.heapify();
+    }
+
+    // remove and return up to k root elements, in priority order
+    public List<T> pollN(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Invalid count " + k);
+        }
+        List<T> polled = new ArrayList<>(Math.min(k, this.heapSize));
+        while (polled.size() < k && this.heapSize > 0) {
+            polled.add(this.poll());
+        }
+        return polled;
+    }
+
+    // move all elements into 'coll' in priority order; returns the number of elements moved
+    public int drainTo(Collection<? super T> coll) {
+        return this.drainTo(coll, Integer.MAX_VALUE);
+    }
+
+    public int drainTo(Collection<? super T> coll, int maxElements) {
+        if (coll == null) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        while (n < maxElements && this.heapSize > 0) {
+            coll.add(this.poll());
+            n++;
+        }
+        return n;
+    }
+
+    // add all elements of 'other' to this heap; 'other' is left unchanged
+    public void merge(PriorityQueue<? extends T> other) {
+        List<? extends T> elems = other.heap.subList(other.offset, other.offset + other.heapSize);
+        if (other == this) { // addAll appends to the list it would be iterating
+            elems = new ArrayList<>(elems);
+        }
+        this.addAll(elems);
+    }
+
+    // equivalent to poll() followed by add(elem), but sinks only once
+    // returns null (and just adds elem) if the heap is empty
+    public T replace(T elem) {
+        if (elem == null) {
+            throw new IllegalArgumentException();
+        }
+        if (this.heapSize == 0) {
+            this.add(elem);
+            return null;
+        }
+        T root = this.get(0);
+        this.set(0, elem);
+        this.sink(0);
+        return root;
+    }
+
+    public List<T> toList() {
+        return new ArrayList<>(this.heap.subList(this.offset, this.offset + this.heapSize));
+    }
+
+    @Override
+    public int getSize() {
+        return this.heapSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.heapSize == 0;
+    }
+
+    private void writeHeader(BinaryWriter out, byte kind, long baseGeneration) throws IOException {
+        out.putInt(SNAPSHOT_MAGIC);
+        out.putByte(kind);
+        out.putLong(baseGeneration);
+        out.putLong(this.generation);
+        out.putInt(this.arity);
+        out.putByte((byte) (this.offset > 0 ? 1 : 0));
+        out.putInt(this.heapSize);
+    }
+
+    public void writeSnapshot(WritableByteChannel channel, Codec<? super T> codec) throws IOException {
+        BinaryWriter out = new BinaryWriter(channel);
+        this.writeSnapshot(out, codec);
+        out.flush();
+    }
+
+    public void writeSnapshot(BinaryWriter out, Codec<? super T> codec) throws IOException {
+        long base = this.generation++;
+        this.writeHeader(out, KIND_SNAPSHOT, base);
+        for (int i = 0; i < this.heapSize; i++) {
+            out.putElement(this.get(i), codec);
+        }
+        this.dirty = new BitSet(); // start tracking changes for the next checkpoint
+    }
+
+    public void writeCheckpoint(WritableByteChannel channel, Codec<? super T> codec) throws IOException {
+        BinaryWriter out = new BinaryWriter(channel);
+        this.writeCheckpoint(out, codec);
+        out.flush();
+    }
+
+    public void writeCheckpoint(BinaryWriter out, Codec<? super T> codec) throws IOException {
+        if (this.dirty == null) {
+            throw new IllegalStateException("A checkpoint needs a previous snapshot");
+        }
+        long base = this.generation++;
+        this.writeHeader(out, KIND_CHECKPOINT, base);
+
+        // slots at or beyond heapSize were removed; the new heapSize in the header covers them
+        BitSet changed = this.dirty.get(0, this.heapSize);
+        out.putInt(changed.cardinality());
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            out.putInt(i);
+            out.putElement(this.get(i), codec);
+        }
+        this.dirty.clear();
+    }
+
+    public static <T extends Comparable<? super T>> PriorityQueue<T> readSnapshot(ReadableByteChannel channel,
+            Codec<T> codec, boolean trusted) throws IOException {
+        return readSnapshot(channel, codec, Comparator.<T>naturalOrder(), trusted);
+    }
+
+    // 'trusted' skips re-heapifying; only pass true for snapshots written by writeSnapshot() with the same
+    // comparator, and not modified since
+    public static <T> PriorityQueue<T> readSnapshot(ReadableByteChannel channel, Codec<T> codec,
+            Comparator<? super T> comparator, boolean trusted) throws IOException {
+        BinaryReader in = new BinaryReader(channel, true);
+        PriorityQueue<T> pq = readSnapshot(in, codec, comparator, trusted);
+        in.finish();
+        return pq;
+    }
+
+    public static <T> PriorityQueue<T> readSnapshot(BinaryReader in, Codec<T> codec,
+            Comparator<? super T> comparator, boolean trusted) throws IOException {
+        if (in.getInt() != SNAPSHOT_MAGIC || in.getByte() != KIND_SNAPSHOT) {
+            throw new IOException("Not a PriorityQueue snapshot");
+        }
+        in.getLong(); // base generation
+        long generation = in.getLong();
+        int arity = in.getInt();
+        boolean cacheAligned = in.getByte() != 0;
+        int heapSize = in.getInt();
+        if (arity < 2 || heapSize < 0) {
+            throw new IOException("Corrupt snapshot: arity " + arity + ", " + heapSize + " elements");
+        }
+
+        List<T> elements = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            elements.add(in.getElement(codec));
+        }
+        PriorityQueue<T> pq = new PriorityQueue<>(elements, comparator, arity, cacheAligned, !trusted);
+        pq.generation = generation;
+        pq.dirty = new BitSet();
+        return pq;
+    }
+
+    public void applyCheckpoint(ReadableByteChannel channel, Codec<T> codec, boolean trusted) throws IOException {
+        BinaryReader in = new BinaryReader(channel, true);
+        this.applyCheckpoint(in, codec, trusted);
+        in.finish();
+    }
+
+    public void applyCheckpoint(BinaryReader in, Codec<T> codec, boolean trusted) throws IOException {
+        if (in.getInt() != SNAPSHOT_MAGIC || in.getByte() != KIND_CHECKPOINT) {
+            throw new IOException("Not a PriorityQueue checkpoint");
+        }
+        long base = in.getLong();
+        if (base != this.generation) {
+            throw new IOException("Checkpoint is based on generation " + base + ", heap is at " + this.generation);
+        }
+        long generation = in.getLong();
+        if (in.getInt() != this.arity || (in.getByte() != 0) != (this.offset > 0)) {
+            throw new IOException("Checkpoint layout does not match the heap");
+        }
+        int heapSize = in.getInt();
+        int count = in.getInt();
+        if (heapSize < 0 || count < 0 || count > heapSize) {
+            throw new IOException("Corrupt checkpoint: " + count + " changed slots of " + heapSize);
+        }
+
+        // read and check every record before changing the heap, so a bad checkpoint leaves it as it was
+        int[] indices = new int[count];
+        List<T> elements = new ArrayList<>(count);
+        BitSet changed = new BitSet();
+        for (int i = 0; i < count; i++) {
+            int index = in.getInt();
+            if (index < 0 || index >= heapSize || changed.get(index)) {
+                throw new IOException("Invalid or repeated index " + index + " in checkpoint");
+            }
+            changed.set(index);
+            indices[i] = index;
+            elements.add(in.getElement(codec));
+        }
+        int missing = changed.nextClearBit(this.heapSize); // every slot beyond the old size must be in it
+        if (missing < heapSize) {
+            throw new IOException("Checkpoint does not cover index " + missing);
+        }
+
+        while (this.heap.size() > this.offset + heapSize) {
+            this.heap.remove(this.heap.size() - 1);
+        }
+        while (this.heap.size() < this.offset + heapSize) {
+            this.heap.add(null);
+        }
+        this.heapSize = heapSize;
+        for (int i = 0; i < count; i++) {
+            this.heap.set(this.offset + indices[i], elements.get(i));
+        }
+        if (!trusted) {
+            this.heapify();
+        }
+        this.generation = generation;
+        this.dirty.clear();
+    }
+
+    public static void main(String[] args) throws IOException {
         Integer[] elements = { 9, 8, 7, 6, 5, 4, 3, 2, 1, 0 };
 
-        PriorityQueue<Integer> pq = new PriorityQueue<>(elements);
+        PriorityQueue<Integer> pq = PriorityQueue.of(elements);
         System.out.println(pq);
         System.out.println(pq.poll());
         System.out.println();
         System.out.println(pq);
         System.out.println(pq.peek());
         System.out.println(pq.contains(54));
+
+        PriorityQueue<Integer> pq4 = PriorityQueue.of(elements, 4, true);
+        System.out.println(pq4);
+        while (pq4.peek() != null) {
+            System.out.print(pq4.poll() + " ");
+        }
+        System.out.println();
+
+        PriorityQueue<Integer> maxPq = PriorityQueue.of(elements, true);
+        maxPq.addAll(Arrays.asList(15, 12, 11, 10));
+        System.out.println(maxPq.pollN(3));
+
+        PriorityQueue<String> byLength = new PriorityQueue<>(Comparator.comparingInt(String::length));
+        byLength.add("banana");
+        byLength.add("fig");
+        byLength.add("apple");
+        List<String> drained = new ArrayList<>();
+        byLength.drainTo(drained);
+        System.out.println(drained);
+
+        pq.merge(maxPq);
+        System.out.println(pq);
+        PriorityQueue<Integer> doubled = PriorityQueue.of(new Integer[] { 3, 1, 2 });
+        doubled.merge(doubled);
+        System.out.println(doubled.pollN(6));
+
+        // a snapshot followed by three checkpoints, all on one channel
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("pq", ".snapshot");
+        try (java.nio.channels.FileChannel out = java.nio.channels.FileChannel.open(file,
+                java.nio.file.StandardOpenOption.WRITE)) {
+            pq.writeSnapshot(out, Codec.INT);
+            for (int i = 0; i < 3; i++) {
+                pq.poll();
+                pq.add(-1 - i);
+                pq.writeCheckpoint(out, Codec.INT);
+            }
+        }
+
+        PriorityQueue<Integer> restored;
+        try (java.nio.channels.FileChannel in = java.nio.channels.FileChannel.open(file)) {
+            restored = PriorityQueue.readSnapshot(in, Codec.INT, true);
+            while (in.position() < in.size()) {
+                restored.applyCheckpoint(in, Codec.INT, true);
+            }
+        }
+        System.out.println(restored);
+        System.out.println(restored.toList().equals(pq.toList()));
+        java.nio.file.Files.delete(file);
     }
-}
\ No newline at end of file
+}
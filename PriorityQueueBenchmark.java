@@ -0,0 +1,81 @@
+// This program compares add/poll throughput of "PriorityQueue.java" across heap arities
+// and layouts (binary, 4-ary, 8-ary, each with and without the cache-aligned layout).
+
+// to run, execute the following command (need to compile PriorityQueue.java too):
+
+// javac PriorityQueueBenchmark.java; java -Xmx16g PriorityQueueBenchmark [maxSize]
+
+// Sizes go from 1K up to maxSize (default 1M) in powers of 10; 100M elements need a
+// large heap, hence the -Xmx. Sizes are capped at 10^9, the largest power of 10 that
+// fits in an array. Each configuration is run a few times as warm-up before
+// the measured runs so that the JIT has compiled sink/swim for every arity.
+
+import java.util.Random;
+
+class PriorityQueueBenchmark {
+    private static final int[] ARITIES = { 2, 4, 8 };
+    private static final long MAX_SIZE = 1_000_000_000; // largest power of 10 that fits an array
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    private static Integer[] randomElements(int n, long seed) {
+        Random random = new Random(seed);
+        Integer[] elements = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            elements[i] = random.nextInt();
+        }
+        return elements;
+    }
+
+    // returns {addNanos, pollNanos} for adding all elements to an empty heap, then polling them all
+    private static long[] run(Integer[] elements, int arity, boolean cacheAligned) {
+        PriorityQueue<Integer> pq = PriorityQueue.of(new Integer[0], arity, cacheAligned);
+
+        long start = System.nanoTime();
+        for (Integer elem : elements) {
+            pq.add(elem);
+        }
+        long addNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < elements.length; i++) {
+            checksum += pq.poll();
+        }
+        long pollNanos = System.nanoTime() - start;
+
+        if (checksum == 42) { // keep the polled values alive
+            System.out.print("");
+        }
+        return new long[] { addNanos, pollNanos };
+    }
+
+    public static void main(String[] args) {
+        long maxSize = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+
+        System.out.printf("%12s %6s %8s %14s %14s%n", "size", "arity", "aligned", "add (ops/ms)", "poll (ops/ms)");
+        for (long size = 1_000; size <= Math.min(maxSize, MAX_SIZE); size *= 10) {
+            int n = (int) size;
+            Integer[] elements = randomElements(n, n);
+            int runs = n >= 10_000_000 ? 1 : MEASURED_RUNS;
+            int warmups = n >= 10_000_000 ? 0 : WARMUP_RUNS;
+
+            for (int arity : ARITIES) {
+                for (boolean cacheAligned : new boolean[] { false, true }) {
+                    for (int i = 0; i < warmups; i++) {
+                        run(elements, arity, cacheAligned);
+                    }
+                    long addNanos = Long.MAX_VALUE;
+                    long pollNanos = Long.MAX_VALUE;
+                    for (int i = 0; i < runs; i++) {
+                        long[] nanos = run(elements, arity, cacheAligned);
+                        addNanos = Math.min(addNanos, nanos[0]);
+                        pollNanos = Math.min(pollNanos, nanos[1]);
+                    }
+                    System.out.printf("%12d %6d %8b %14.1f %14.1f%n", n, arity, cacheAligned,
+                            n / (addNanos / 1e6), n / (pollNanos / 1e6));
+                }
+            }
+        }
+    }
+}
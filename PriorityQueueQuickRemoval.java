@@ -1,71 +1,227 @@
 // This program implements the data-structure Priority Queue using min-heap.
-// Priority queue is an abstract data structure. 
-
-// Uses index table to reduce time complexity of
-//    remove() from O(n) to O(log(n)).
+// Priority queue is an abstract data structure.
+
+// This is an indexed priority queue: every inserted element gets a slot, and two flat
+// int arrays map slots to heap positions and back:
+//    positionOf[slot]    --> index of the element in the heap (-1 if the slot is free)
+//    slotAt[index]       --> slot of the element at that heap index
+// Swapping two heap nodes only swaps two ints in each array, so sink/swim do no boxing
+// and no tree or hash operations. A hash index from value to slots is kept only for
+// the value-based remove(element)/contains(element).
+// With "Metrics.java" enabled, every insertion and removal records the levels its sink/swim moved.
+
+// Compared to "PriorityQueue.java", this reduces the time complexity of
+//    remove() from O(n) to O(log(n))
 //    contains() from O(n) to O(1)
-
-// This, however, introduces constant overhead during element-addition. 
-
-// Public Methods: 
-// add(element)     --> void        O(log(n))   : adds element to the priority queue 
-// remove(element)  --> boolean     O(log(n))   : removes element from the priority queue 
-//                                                If the element occurs multiple times, the one 
-//                                                at the lowest index will be removed.
-// poll()           --> element     O(1)        : removes and returns root element; root element always 
-//                                                has the highest priority for removal 
-// peek()           --> element     O(1)        : returns root element 
-// contains(element)--> boolean     O(1)        : checks if the element is contained in the PQ. Since we
-//                                                are using an index table, the time complexity reduces to
-//                                                constant time. 
-
-import java.util.ArrayList;
-import java.util.List;
+// and allows changing the priority of an element through its handle.
+
+// Slots of removed elements are recycled by later insertions. The handle returned by insert()
+// is a long: the slot in the low 32 bits and the slot's generation above them. Releasing a slot
+// bumps its generation, so a stale handle (of an element that was removed or polled) is
+// rejected by containsHandle/get/removeHandle/update even after its slot has been reused.
+
+// Lazy-deletion mode (for cancellation-heavy workloads): removing an element only marks it
+// with a tombstone and drops it from the value index, which is O(1) after the lookup.
+// Tombstones are discarded when they reach the root during poll()/peek(), and the heap is
+// compacted (live elements kept, then re-heapified in O(n)) once tombstones make up more
+// than the compaction threshold of the heap. The tombstone count and the number and total
+// time of compactions are exposed for monitoring.
+
+// Public Methods:
+// insert(element)            --> handle      O(log(n))   : adds element and returns its handle
+// add(element)               --> void        O(log(n))   : adds element to the priority queue
+// remove(element)            --> boolean     O(log(n))   : removes element from the priority queue
+//                                                          If the element occurs multiple times, the one
+//                                                          at the lowest index will be removed.
+// removeHandle(handle)       --> element     O(log(n))   : removes and returns the element of handle
+// update(handle, element)    --> void        O(log(n))   : replaces the element of handle, moving it up or down
+// decreaseKey(handle, elem)  --> void        O(log(n))   : replaces the element of handle by a smaller or equal one
+// increaseKey(handle, elem)  --> void        O(log(n))   : replaces the element of handle by a greater or equal one
+// get(handle)                --> element     O(1)        : returns the element of handle
+// poll()                     --> element     O(log(n))   : removes and returns root element; root element always
+//                                                          has the highest priority for removal
+// peek()                     --> element     O(1)        : returns root element
+// peekHandle()               --> handle      O(1)        : returns the handle of the root element, or -1 if empty
+// contains(element)          --> boolean     O(1)        : checks if the element is contained in the PQ
+// containsHandle(handle)     --> boolean     O(1)        : checks if handle refers to an element in the PQ
+// getTombstoneCount()        --> int         O(1)        : removed elements still occupying heap slots (lazy mode)
+// getCompactionCount()       --> long        O(1)        : number of compactions so far (lazy mode)
+// getCompactionTimeNanos()   --> long        O(1)        : total time spent compacting (lazy mode)
+// writeSnapshot(channel, codec)          --> void   O(n)  : writes the heap layout (slots, generations, tombstones and elements)
+// writeCheckpoint(channel, codec)        --> void   O(k)  : writes only the k heap slots changed since the last
+//                                                           snapshot or checkpoint
+// readSnapshot(channel, codec, trusted)  --> PQ     O(n)  : restores a heap; a trusted snapshot is loaded as is,
+//                                                           otherwise it is re-heapified
+// applyCheckpoint(channel, codec, trusted) --> void O(n)  : applies a checkpoint to a restored heap
+// (each of the four also takes a BinaryWriter / BinaryReader instead of a channel, as in "PriorityQueue.java")
+// writeTo(appendable, limit)             --> void   O(n)  : writes the heap level by level, at most 'limit' elements
+// writeTo(channel, limit)                --> void   O(n)  : same, streamed through one reusable buffer (see "Utils.java")
+
+// Snapshot format (big-endian), like the one of "PriorityQueue.java":
+//    int magic, byte kind (0 = snapshot, 1 = checkpoint), long base generation, long generation,
+//    byte lazyDeletion, long compactionThreshold (double bits), int nextSlot, int heapSize, then
+//    snapshot:   nextSlot int generations (one per slot), then
+//                heapSize (int slot, byte tombstone, element) records in heap order
+//    checkpoint: int count, then count (int slot, int generation) pairs of the slots released since, then
+//                int count, then count (int index, int slot, byte tombstone, element) records
+// The slot-to-position map, the free slots and the value index are rebuilt from the
+// heap layout on restore, in O(n) and without comparing elements. The channel methods read
+// exactly one snapshot or checkpoint, so a sequence of them can share one channel.
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.TreeSet;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Map;
 
-class PriorityQueue<T extends Comparable> {
-    private int heapSize; // current number of elements
-    private List<T> heap;
-    private Map<T, TreeSet<Integer>> indexTable = new HashMap<>();
+class PriorityQueueQuickRemoval<T extends Comparable<? super T>> implements Heap<T> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+    private static final int MIN_COMPACTION_SIZE = 64; // small heaps just drain their tombstones through poll()
+    private static final int SNAPSHOT_MAGIC = 0x50515231; // "PQR1"
+    private static final byte KIND_SNAPSHOT = 0;
+    private static final byte KIND_CHECKPOINT = 1;
+    private static final int MAX_GENERATION = Integer.MAX_VALUE; // keeps handles non-negative
+
+    private int heapSize; // current number of heap slots, including tombstones
+    private Object[] values; // values[slot] is the element of slot
+    private int[] positionOf; // positionOf[slot] is the heap index of slot, -1 if the slot is free
+    private int[] slotAt; // slotAt[index] is the slot at heap index 'index'
+    private int[] generations; // generations[slot] is bumped every time the slot is released
+    private int nextSlot; // slots below this have been used at least once
+    private int[] freeSlots; // stack of slots released by removals
+    private int nFreeSlots;
+
+    // lazy-deletion mode
+    private final boolean lazyDeletion;
+    private final double compactionThreshold; // fraction of tombstones in the heap that triggers a compaction
+    private boolean[] tombstone; // tombstone[slot] is true if slot was removed but is still in the heap
+    private int nTombstones;
+    private long nCompactions;
+    private long compactionNanos;
+
+    // heap indices, and slots whose generation changed, since the last snapshot or checkpoint;
+    // null until the first snapshot
+    private BitSet dirty;
+    private BitSet releasedSlots;
+    private long generation; // number of snapshots and checkpoints written or restored
+
+    // value --> slots of all elements equal to value
+    private Map<T, SlotSet> indexTable = new HashMap<>();
+
+    // small unordered set of slots, usually of size 1
+    private static class SlotSet {
+        private int[] slots = new int[1];
+        private int size;
+
+        private void add(int slot) {
+            if (this.size == this.slots.length) {
+                this.slots = Arrays.copyOf(this.slots, this.size * 2);
+            }
+            this.slots[this.size++] = slot;
+        }
 
-    public PriorityQueue(T[] elements) {
-        this.heap = new ArrayList<T>(Arrays.asList(elements));
-        this.heapSize = elements.length;
-        for (int i = 0; i < this.heapSize; i++) {
-            T node = this.heap.get(i);
-            this.addToIndexTable(node, i);
+        private void remove(int slot) {
+            for (int i = 0; i < this.size; i++) {
+                if (this.slots[i] == slot) {
+                    this.slots[i] = this.slots[--this.size];
+                    return;
+                }
+            }
         }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(Arrays.copyOf(this.slots, this.size));
+        }
+    }
+
+    public PriorityQueueQuickRemoval() {
+        this(INITIAL_CAPACITY, false, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public PriorityQueueQuickRemoval(T[] elements) {
+        this(elements, false);
+    }
+
+    public PriorityQueueQuickRemoval(T[] elements, boolean lazyDeletion) {
+        this(elements, lazyDeletion, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public PriorityQueueQuickRemoval(T[] elements, boolean lazyDeletion, double compactionThreshold) {
+        this(Math.max(INITIAL_CAPACITY, elements.length), lazyDeletion, compactionThreshold);
+        for (int i = 0; i < elements.length; i++) {
+            if (elements[i] == null) {
+                throw new IllegalArgumentException();
+            }
+            this.values[i] = elements[i];
+            this.positionOf[i] = i;
+            this.slotAt[i] = i;
+            this.addToIndexTable(elements[i], i);
+        }
+        this.nextSlot = elements.length;
+        this.heapSize = elements.length;
         this.heapify();
+    }
 
+    private PriorityQueueQuickRemoval(int capacity, boolean lazyDeletion, double compactionThreshold) {
+        if (!(compactionThreshold > 0 && compactionThreshold <= 1)) {
+            throw new IllegalArgumentException("Invalid compaction threshold " + compactionThreshold);
+        }
+        this.lazyDeletion = lazyDeletion;
+        this.compactionThreshold = compactionThreshold;
+        this.values = new Object[capacity];
+        this.positionOf = new int[capacity];
+        this.slotAt = new int[capacity];
+        this.generations = new int[capacity];
+        this.freeSlots = new int[capacity];
+        this.tombstone = new boolean[capacity];
+        Arrays.fill(this.positionOf, -1);
     }
 
     @Override
     public String toString() {
-        int SPACING = 1;
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
 
-        String str = "empty heap";
-        if (this.heapSize > 0) {
-            str = "";
-            int levels = (int) ((Math.log(this.heapSize)) / (Math.log(2))) + 1;
-            int startIndex = 0;
-            for (int i = 0; i < levels; i++) {
-                int nElemMax = (int) Math.pow(2, i);
-                String strLine = ""; // str representation for depth i
-                for (int j = 0; j < nElemMax && startIndex + j < this.heapSize; j++) {
-                    String elemStr = this.heap.get(startIndex + j).toString();
-                    for (int k = 0; k < SPACING; k++) {
-                        elemStr += " ";
-                    }
-                    strLine += elemStr;
+    // one line per level of the heap
+    public void writeTo(Appendable out, int limit) throws IOException {
+        if (this.heapSize == 0) {
+            out.append("empty heap");
+            return;
+        }
+        int n = Math.min(this.heapSize, Math.max(limit, 0));
+        long startIndex = 0;
+        for (long nElemMax = 1; startIndex < n; nElemMax *= 2) {
+            for (long i = startIndex; i < startIndex + nElemMax && i < n; i++) {
+                boolean removed = this.tombstone[this.slotAt[(int) i]]; // waiting for poll or compaction
+                if (removed) {
+                    out.append("(");
                 }
-                str += strLine + "\n";
-                startIndex += nElemMax;
+                Utils.appendValue(out, this.valueAt((int) i)).append(removed ? ") " : " ");
             }
+            out.append("\n");
+            startIndex += nElemMax;
+        }
+        if (n < this.heapSize) {
+            out.append("... (");
+            Utils.appendNumber(out, this.heapSize - n).append(" more)\n");
         }
-        return str;
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
     }
 
     private void heapify() { // O(n)
@@ -74,102 +230,146 @@ class PriorityQueue<T extends Comparable> {
         }
     }
 
+    @SuppressWarnings("unchecked") // only elements of type T are stored in this.values
+    private T valueOf(int slot) {
+        return (T) this.values[slot];
+    }
+
+    private T valueAt(int index) {
+        return this.valueOf(this.slotAt[index]);
+    }
+
     private boolean isLess(int index1, int index2) {
-        T node1 = this.heap.get(index1);
-        T node2 = this.heap.get(index2);
+        T node1 = this.valueAt(index1);
+        T node2 = this.valueAt(index2);
         return node1.compareTo(node2) < 0;
     }
 
     private void swap(int index1, int index2) {
-        // swaps the nodes in two indices
-        // also updates this.indexTable
-
-        // swap node values
-        T node1 = this.heap.get(index1);
-        T node2 = this.heap.get(index2);
-        this.heap.set(index1, node2);
-        this.heap.set(index2, node1);
-
-        // update this.indexTable
-        this.indexTable.get(node1).remove(index1);
-        this.indexTable.get(node1).add(index2);
-        this.indexTable.get(node2).remove(index2);
-        this.indexTable.get(node2).add(index1);
-    }
-
-    // top to bottom node sink, O(log(n))
-    private void sink(int index) {
-        int left = 2 * index + 1; // left child node index
-        int right = 2 * index + 2; // right child node index
-
-        if (right < this.heapSize) {
-            if (isLess(left, index) && isLess(right, index)) {
-                if (isLess(left, right)) {
-                    this.swap(index, left);
-                    this.sink(left);
-                } else {
-                    this.swap(index, right);
-                    this.sink(right);
-                }
-            } else if (isLess(left, index)) {
-                this.swap(index, left);
-                this.sink(left);
-            } else if (isLess(right, index)) {
-                this.swap(index, right);
-                this.sink(right);
-            }
-        } else if (right == this.heapSize) { // very last element lies on left branch
-            if (isLess(left, index)) {
-                this.swap(index, left);
-            }
+        // swaps the nodes in two indices, and keeps this.positionOf in sync
+        int slot1 = this.slotAt[index1];
+        int slot2 = this.slotAt[index2];
+        this.slotAt[index1] = slot2;
+        this.slotAt[index2] = slot1;
+        this.positionOf[slot1] = index2;
+        this.positionOf[slot2] = index1;
+        this.markDirty(index1);
+        this.markDirty(index2);
+    }
+
+    private void markDirty(int index) {
+        if (this.dirty != null) {
+            this.dirty.set(index);
         }
     }
 
-    // bottom to up node swim, O(log(n))
-    private void swim(int index) {
-        if (index == 0) { // base case
-            return;
+    // top to bottom node sink, O(log(n)); returns the number of levels moved
+    private int sink(int index) {
+        int depth = 0;
+        while (true) {
+            int left = 2 * index + 1; // left child node index
+            int right = 2 * index + 2; // right child node index
+            if (left >= this.heapSize) {
+                return depth;
+            }
+            int smaller = right < this.heapSize && isLess(right, left) ? right : left;
+            if (!isLess(smaller, index)) {
+                return depth;
+            }
+            this.swap(index, smaller);
+            index = smaller;
+            depth++;
         }
+    }
 
-        int parent = (index - 1) / 2; // parent node index
-        if (isLess(index, parent)) {
+    // bottom to up node swim, O(log(n)); returns the number of levels moved
+    private int swim(int index) {
+        int depth = 0;
+        while (index > 0) {
+            int parent = (index - 1) / 2; // parent node index
+            if (!isLess(index, parent)) {
+                return depth;
+            }
             this.swap(index, parent);
-            this.swim(parent);
+            index = parent;
+            depth++;
         }
+        return depth;
     }
 
-    // add a node value and its index to the indexTable
-    private void addToIndexTable(T value, int index) {
-        TreeSet<Integer> indices = this.indexTable.get(value);
-
-        if (indices == null) { // no previous entry of 'value' in indexTable as a key
-            indices = new TreeSet<>();
-            indices.add(index);
-            this.indexTable.put(value, indices);
-        } else { // 'value' already exists in indexTable as a key
-            indices.add(index);
+    // add a node value and its slot to the indexTable
+    private void addToIndexTable(T value, int slot) {
+        SlotSet slots = this.indexTable.get(value);
+        if (slots == null) { // no previous entry of 'value' in indexTable as a key
+            slots = new SlotSet();
+            this.indexTable.put(value, slots);
         }
+        slots.add(slot);
     }
 
-    private void removeFromIndexTable(T value, int index) {
-        TreeSet<Integer> indices = this.indexTable.get(value);
-        if (indices != null) {
-            indices.remove(index);
-            if (indices.size() == 0) {
+    private void removeFromIndexTable(T value, int slot) {
+        SlotSet slots = this.indexTable.get(value);
+        if (slots != null) {
+            slots.remove(slot);
+            if (slots.size == 0) {
                 this.indexTable.remove(value);
             }
         }
     }
 
-    public void add(T elem) { // O(log(n))
+    private int allocateSlot() {
+        if (this.nFreeSlots > 0) {
+            return this.freeSlots[--this.nFreeSlots];
+        }
+        if (this.nextSlot == this.values.length) {
+            this.ensureSlotCapacity(this.values.length * 2);
+        }
+        return this.nextSlot++;
+    }
+
+    private long handleOf(int slot) {
+        return (long) this.generations[slot] << 32 | slot;
+    }
+
+    // slot of handle if handle refers to an element in the PQ, else -1
+    private int slotOf(long handle) {
+        int slot = (int) handle;
+        if (handle < 0 || slot < 0 || slot >= this.nextSlot || this.generations[slot] != (int) (handle >>> 32)) {
+            return -1;
+        }
+        return this.positionOf[slot] != -1 && !this.tombstone[slot] ? slot : -1;
+    }
+
+    private int checkHandle(long handle) {
+        int slot = this.slotOf(handle);
+        if (slot == -1) {
+            throw new IllegalArgumentException("Invalid handle " + handle);
+        }
+        return slot;
+    }
+
+    public long insert(T elem) { // O(log(n))
         if (elem == null) {
             throw new IllegalArgumentException();
         }
-
-        this.heap.add(elem);
-        this.addToIndexTable(elem, this.heapSize);
-        this.swim(this.heapSize);
+        int slot = this.allocateSlot();
+        this.values[slot] = elem;
+        this.positionOf[slot] = this.heapSize;
+        this.slotAt[this.heapSize] = slot;
+        this.markDirty(this.heapSize);
+        this.addToIndexTable(elem, slot);
         this.heapSize++;
+        int depth = this.swim(this.heapSize - 1);
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+            Metrics.HEAP_SIFT_DEPTH.record(depth);
+        }
+        return this.handleOf(slot);
+    }
+
+    @Override
+    public void add(T elem) { // O(log(n))
+        this.insert(elem);
     }
 
     private T removeAt(int index) {
@@ -186,66 +386,466 @@ class PriorityQueue<T extends Comparable> {
         // 3. restore heap invariant by first (trying to) sink the swapped
         // element, followed by swimming it.
 
-        T node = this.heap.get(index);
+        int slot = this.slotAt[index];
+        T node = this.valueOf(slot);
         this.swap(index, this.heapSize - 1);
-        T removedNode = this.heap.remove(this.heapSize - 1);
-        this.removeFromIndexTable(removedNode, this.heapSize - 1);
         this.heapSize--;
 
-        this.sink(index);
-        if (this.heap.get(index).equals(node)) { // trying to sink didn't work; so swim
-            this.swim(index);
+        if (this.tombstone[slot]) { // already gone from the index table
+            this.tombstone[slot] = false;
+            this.nTombstones--;
+        } else {
+            this.removeFromIndexTable(node, slot);
+        }
+        this.releaseSlot(slot);
+
+        int depth = 0;
+        if (index < this.heapSize) {
+            depth = this.sink(index) + this.swim(index);
+        }
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+            Metrics.HEAP_SIFT_DEPTH.record(depth);
         }
         return node;
     }
 
-    public boolean remove(T elem) { // O(n)
-        if (elem == null) {
-            return false;
+    // frees slot for reuse; its new generation invalidates every handle issued for it so far
+    private void releaseSlot(int slot) {
+        this.values[slot] = null;
+        this.positionOf[slot] = -1;
+        this.generations[slot] = this.generations[slot] == MAX_GENERATION ? 0 : this.generations[slot] + 1;
+        if (this.releasedSlots != null) {
+            this.releasedSlots.set(slot);
         }
-        // get index, O(n)
-        int index = -1;
+        this.freeSlots[this.nFreeSlots++] = slot;
+    }
+
+    // removes the element at index: eagerly, or by leaving a tombstone in lazy-deletion mode
+    private T delete(int index) {
+        if (!this.lazyDeletion || index == 0) {
+            return this.removeAt(index);
+        }
+        int slot = this.slotAt[index];
+        T node = this.valueOf(slot);
+        this.removeFromIndexTable(node, slot);
+        this.tombstone[slot] = true;
+        this.markDirty(index);
+        this.nTombstones++;
+        if (this.heapSize >= MIN_COMPACTION_SIZE && this.nTombstones > this.compactionThreshold * this.heapSize) {
+            this.compact();
+        }
+        return node;
+    }
+
+    // drop all tombstones and rebuild the heap from the live elements, O(n)
+    private void compact() {
+        long start = System.nanoTime();
+        int live = 0;
         for (int i = 0; i < this.heapSize; i++) {
-            if (this.heap.get(i).equals(elem)) {
-                index = i;
-                break;
+            int slot = this.slotAt[i];
+            if (this.tombstone[slot]) {
+                this.tombstone[slot] = false;
+                this.releaseSlot(slot);
+            } else {
+                this.slotAt[live] = slot;
+                this.positionOf[slot] = live;
+                this.markDirty(live);
+                live++;
             }
         }
-        if (index == -1) {
-            return false; // element not found
+        this.heapSize = live;
+        this.nTombstones = 0;
+        this.heapify();
+        this.nCompactions++;
+        this.compactionNanos += System.nanoTime() - start;
+    }
+
+    // pop tombstones off the root until the root is a live element (or the heap is empty)
+    private void purgeRoot() {
+        while (this.heapSize > 0 && this.tombstone[this.slotAt[0]]) {
+            this.removeAt(0);
         }
+    }
 
-        this.removeAt(index);
+    public boolean remove(T elem) { // O(log(n))
+        if (elem == null) {
+            return false;
+        }
+        SlotSet slots = this.indexTable.get(elem);
+        if (slots == null) {
+            return false; // element not found
+        }
+        // the duplicate at the lowest index
+        int index = this.positionOf[slots.slots[0]];
+        for (int i = 1; i < slots.size; i++) {
+            index = Math.min(index, this.positionOf[slots.slots[i]]);
+        }
+        this.delete(index);
         return true;
     }
 
-    // remove and return root, O(1)
+    public T removeHandle(long handle) { // O(log(n))
+        return this.delete(this.positionOf[this.checkHandle(handle)]);
+    }
+
+    public void update(long handle, T elem) { // O(log(n))
+        this.updateSlot(this.checkHandle(handle), elem);
+    }
+
+    private void updateSlot(int slot, T elem) {
+        if (elem == null) {
+            throw new IllegalArgumentException();
+        }
+        T old = this.valueOf(slot);
+        if (!old.equals(elem)) {
+            this.removeFromIndexTable(old, slot);
+            this.addToIndexTable(elem, slot);
+        }
+        this.values[slot] = elem;
+        int index = this.positionOf[slot];
+        this.markDirty(index);
+        this.sink(index);
+        this.swim(index);
+    }
+
+    public void decreaseKey(long handle, T elem) { // O(log(n))
+        int slot = this.checkHandle(handle);
+        if (elem == null || elem.compareTo(this.valueOf(slot)) > 0) {
+            throw new IllegalArgumentException("New element is greater than the current one");
+        }
+        this.updateSlot(slot, elem);
+    }
+
+    public void increaseKey(long handle, T elem) { // O(log(n))
+        int slot = this.checkHandle(handle);
+        if (elem == null || elem.compareTo(this.valueOf(slot)) < 0) {
+            throw new IllegalArgumentException("New element is smaller than the current one");
+        }
+        this.updateSlot(slot, elem);
+    }
+
+    public T get(long handle) { // O(1)
+        return this.valueOf(this.checkHandle(handle));
+    }
+
+    // remove and return root, O(log(n))
     // returns null if heap is empty
+    @Override
     public T poll() {
+        this.purgeRoot();
         return this.removeAt(0);
     }
 
     // return root if exists, else return null, O(1)
+    @Override
     public T peek() {
+        this.purgeRoot();
         if (this.heapSize > 0) {
-            return this.heap.get(0);
+            return this.valueAt(0);
         }
         return null;
     }
 
+    public long peekHandle() {
+        this.purgeRoot();
+        return this.heapSize > 0 ? this.handleOf(this.slotAt[0]) : -1;
+    }
+
     public boolean contains(T elem) { // O(1)
         return this.indexTable.containsKey(elem);
     }
 
-    public static void main(String[] args) {
+    public boolean containsHandle(long handle) { // O(1)
+        return this.slotOf(handle) != -1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.getSize() == 0;
+    }
+
+    @Override
+    public int getSize() {
+        return this.heapSize - this.nTombstones;
+    }
+
+    public int getTombstoneCount() {
+        return this.nTombstones;
+    }
+
+    public long getCompactionCount() {
+        return this.nCompactions;
+    }
+
+    public long getCompactionTimeNanos() {
+        return this.compactionNanos;
+    }
+
+    private void writeHeader(BinaryWriter out, byte kind, long baseGeneration) throws IOException {
+        out.putInt(SNAPSHOT_MAGIC);
+        out.putByte(kind);
+        out.putLong(baseGeneration);
+        out.putLong(this.generation);
+        out.putByte((byte) (this.lazyDeletion ? 1 : 0));
+        out.putLong(Double.doubleToLongBits(this.compactionThreshold));
+        out.putInt(this.nextSlot);
+        out.putInt(this.heapSize);
+    }
+
+    private void writeSlot(BinaryWriter out, int index, Codec<? super T> codec) throws IOException {
+        int slot = this.slotAt[index];
+        out.putInt(slot);
+        out.putByte((byte) (this.tombstone[slot] ? 1 : 0));
+        out.putElement(this.valueOf(slot), codec);
+    }
+
+    public void writeSnapshot(WritableByteChannel channel, Codec<? super T> codec) throws IOException {
+        BinaryWriter out = new BinaryWriter(channel);
+        this.writeSnapshot(out, codec);
+        out.flush();
+    }
+
+    public void writeSnapshot(BinaryWriter out, Codec<? super T> codec) throws IOException {
+        long base = this.generation++;
+        this.writeHeader(out, KIND_SNAPSHOT, base);
+        out.putInts(this.generations, 0, this.nextSlot);
+        for (int i = 0; i < this.heapSize; i++) {
+            this.writeSlot(out, i, codec);
+        }
+        this.dirty = new BitSet(); // start tracking changes for the next checkpoint
+        this.releasedSlots = new BitSet();
+    }
+
+    public void writeCheckpoint(WritableByteChannel channel, Codec<? super T> codec) throws IOException {
+        BinaryWriter out = new BinaryWriter(channel);
+        this.writeCheckpoint(out, codec);
+        out.flush();
+    }
+
+    public void writeCheckpoint(BinaryWriter out, Codec<? super T> codec) throws IOException {
+        if (this.dirty == null) {
+            throw new IllegalStateException("A checkpoint needs a previous snapshot");
+        }
+        long base = this.generation++;
+        this.writeHeader(out, KIND_CHECKPOINT, base);
+        out.putInt(this.releasedSlots.cardinality());
+        for (int slot = this.releasedSlots.nextSetBit(0); slot >= 0; slot = this.releasedSlots.nextSetBit(slot + 1)) {
+            out.putInt(slot);
+            out.putInt(this.generations[slot]);
+        }
+
+        // slots at or beyond heapSize were removed; the new heapSize in the header covers them
+        BitSet changed = this.dirty.get(0, this.heapSize);
+        out.putInt(changed.cardinality());
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            out.putInt(i);
+            this.writeSlot(out, i, codec);
+        }
+        this.dirty.clear();
+        this.releasedSlots.clear();
+    }
+
+    private void ensureSlotCapacity(int capacity) {
+        if (capacity > this.values.length) {
+            int oldCapacity = this.values.length;
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.slotAt = Arrays.copyOf(this.slotAt, capacity);
+            this.generations = Arrays.copyOf(this.generations, capacity);
+            this.freeSlots = Arrays.copyOf(this.freeSlots, capacity);
+            this.positionOf = Arrays.copyOf(this.positionOf, capacity);
+            this.tombstone = Arrays.copyOf(this.tombstone, capacity);
+            Arrays.fill(this.positionOf, oldCapacity, capacity, -1);
+        }
+    }
+
+    // reads the record of heap index 'index' of a snapshot; positionOf detects a slot listed twice
+    private void readSlot(BinaryReader in, int index, Codec<T> codec) throws IOException {
+        int slot = in.getInt();
+        if (slot < 0 || slot >= this.nextSlot || this.positionOf[slot] != -1) {
+            throw new IOException("Invalid or repeated slot " + slot + " in snapshot");
+        }
+        this.positionOf[slot] = index;
+        this.slotAt[index] = slot;
+        this.tombstone[slot] = in.getByte() != 0;
+        this.values[slot] = in.getElement(codec);
+    }
+
+    // recompute everything derived from the heap layout (slotAt[0..heapSize) plus the values
+    // and tombstones of those slots): positions, free slots, tombstone count, value index
+    private void rebuildFromLayout() {
+        Arrays.fill(this.positionOf, -1);
+        for (int i = 0; i < this.heapSize; i++) {
+            this.positionOf[this.slotAt[i]] = i;
+        }
+        this.nFreeSlots = 0;
+        this.nTombstones = 0;
+        this.indexTable = new HashMap<>();
+        for (int slot = this.nextSlot - 1; slot >= 0; slot--) {
+            if (this.positionOf[slot] == -1) {
+                this.values[slot] = null;
+                this.tombstone[slot] = false;
+                this.freeSlots[this.nFreeSlots++] = slot;
+            } else if (this.tombstone[slot]) {
+                this.nTombstones++;
+            } else {
+                this.addToIndexTable(this.valueOf(slot), slot);
+            }
+        }
+    }
+
+    // 'trusted' skips re-heapifying; only pass true for snapshots written by writeSnapshot() and not modified since
+    public static <T extends Comparable<? super T>> PriorityQueueQuickRemoval<T> readSnapshot(
+            ReadableByteChannel channel, Codec<T> codec, boolean trusted) throws IOException {
+        BinaryReader in = new BinaryReader(channel, true);
+        PriorityQueueQuickRemoval<T> pq = readSnapshot(in, codec, trusted);
+        in.finish();
+        return pq;
+    }
+
+    public static <T extends Comparable<? super T>> PriorityQueueQuickRemoval<T> readSnapshot(BinaryReader in,
+            Codec<T> codec, boolean trusted) throws IOException {
+        if (in.getInt() != SNAPSHOT_MAGIC || in.getByte() != KIND_SNAPSHOT) {
+            throw new IOException("Not a PriorityQueueQuickRemoval snapshot");
+        }
+        in.getLong(); // base generation
+        long generation = in.getLong();
+        boolean lazyDeletion = in.getByte() != 0;
+        double compactionThreshold = Double.longBitsToDouble(in.getLong());
+        int nextSlot = in.getInt();
+        int heapSize = in.getInt();
+        if (!(compactionThreshold > 0 && compactionThreshold <= 1) || nextSlot < 0 || heapSize < 0
+                || heapSize > nextSlot) {
+            throw new IOException("Corrupt snapshot: " + heapSize + " heap slots of " + nextSlot);
+        }
+
+        PriorityQueueQuickRemoval<T> pq = new PriorityQueueQuickRemoval<>(Math.max(INITIAL_CAPACITY, nextSlot),
+                lazyDeletion, compactionThreshold);
+        pq.nextSlot = nextSlot;
+        pq.heapSize = heapSize;
+        in.getInts(pq.generations, 0, nextSlot);
+        for (int slot = 0; slot < nextSlot; slot++) {
+            if (pq.generations[slot] < 0) {
+                throw new IOException("Invalid generation " + pq.generations[slot] + " of slot " + slot);
+            }
+        }
+        for (int i = 0; i < heapSize; i++) {
+            pq.readSlot(in, i, codec);
+        }
+        pq.rebuildFromLayout();
+        if (!trusted) {
+            pq.heapify();
+        }
+        pq.generation = generation;
+        pq.dirty = new BitSet();
+        pq.releasedSlots = new BitSet();
+        return pq;
+    }
+
+    public void applyCheckpoint(ReadableByteChannel channel, Codec<T> codec, boolean trusted) throws IOException {
+        BinaryReader in = new BinaryReader(channel, true);
+        this.applyCheckpoint(in, codec, trusted);
+        in.finish();
+    }
+
+    public void applyCheckpoint(BinaryReader in, Codec<T> codec, boolean trusted) throws IOException {
+        if (in.getInt() != SNAPSHOT_MAGIC || in.getByte() != KIND_CHECKPOINT) {
+            throw new IOException("Not a PriorityQueueQuickRemoval checkpoint");
+        }
+        long base = in.getLong();
+        if (base != this.generation) {
+            throw new IOException("Checkpoint is based on generation " + base + ", heap is at " + this.generation);
+        }
+        long generation = in.getLong();
+        in.getByte(); // lazyDeletion and compactionThreshold are fixed at construction
+        in.getLong();
+        int nextSlot = Math.max(this.nextSlot, in.getInt());
+        int heapSize = in.getInt();
+        if (heapSize < 0 || heapSize > nextSlot) {
+            throw new IOException("Corrupt checkpoint: " + heapSize + " heap slots of " + nextSlot);
+        }
+
+        // read and check everything before changing the heap, so a bad checkpoint leaves it as it was
+        int nReleased = in.getInt();
+        if (nReleased < 0 || nReleased > nextSlot) {
+            throw new IOException("Corrupt checkpoint: " + nReleased + " released slots of " + nextSlot);
+        }
+        int[] released = new int[2 * nReleased]; // (slot, generation) pairs
+        BitSet seen = new BitSet();
+        for (int i = 0; i < nReleased; i++) {
+            int slot = in.getInt();
+            int slotGeneration = in.getInt();
+            if (slot < 0 || slot >= nextSlot || seen.get(slot) || slotGeneration < 0) {
+                throw new IOException("Invalid or repeated released slot " + slot + " in checkpoint");
+            }
+            seen.set(slot);
+            released[2 * i] = slot;
+            released[2 * i + 1] = slotGeneration;
+        }
+
+        int count = in.getInt();
+        if (count < 0 || count > heapSize) {
+            throw new IOException("Corrupt checkpoint: " + count + " changed heap slots of " + heapSize);
+        }
+        int[] layout = Arrays.copyOf(this.slotAt, heapSize); // slot at every heap index after the checkpoint
+        int[] slots = new int[count];
+        boolean[] tombstones = new boolean[count];
+        Object[] values = new Object[count];
+        seen.clear();
+        for (int i = 0; i < count; i++) {
+            int index = in.getInt();
+            int slot = in.getInt();
+            tombstones[i] = in.getByte() != 0;
+            values[i] = in.getElement(codec);
+            if (index < 0 || index >= heapSize || seen.get(index) || slot < 0 || slot >= nextSlot) {
+                throw new IOException("Invalid or repeated record (index " + index + ", slot " + slot
+                        + ") in checkpoint");
+            }
+            seen.set(index);
+            layout[index] = slot;
+            slots[i] = slot;
+        }
+        int missing = seen.nextClearBit(this.heapSize); // every index beyond the old size must be in it
+        if (missing < heapSize) {
+            throw new IOException("Checkpoint does not cover heap index " + missing);
+        }
+        seen.clear();
+        for (int slot : layout) {
+            if (seen.get(slot)) {
+                throw new IOException("Slot " + slot + " is at two heap indices after the checkpoint");
+            }
+            seen.set(slot);
+        }
+
+        this.ensureSlotCapacity(nextSlot);
+        this.nextSlot = nextSlot;
+        this.heapSize = heapSize;
+        for (int i = 0; i < nReleased; i++) {
+            this.generations[released[2 * i]] = released[2 * i + 1];
+        }
+        System.arraycopy(layout, 0, this.slotAt, 0, heapSize);
+        for (int i = 0; i < count; i++) {
+            this.tombstone[slots[i]] = tombstones[i];
+            this.values[slots[i]] = values[i];
+        }
+        this.rebuildFromLayout();
+        if (!trusted) {
+            this.heapify();
+        }
+        this.generation = generation;
+        this.dirty.clear();
+        this.releasedSlots.clear();
+    }
+
+    public static void main(String[] args) throws IOException {
         Integer[] elements = { 8, 3, 5, 6, 3, 3, 2 };
 
-        PriorityQueue<Integer> pq = new PriorityQueue<>(elements);
+        PriorityQueueQuickRemoval<Integer> pq = new PriorityQueueQuickRemoval<>(elements);
         System.out.println(pq);
         System.out.println(pq.indexTable);
 
-        pq.add(4);
-        System.out.println("added 4");
+        long handle = pq.insert(4);
+        System.out.println("added 4, handle " + handle);
 
         System.out.println(pq);
         System.out.println(pq.indexTable);
@@ -256,6 +856,10 @@ class PriorityQueue<T extends Comparable> {
         System.out.println(pq);
         System.out.println(pq.indexTable);
 
+        pq.decreaseKey(handle, 1);
+        System.out.println("decreased 4 to 1");
+        System.out.println(pq);
+
         Integer node = pq.poll();
         System.out.println("polled : " + node);
 
@@ -263,6 +867,39 @@ class PriorityQueue<T extends Comparable> {
         System.out.println(pq.indexTable);
 
         System.out.println(pq.contains(3));
+        System.out.println(pq.containsHandle(handle));
+        long reused = pq.insert(4); // takes the slot of the polled 1, with a new generation
+        System.out.println((int) reused == (int) handle && !pq.containsHandle(handle));
+
+        PriorityQueueQuickRemoval<Integer> lazy = new PriorityQueueQuickRemoval<>(elements, true);
+        lazy.remove(5);
+        lazy.remove(6);
+        System.out.println(lazy);
+        System.out.println("tombstones: " + lazy.getTombstoneCount() + ", size: " + lazy.getSize());
+        while (!lazy.isEmpty()) {
+            System.out.print(lazy.poll() + " ");
+        }
+        System.out.println();
+
+        // a snapshot followed by two checkpoints, all on one channel
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("pqr", ".snapshot");
+        try (java.nio.channels.FileChannel out = java.nio.channels.FileChannel.open(file,
+                java.nio.file.StandardOpenOption.WRITE)) {
+            pq.writeSnapshot(out, Codec.INT);
+            pq.removeHandle(pq.insert(7));
+            pq.writeCheckpoint(out, Codec.INT);
+            pq.poll();
+            pq.writeCheckpoint(out, Codec.INT);
+        }
+        PriorityQueueQuickRemoval<Integer> restored;
+        try (java.nio.channels.FileChannel in = java.nio.channels.FileChannel.open(file)) {
+            restored = PriorityQueueQuickRemoval.readSnapshot(in, Codec.INT, true);
+            while (in.position() < in.size()) {
+                restored.applyCheckpoint(in, Codec.INT, true);
+            }
+        }
+        System.out.println(restored.toString().equals(pq.toString()) && restored.containsHandle(reused));
+        java.nio.file.Files.delete(file);
 
     }
 }
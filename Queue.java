@@ -1,6 +1,7 @@
 import java.util.Iterator;
 
 // This program implements QUEUE using doubly-linked-list
+// With "Metrics.java" enabled, enqueues and dequeues are counted.
 
 // to run, execute the following command (need to compile DoublyLinkedList.java too):  
 
@@ -14,7 +15,14 @@ import java.util.Iterator;
 // - contains(element)  --> boolean                                                 O(n)
 // - isEmpty()          --> boolean                                                 O(1)
 // - getSize()          --> int                                                     O(1)
-
+// - writeTo(appendable, limit) --> void (front to back, at most 'limit' elements)     O(n)
+// - writeTo(channel, limit)    --> void (same, through one reusable buffer)           O(n)
+// - encode(channel, codec)     --> void (compact binary format, see "SequenceCodec.java") O(n)
+// - decode(channel, codec)     --> queue (static; reads what encode() wrote)          O(n)
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Iterator;
 
 class Queue<T> implements Iterable {
@@ -29,11 +37,35 @@ class Queue<T> implements Iterable {
         return this.dll.toString();
     }
 
+    public void writeTo(Appendable out, int limit) throws IOException {
+        this.dll.writeTo(out, limit);
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        this.dll.writeTo(channel, limit);
+    }
+
+    public void encode(WritableByteChannel channel, Codec<? super T> codec) throws IOException {
+        SequenceCodec.write(channel, SequenceCodec.QUEUE, this.dll.getSize(), this.dll.iterator(), codec);
+    }
+
+    public static <T> Queue<T> decode(ReadableByteChannel channel, Codec<T> codec) throws IOException {
+        Queue<T> queue = new Queue<>();
+        queue.dll = DoublyLinkedList.decode(SequenceCodec.decoder(channel, SequenceCodec.QUEUE, codec));
+        return queue;
+    }
+
     public void enqueue(T elem) {
+        if (Metrics.ENABLED) {
+            Metrics.QUEUE_OPS.increment();
+        }
         this.dll.append(elem);
     }
 
     public T dequeue() {
+        if (Metrics.ENABLED) {
+            Metrics.QUEUE_OPS.increment();
+        }
         return this.dll.removeAt(0);
     }
 
@@ -0,0 +1,89 @@
+// This program compares eager and lazy (tombstone) removal in "PriorityQueueQuickRemoval.java"
+// on a scheduler-like workload: elements are inserted with a handle, and each one is later
+// either cancelled (removed through its handle before reaching the root) or polled.
+
+// to run, execute the following command (need to compile PriorityQueueQuickRemoval.java too):
+
+// javac QuickRemovalBenchmark.java; java QuickRemovalBenchmark [size]
+
+// For each cancellation rate, the heap is kept at about 'size' elements (default 1M)
+// while 'size' further insertions are made.
+
+import java.util.Random;
+
+class QuickRemovalBenchmark {
+    private static final double[] CANCELLATION_RATES = { 0.0, 0.25, 0.5, 0.75, 0.9, 0.99 };
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 3;
+
+    // records that handle is at 'index' of the pending handles, growing indexOfSlot if needed
+    private static int[] track(int[] indexOfSlot, long handle, int index) {
+        int slot = (int) handle;
+        if (slot >= indexOfSlot.length) {
+            indexOfSlot = java.util.Arrays.copyOf(indexOfSlot, Math.max(slot + 1, 2 * indexOfSlot.length));
+        }
+        indexOfSlot[slot] = index;
+        return indexOfSlot;
+    }
+
+    // returns the elapsed nanoseconds; prints compaction stats for the lazy heap on the last run
+    private static long run(int size, double cancellationRate, boolean lazy, boolean report) {
+        Random random = new Random(42);
+        PriorityQueueQuickRemoval<Integer> pq = new PriorityQueueQuickRemoval<>(new Integer[0], lazy);
+
+        // handles of the pending elements, and the index of each one in 'pending' by its slot (the
+        // low 32 bits of a handle); a handle is dropped as soon as its element is cancelled or polled
+        long[] pending = new long[size];
+        int[] indexOfSlot = new int[size];
+        int nPending = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            long handle = pq.insert(random.nextInt());
+            indexOfSlot = track(indexOfSlot, handle, nPending);
+            pending[nPending++] = handle;
+        }
+        for (int i = 0; i < size; i++) {
+            int j;
+            if (random.nextDouble() < cancellationRate) {
+                j = random.nextInt(nPending);
+                pq.removeHandle(pending[j]);
+            } else {
+                j = indexOfSlot[(int) pq.peekHandle()];
+                pq.poll();
+            }
+            long last = pending[--nPending];
+            pending[j] = last;
+            indexOfSlot[(int) last] = j;
+
+            long handle = pq.insert(random.nextInt());
+            indexOfSlot = track(indexOfSlot, handle, nPending);
+            pending[nPending++] = handle;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (report && lazy) {
+            System.out.printf("    tombstones left: %d, compactions: %d, compaction time: %.1f ms%n",
+                    pq.getTombstoneCount(), pq.getCompactionCount(), pq.getCompactionTimeNanos() / 1e6);
+        }
+        return elapsed;
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        System.out.printf("%10s %8s %12s%n", "cancel", "mode", "time (ms)");
+        for (double rate : CANCELLATION_RATES) {
+            for (boolean lazy : new boolean[] { false, true }) {
+                for (int i = 0; i < WARMUP_RUNS; i++) {
+                    run(size, rate, lazy, false);
+                }
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < MEASURED_RUNS; i++) {
+                    best = Math.min(best, run(size, rate, lazy, false));
+                }
+                System.out.printf("%10.2f %8s %12.1f%n", rate, lazy ? "lazy" : "eager", best / 1e6);
+                run(size, rate, lazy, true);
+            }
+        }
+    }
+}
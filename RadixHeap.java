@@ -0,0 +1,214 @@
+// This program implements the data-structure Radix Heap, a monotone priority queue for
+// non-negative integer keys.
+
+// A radix heap only works when keys are never smaller than the last polled key (e.g.
+// Dijkstra with non-negative edge weights, or timers that never fire in the past). In
+// exchange, it does not compare elements with each other. An element with key k is
+// stored in bucket b = (number of significant bits of k XOR last), so bucket 0 holds
+// keys equal to 'last' and bucket b holds keys that first differ from 'last' at bit b-1.
+// When bucket 0 runs empty, the smallest key of the first non-empty bucket becomes the
+// new 'last', and that bucket's elements are redistributed into strictly lower buckets.
+// Every element therefore moves at most 64 times in total.
+
+// Keys and values are kept in parallel arrays per bucket, so keys are never boxed.
+
+// With "Metrics.java" enabled, add and poll are counted and record their latency.
+
+// Public Methods:
+// add(key, value)   --> void     O(1)               : adds value with the given key; key must be >= getLastKey()
+// poll()            --> value    O(log(C)) amort.   : removes and returns the value with the smallest key,
+//                                                     or null if empty (C is the largest key difference)
+// peekKey()         --> long     O(log(C)) amort.   : returns the smallest key, or -1 if empty
+// getLastKey()      --> long     O(1)               : returns the smallest key that may still be added; this is
+//                                                     the key of the last polled value, or the current smallest
+//                                                     key after peekKey()
+// isEmpty()         --> boolean  O(1)
+// getSize()         --> int      O(1)
+// writeTo(appendable, limit)  --> void    O(n)               : writes the buckets, at most 'limit' values
+// writeTo(channel, limit)     --> void    O(n)               : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+
+class RadixHeap<V> {
+    private static final int N_BUCKETS = 65; // bucket 0 plus one per bit of a long
+
+    private final Bucket[] buckets = new Bucket[N_BUCKETS];
+    private long occupied; // bit b-1 is set if bucket b (b >= 1) is non-empty
+    private long last; // key of the last polled value; lower bound of every key in the heap
+    private int size;
+
+    // growable list of (key, value) pairs
+    private static class Bucket {
+        private long[] keys = new long[4];
+        private Object[] values = new Object[4];
+        private int size;
+
+        private void add(long key, Object value) {
+            if (this.size == this.keys.length) {
+                this.keys = java.util.Arrays.copyOf(this.keys, this.size * 2);
+                this.values = java.util.Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.keys[this.size] = key;
+            this.values[this.size] = value;
+            this.size++;
+        }
+    }
+
+    public RadixHeap() {
+        for (int b = 0; b < N_BUCKETS; b++) {
+            this.buckets[b] = new Bucket();
+        }
+        this.last = 0;
+        this.size = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    // 'last', then one line of key=value pairs per non-empty bucket
+    public void writeTo(Appendable out, int limit) throws IOException {
+        out.append("last: ");
+        Utils.appendNumber(out, this.last);
+        int written = 0;
+        for (int b = 0; b < N_BUCKETS && written < limit; b++) {
+            Bucket bucket = this.buckets[b];
+            if (bucket.size > 0) {
+                out.append("\nbucket ");
+                Utils.appendNumber(out, b).append(":");
+                for (int i = 0; i < bucket.size && written < limit; i++, written++) {
+                    out.append(" ");
+                    Utils.appendNumber(out, bucket.keys[i]).append("=");
+                    Utils.appendValue(out, bucket.values[i]);
+                }
+            }
+        }
+        if (written < this.size) {
+            out.append("\n... (");
+            Utils.appendNumber(out, this.size - written).append(" more)");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    private int bucketOf(long key) {
+        return 64 - Long.numberOfLeadingZeros(key ^ this.last);
+    }
+
+    private void put(long key, Object value) {
+        int b = this.bucketOf(key);
+        this.buckets[b].add(key, value);
+        if (b > 0) {
+            this.occupied |= 1L << (b - 1);
+        }
+    }
+
+    public void add(long key, V value) { // O(1)
+        if (key < this.last) {
+            throw new IllegalArgumentException("Key " + key + " is smaller than the last polled key " + this.last);
+        }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        this.put(key, value);
+        this.size++;
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+            Metrics.HEAP_ADD_NANOS.record(System.nanoTime() - start);
+        }
+    }
+
+    // make sure bucket 0 is non-empty (if the heap is non-empty) by redistributing the
+    // first non-empty bucket around its smallest key
+    private void refill() {
+        if (this.buckets[0].size > 0 || this.occupied == 0) {
+            return;
+        }
+        int b = Long.numberOfTrailingZeros(this.occupied) + 1;
+        Bucket bucket = this.buckets[b];
+
+        long min = bucket.keys[0];
+        for (int i = 1; i < bucket.size; i++) {
+            min = Math.min(min, bucket.keys[i]);
+        }
+        this.last = min;
+
+        // put every element back relative to the new 'last'; they all land in buckets
+        // below b, so the bucket's arrays can be read while redistributing
+        int n = bucket.size;
+        bucket.size = 0;
+        this.occupied &= ~(1L << (b - 1));
+        for (int i = 0; i < n; i++) {
+            this.put(bucket.keys[i], bucket.values[i]);
+            bucket.values[i] = null;
+        }
+    }
+
+    public V poll() {
+        if (this.size == 0) {
+            return null;
+        }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        this.refill();
+        Bucket bucket = this.buckets[0];
+        bucket.size--;
+        @SuppressWarnings("unchecked") // add() only stores values of type V
+        V value = (V) bucket.values[bucket.size];
+        bucket.values[bucket.size] = null;
+        this.size--;
+        if (Metrics.ENABLED) {
+            Metrics.HEAP_OPS.increment();
+            Metrics.HEAP_POLL_NANOS.record(System.nanoTime() - start);
+        }
+        return value;
+    }
+
+    public long peekKey() {
+        if (this.size == 0) {
+            return -1;
+        }
+        this.refill();
+        return this.last;
+    }
+
+    public long getLastKey() {
+        return this.last;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public static void main(String[] args) {
+        RadixHeap<String> heap = new RadixHeap<>();
+        heap.add(5, "e");
+        heap.add(1, "a");
+        heap.add(17, "q");
+        heap.add(3, "c");
+        heap.add(3, "c'");
+        System.out.println(heap);
+
+        System.out.println(heap.poll() + " @ " + heap.getLastKey());
+        System.out.println(heap.peekKey());
+        heap.add(4, "d"); // allowed: 4 >= last polled key
+        while (!heap.isEmpty()) {
+            String value = heap.poll();
+            System.out.println(value + " @ " + heap.getLastKey());
+        }
+    }
+}
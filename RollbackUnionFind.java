@@ -0,0 +1,177 @@
+// This program implements UnionFind with rollback on dense integer ids 0..n-1, for
+// backtracking and offline algorithms that need to undo unions
+// (see "OfflineDynamicConnectivity.java").
+
+// Path compression rewrites parent pointers all over a tree, so it cannot be undone
+// cheaply. This version uses union by size only: a tree of height h has at least 2^h
+// elements, so find() is O(log(n)) in the worst case, not just amortized. A successful
+// unify() changes exactly one parent pointer and one size, and pushes the id of the root
+// it linked onto an operation stack; rolling back pops that id and restores both.
+
+// Public Methods:
+// RollbackUnionFind(n)           --> RollbackUnionFind O(n)  : n singleton components with ids 0..n-1
+// unify(id1, id2)                --> boolean   O(log(n))     : merges the two components; false if they were already connected
+// find(id)                       --> int       O(log(n))     : returns the root id of the component of id
+// getComponentSize(id)           --> int       O(log(n))     : returns the size of the component of id
+// areConnected(id1, id2)         --> boolean   O(log(n))     : checks if id1 and id2 are in the same component
+// checkpoint()                   --> int       O(1)          : returns a checkpoint of the current state
+// rollback(checkpoint)           --> void      O(k)          : undoes the k unions made since checkpoint
+// undo()                         --> boolean   O(1)          : undoes the last successful union; false if there is none
+// getComponentCount()            --> int       O(1)          : returns the number of components
+// getSize()                      --> int       O(1)          : returns the number of ids
+// writeTo(appendable, limit)     --> void      O(n)          : writes each id with its root, at most 'limit' ids
+// writeTo(channel, limit)        --> void      O(n)          : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+
+class RollbackUnionFind {
+    private final int nElems;
+    private int nComp; // number of components
+
+    // parent[i] is the parent id of i; i is a root if parent[i] == i
+    private final int[] parent;
+
+    // size[i] is the size of the component rooted at i; only valid for roots
+    private final int[] size;
+
+    // ids of the roots linked by successful unions, oldest first
+    private final int[] linked;
+    private int nLinked;
+
+    public RollbackUnionFind(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Invalid size " + n);
+        }
+        this.nElems = n;
+        this.nComp = n;
+        this.parent = new int[n];
+        this.size = new int[n];
+        // at most n - 1 unions can succeed without a rollback in between
+        this.linked = new int[Math.max(n - 1, 0)];
+        for (int i = 0; i < n; i++) {
+            this.parent[i] = i;
+            this.size[i] = 1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        int n = Math.min(this.nElems, Math.max(limit, 0));
+        for (int i = 0; i < n; i++) {
+            Utils.appendNumber(out, i).append(" -> ");
+            Utils.appendNumber(out, this.find(i)).append("\n");
+        }
+        if (n < this.nElems) {
+            out.append("... (");
+            Utils.appendNumber(out, this.nElems - n).append(" more)\n");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= this.nElems) {
+            throw new IllegalArgumentException("Invalid id " + id);
+        }
+    }
+
+    public int find(int id) { // O(log(n))
+        this.checkId(id);
+        while (id != this.parent[id]) {
+            id = this.parent[id];
+        }
+        return id;
+    }
+
+    public boolean unify(int id1, int id2) { // O(log(n))
+        int root1 = this.find(id1);
+        int root2 = this.find(id2);
+        if (root1 == root2) { // already unified; nothing to undo
+            return false;
+        }
+
+        // link the smaller component under the larger one
+        if (this.size[root1] > this.size[root2]) {
+            int tmp = root1;
+            root1 = root2;
+            root2 = tmp;
+        }
+        this.parent[root1] = root2;
+        this.size[root2] += this.size[root1];
+        this.nComp--;
+        this.linked[this.nLinked++] = root1;
+        return true;
+    }
+
+    public int getComponentSize(int id) {
+        return this.size[this.find(id)];
+    }
+
+    public boolean areConnected(int id1, int id2) {
+        return this.find(id1) == this.find(id2);
+    }
+
+    public int checkpoint() {
+        return this.nLinked;
+    }
+
+    public void rollback(int checkpoint) { // O(k)
+        if (checkpoint < 0 || checkpoint > this.nLinked) {
+            throw new IllegalArgumentException("Invalid checkpoint " + checkpoint);
+        }
+        while (this.nLinked > checkpoint) {
+            this.undo();
+        }
+    }
+
+    public boolean undo() { // O(1)
+        if (this.nLinked == 0) {
+            return false;
+        }
+        int child = this.linked[--this.nLinked];
+        int root = this.parent[child];
+        this.size[root] -= this.size[child];
+        this.parent[child] = child;
+        this.nComp++;
+        return true;
+    }
+
+    public int getComponentCount() {
+        return this.nComp;
+    }
+
+    public int getSize() {
+        return this.nElems;
+    }
+
+    public static void main(String[] args) {
+        RollbackUnionFind uf = new RollbackUnionFind(6);
+        uf.unify(0, 1);
+        int checkpoint = uf.checkpoint();
+        uf.unify(2, 3);
+        uf.unify(1, 3);
+        uf.unify(0, 2); // already connected; nothing to roll back
+        System.out.println(uf.areConnected(0, 3) + " " + uf.getComponentSize(0) + " " + uf.getComponentCount());
+
+        uf.rollback(checkpoint);
+        System.out.println(uf.areConnected(0, 3) + " " + uf.getComponentSize(0) + " " + uf.getComponentCount());
+        uf.undo();
+        System.out.print(uf);
+    }
+}
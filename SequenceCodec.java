@@ -0,0 +1,354 @@
+// Compact binary format shared by the sequence structures ("DynamicArray.java",
+// "DoublyLinkedList.java", "Queue.java" and "Stack.java"), on top of "BinaryWriter.java",
+// "BinaryReader.java" and a pluggable element "Codec.java".
+
+// Format (big-endian):
+//    int magic, byte structure, int count, then frames until count elements were read:
+//    frame := byte kind, int n, then n elements as
+//       ELEMENTS --> n times [int length][bytes produced by the Codec]
+//       INTS     --> n raw ints        (when the codec is Codec.INT)
+//       LONGS    --> n raw longs       (when the codec is Codec.LONG)
+//       DOUBLES  --> n raw doubles     (when the codec is Codec.DOUBLE)
+//       NULLS    --> nothing; n null elements
+// A frame holds at most FRAME_SIZE elements. Runs of the built-in primitive codecs are
+// unboxed into a scratch array and bulk-copied into the buffer (and back), instead of
+// going through the codec one element at a time. Because every frame states its kind and
+// length upfront, a Decoder can hand out elements one by one while reading the stream,
+// without first materializing the whole structure (streamed partial decoding).
+
+// channelOf(buffer) adapts a ByteBuffer to a channel, so the same methods encode straight
+// into, or decode straight from, a ByteBuffer. Decoding goes through an exact
+// "BinaryReader.java": once the last element has been read, the channel is left right after
+// the encoded structure, so whatever follows it can be read next. On seekable channels
+// (files and channelOf buffers) the reader still reads ahead in blocks and seeks back.
+
+// Public Methods:
+// write(channel, structure, count, iterator, codec) --> void     O(n) : writes count elements from iterator
+// decoder(channel, structure, codec)                --> Decoder  O(1) : reads the header; elements are then read on demand
+// Decoder.hasNext() / next()                        --> element  O(1) amortized
+// Decoder.read()                                    --> element  O(1) amortized : like next(), but throws IOException
+// Decoder.getCount()                                --> int      O(1) : number of elements in the stream
+// channelOf(buffer)                                 --> SeekableByteChannel : reads from / writes into buffer at its position
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+class SequenceCodec {
+    private static final int MAGIC = 0x53455131; // "SEQ1"
+    private static final int FRAME_SIZE = 4096;
+
+    // structures
+    static final byte DYNAMIC_ARRAY = 0;
+    static final byte DOUBLY_LINKED_LIST = 1;
+    static final byte QUEUE = 2;
+    static final byte STACK = 3;
+
+    // frame kinds
+    private static final byte ELEMENTS = 0;
+    private static final byte INTS = 1;
+    private static final byte LONGS = 2;
+    private static final byte DOUBLES = 3;
+    private static final byte NULLS = 4;
+
+    private static byte kindOf(Object elem, Codec<?> codec) {
+        if (elem == null) {
+            return NULLS;
+        }
+        if (codec == Codec.INT) {
+            return INTS;
+        }
+        if (codec == Codec.LONG) {
+            return LONGS;
+        }
+        if (codec == Codec.DOUBLE) {
+            return DOUBLES;
+        }
+        return ELEMENTS;
+    }
+
+    public static <T> void write(WritableByteChannel channel, byte structure, int count, Iterator<? extends T> elems,
+            Codec<? super T> codec) throws IOException {
+        BinaryWriter out = new BinaryWriter(channel);
+        out.putInt(MAGIC);
+        out.putByte(structure);
+        out.putInt(count);
+
+        int frameSize = Math.min(FRAME_SIZE, Math.max(count, 1));
+        // a frame of primitives is unboxed straight into its scratch array as it is collected
+        List<T> elements = codec == Codec.INT || codec == Codec.LONG || codec == Codec.DOUBLE ? null
+                : new ArrayList<>(frameSize);
+        int[] ints = codec == Codec.INT ? new int[frameSize] : null;
+        long[] longs = codec == Codec.LONG ? new long[frameSize] : null;
+        double[] doubles = codec == Codec.DOUBLE ? new double[frameSize] : null;
+        int n = 0;
+        byte kind = ELEMENTS;
+        for (int i = 0; i < count; i++) {
+            T elem = elems.next();
+            byte elemKind = kindOf(elem, codec);
+            if (n > 0 && (elemKind != kind || n == frameSize)) {
+                writeFrame(out, kind, n, elements, codec, ints, longs, doubles);
+                n = 0;
+            }
+            kind = elemKind;
+            switch (kind) {
+            case INTS:
+                ints[n] = (Integer) elem;
+                break;
+            case LONGS:
+                longs[n] = (Long) elem;
+                break;
+            case DOUBLES:
+                doubles[n] = (Double) elem;
+                break;
+            case ELEMENTS:
+                elements.add(elem);
+                break;
+            default: // NULLS: only counted
+            }
+            n++;
+        }
+        if (n > 0) {
+            writeFrame(out, kind, n, elements, codec, ints, longs, doubles);
+        }
+        out.flush();
+    }
+
+    // writes one frame of n elements of the given kind, then empties elements
+    private static <T> void writeFrame(BinaryWriter out, byte kind, int n, List<T> elements, Codec<? super T> codec,
+            int[] ints, long[] longs, double[] doubles) throws IOException {
+        out.putByte(kind);
+        out.putInt(n);
+        switch (kind) {
+        case INTS:
+            out.putInts(ints, 0, n);
+            break;
+        case LONGS:
+            out.putLongs(longs, 0, n);
+            break;
+        case DOUBLES:
+            out.putDoubles(doubles, 0, n);
+            break;
+        case ELEMENTS:
+            for (T elem : elements) {
+                out.putElement(elem, codec);
+            }
+            elements.clear();
+            break;
+        default: // NULLS: the count says it all
+        }
+    }
+
+    // reads elements on demand, one frame at a time
+    static class Decoder<T> implements Iterator<T> {
+        private final BinaryReader in;
+        private final Codec<T> codec;
+        private final int count;
+        private int nRead; // elements handed out so far
+
+        private byte kind;
+        private int frameRemaining;
+        private int[] ints;
+        private long[] longs;
+        private double[] doubles;
+        private int frameIndex;
+
+        private Decoder(BinaryReader in, Codec<T> codec, int count) throws IOException {
+            this.in = in;
+            this.codec = codec;
+            this.count = count;
+            if (count == 0) {
+                in.finish();
+            }
+        }
+
+        public int getCount() {
+            return this.count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nRead < this.count;
+        }
+
+        private void readFrame() throws IOException {
+            this.kind = this.in.getByte();
+            int n = this.in.getInt();
+            if (n <= 0 || n > FRAME_SIZE || n > this.count - this.nRead) {
+                throw new IOException("Corrupt frame of " + n + " elements");
+            }
+            if (this.kind == INTS && this.codec != Codec.INT
+                    || this.kind == LONGS && this.codec != Codec.LONG
+                    || this.kind == DOUBLES && this.codec != Codec.DOUBLE) {
+                // a raw frame only ever comes from the matching codec: any other would hand out
+                // elements that are not of type T
+                throw new IOException("Frame kind " + this.kind + " does not match the codec");
+            }
+            this.frameRemaining = n;
+            this.frameIndex = 0;
+            switch (this.kind) {
+            case INTS:
+                if (this.ints == null) {
+                    this.ints = new int[FRAME_SIZE];
+                }
+                this.in.getInts(this.ints, 0, n);
+                break;
+            case LONGS:
+                if (this.longs == null) {
+                    this.longs = new long[FRAME_SIZE];
+                }
+                this.in.getLongs(this.longs, 0, n);
+                break;
+            case DOUBLES:
+                if (this.doubles == null) {
+                    this.doubles = new double[FRAME_SIZE];
+                }
+                this.in.getDoubles(this.doubles, 0, n);
+                break;
+            case ELEMENTS:
+            case NULLS:
+                break;
+            default:
+                throw new IOException("Unknown frame kind " + this.kind);
+            }
+        }
+
+        public T read() throws IOException {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (this.frameRemaining == 0) {
+                this.readFrame();
+            }
+            Object elem;
+            switch (this.kind) {
+            case INTS:
+                elem = this.ints[this.frameIndex];
+                break;
+            case LONGS:
+                elem = this.longs[this.frameIndex];
+                break;
+            case DOUBLES:
+                elem = this.doubles[this.frameIndex];
+                break;
+            case ELEMENTS:
+                elem = this.in.getElement(this.codec);
+                break;
+            default:
+                elem = null;
+            }
+            this.frameIndex++;
+            this.frameRemaining--;
+            this.nRead++;
+            if (this.nRead == this.count) { // leave the channel right after the structure
+                this.in.finish();
+            }
+            @SuppressWarnings("unchecked") // primitive frames are only written with the codec of their type
+            T result = (T) elem;
+            return result;
+        }
+
+        @Override
+        public T next() {
+            try {
+                return this.read();
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }
+    }
+
+    public static <T> Decoder<T> decoder(ReadableByteChannel channel, byte structure, Codec<T> codec)
+            throws IOException {
+        BinaryReader in = new BinaryReader(channel, true);
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not an encoded sequence");
+        }
+        byte found = in.getByte();
+        if (found != structure) {
+            throw new IOException("Encoded structure " + found + " does not match " + structure);
+        }
+        int count = in.getInt();
+        if (count < 0) {
+            throw new IOException("Invalid count " + count);
+        }
+        return new Decoder<>(in, codec, count);
+    }
+
+    // ByteBuffer as a channel: writes put at the buffer's position, reads copy from it.
+    // The channel's position is the buffer's position, and its size is the buffer's limit.
+    private static class BufferChannel implements SeekableByteChannel {
+        private final ByteBuffer buffer;
+
+        private BufferChannel(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = src.remaining();
+            if (n > this.buffer.remaining()) {
+                throw new BufferOverflowException();
+            }
+            this.buffer.put(src);
+            return n;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(dst.remaining(), this.buffer.remaining());
+            ByteBuffer slice = this.buffer.slice();
+            slice.limit(n);
+            dst.put(slice);
+            this.buffer.position(this.buffer.position() + n);
+            return n;
+        }
+
+        @Override
+        public long position() {
+            return this.buffer.position();
+        }
+
+        @Override
+        public BufferChannel position(long newPosition) {
+            this.buffer.position((int) Math.min(newPosition, this.buffer.limit()));
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return this.buffer.limit();
+        }
+
+        @Override
+        public BufferChannel truncate(long size) {
+            if (size < this.buffer.limit()) {
+                this.buffer.limit((int) size);
+            }
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static SeekableByteChannel channelOf(ByteBuffer buffer) {
+        return new BufferChannel(buffer);
+    }
+}
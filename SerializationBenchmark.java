@@ -0,0 +1,110 @@
+// This program compares the binary format of "SequenceCodec.java" with Java serialization:
+// a DynamicArray of n elements is encoded into a ByteBuffer and decoded again, and an
+// ArrayList with the same contents goes through ObjectOutputStream / ObjectInputStream.
+
+// to run, execute the following command (needs every other .java file of the repository):
+
+// javac *.java; java SerializationBenchmark [n]
+
+// For Integer and String elements it reports the encoded size and the encode and decode
+// throughput in MB/s of encoded bytes (best of a few runs, after warm-up).
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class SerializationBenchmark {
+    private static final int RUNS = 5;
+
+    private interface Run {
+        long run() throws Exception; // returns the number of bytes encoded or decoded
+    }
+
+    // best throughput of RUNS runs, in MB/s
+    private static double measure(Run run) throws Exception {
+        double best = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            long bytes = run.run();
+            long nanos = Math.max(1, System.nanoTime() - start);
+            best = Math.max(best, bytes * 1e3 / nanos);
+        }
+        return best;
+    }
+
+    private static <T> void compare(String name, DynamicArray<T> da, Codec<T> codec) throws Exception {
+        List<T> list = new ArrayList<>();
+        for (T elem : da) {
+            list.add(elem);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(64 << 20);
+        long[] sink = new long[1]; // keeps the decoded results alive
+
+        Run encode = () -> {
+            buffer.clear();
+            da.encode(SequenceCodec.channelOf(buffer), codec);
+            return buffer.position();
+        };
+        Run decode = () -> {
+            buffer.flip();
+            int size = buffer.limit();
+            sink[0] += DynamicArray.decode(SequenceCodec.channelOf(buffer), codec).iterator().hasNext() ? 1 : 0;
+            return size;
+        };
+        byte[][] serialized = new byte[1][];
+        Run serialize = () -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(list);
+            }
+            serialized[0] = bytes.toByteArray();
+            return serialized[0].length;
+        };
+        Run deserialize = () -> {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized[0]))) {
+                sink[0] += ((List<?>) in.readObject()).size();
+            }
+            return serialized[0].length;
+        };
+
+        // warm-up; also leaves the encoded bytes in place for the decode runs
+        for (int i = 0; i < RUNS; i++) {
+            encode.run();
+            decode.run();
+            serialize.run();
+            deserialize.run();
+        }
+        double encodeRate = measure(encode);
+        int encodedSize = buffer.position();
+        double decodeRate = measure(() -> {
+            buffer.position(encodedSize); // decode() flips the buffer back to the encoded bytes
+            return decode.run();
+        });
+        double serializeRate = measure(serialize);
+        double deserializeRate = measure(deserialize);
+
+        System.out.printf("%-8s codec    : %,12d bytes  encode %8.1f MB/s  decode %8.1f MB/s%n", name, encodedSize,
+                encodeRate, decodeRate);
+        System.out.printf("%-8s Java ser.: %,12d bytes  encode %8.1f MB/s  decode %8.1f MB/s  (checksum %d)%n", name,
+                serialized[0].length, serializeRate, deserializeRate, sink[0]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        DynamicArray<Integer> ints = new DynamicArray<>();
+        DynamicArray<String> strings = new DynamicArray<>();
+        for (int i = 0; i < n; i++) {
+            ints.append(random.nextInt());
+            strings.append("element-" + random.nextInt(1_000_000));
+        }
+        compare("Integer", ints, Codec.INT);
+        compare("String", strings, Codec.STRING);
+    }
+}
@@ -1,12 +1,22 @@
 // This program implements STACK
+// With "Metrics.java" enabled, pushes and pops are counted.
 
 // AVAILABLE METHODS: 
 // - push(element)  --> void 
 // - pop()          --> element (removes element from stack)
 // - peek()         --> element (does not remove element from stack)
-
-import java.util.StringJoiner;
+// - writeTo(appendable, limit) --> void (top to bottom, at most 'limit' elements)
+// - writeTo(channel, limit)    --> void (same, through one reusable buffer, see "Utils.java")
+// - encode(channel, codec)     --> void (top to bottom, compact binary format, see "SequenceCodec.java")
+// - decode(channel, codec)     --> stack (static; reads what encode() wrote)
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 class Stack<T> implements Iterable {
     private int size;
@@ -19,18 +29,43 @@ class Stack<T> implements Iterable {
 
     @Override
     public String toString() {
-        StringJoiner sj = new StringJoiner(", ", "[", "]");
-        Node trav = this.head;
-        while (trav != null) {
-            sj.add(trav.data.toString());
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out, int limit) throws IOException {
+        out.append("[");
+        Node<T> trav = this.head;
+        int written = 0;
+        while (trav != null && written < limit) {
+            if (written > 0) {
+                out.append(", ");
+            }
+            out.append(trav.data.toString());
             trav = trav.prev;
+            written++;
+        }
+        if (trav != null) {
+            out.append(written == 0 ? "... (" : ", ... (");
+            Utils.appendNumber(out, this.size - written).append(" more)");
         }
-        return sj.toString();
+        out.append("]");
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
     }
 
     @Override
-    public Iterator iterator() {
-        return new Iterator() {
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
             int index = size;
             Node<T> trav = head;
 
@@ -64,7 +99,28 @@ class Stack<T> implements Iterable {
         }
     }
 
+    public void encode(WritableByteChannel channel, Codec<? super T> codec) throws IOException {
+        SequenceCodec.write(channel, SequenceCodec.STACK, this.size, this.iterator(), codec);
+    }
+
+    public static <T> Stack<T> decode(ReadableByteChannel channel, Codec<T> codec) throws IOException {
+        SequenceCodec.Decoder<T> in = SequenceCodec.decoder(channel, SequenceCodec.STACK, codec);
+        // elements come top to bottom, so they are pushed in reverse
+        List<T> elems = new ArrayList<>(in.getCount());
+        while (in.hasNext()) {
+            elems.add(in.read());
+        }
+        Stack<T> stack = new Stack<>();
+        for (int i = elems.size() - 1; i >= 0; i--) {
+            stack.push(elems.get(i));
+        }
+        return stack;
+    }
+
     public void push(T elem) {
+        if (Metrics.ENABLED) {
+            Metrics.STACK_OPS.increment();
+        }
         if (this.size == 0) {
             this.head = new Node<T>(elem, null);
         } else {
@@ -80,6 +136,9 @@ class Stack<T> implements Iterable {
         T data = this.head.data;
         this.head = this.head.prev;
         this.size--;
+        if (Metrics.ENABLED) {
+            Metrics.STACK_OPS.increment();
+        }
         return data;
     }
 
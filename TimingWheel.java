@@ -0,0 +1,239 @@
+// This program implements a Hierarchical Timing Wheel, a monotone priority queue for
+// non-negative integer keys (e.g. timer deadlines in nanoseconds or ticks).
+
+// The wheel has 11 levels of 64 slots. Slot s of level L covers keys that agree with
+// the current time on every digit above L (in base 64) and have digit s at level L.
+// So level 0 slots hold exact keys of the current 64-tick block, level 1 slots cover
+// 64-tick blocks of the current 4096-tick block, and so on. Each level keeps a 64-bit
+// occupancy mask, so the earliest non-empty slot is found with a single
+// numberOfTrailingZeros.
+// When level 0 runs empty, the time advances to the start of the earliest occupied
+// slot of the lowest non-empty level, and that slot is cascaded into the levels below.
+// Each value cascades at most 10 times, so add and poll cost O(log_64(C)), where C is
+// the distance between the current time and the key.
+
+// Values with equal keys are polled in the order they were added.
+// Keys must not be smaller than the current time (the key of the last polled value).
+
+// Public Methods:
+// add(key, value)     --> void     O(1)                 : schedules value at key; key must be >= getCurrentTime()
+// poll()              --> value    O(log_64(C)) amort.  : removes and returns the value with the smallest key,
+//                                                         advancing the current time to it; null if empty
+// peekKey()           --> long     O(log_64(C)) amort.  : returns the smallest key, or -1 if empty
+// getCurrentTime()    --> long     O(1)                 : returns the smallest key that may still be added; this is
+//                                                         the key of the last polled value, possibly advanced
+//                                                         towards the next key by peekKey()
+// isEmpty()           --> boolean  O(1)
+// getSize()           --> int      O(1)
+// writeTo(appendable, limit)  --> void    O(n)                 : writes the occupied slots, at most 'limit' values
+// writeTo(channel, limit)     --> void    O(n)                 : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+
+class TimingWheel<V> {
+    private static final int BITS_PER_LEVEL = 6;
+    private static final int SLOTS_PER_LEVEL = 1 << BITS_PER_LEVEL;
+    private static final int N_LEVELS = (64 + BITS_PER_LEVEL - 1) / BITS_PER_LEVEL;
+
+    private final Bucket[][] wheels = new Bucket[N_LEVELS][SLOTS_PER_LEVEL];
+    private final long[] occupied = new long[N_LEVELS]; // bit s of occupied[L] is set if slot s of level L is non-empty
+    private long now; // current time; lower bound of every key in the wheel
+    private int size;
+
+    // growable FIFO of (key, value) pairs
+    private static class Bucket {
+        private long[] keys = new long[4];
+        private Object[] values = new Object[4];
+        private int head; // index of the first element
+        private int size; // one past the index of the last element
+
+        private void add(long key, Object value) {
+            if (this.size == this.keys.length) {
+                if (this.head > 0) { // reclaim the polled prefix before growing
+                    System.arraycopy(this.keys, this.head, this.keys, 0, this.size - this.head);
+                    System.arraycopy(this.values, this.head, this.values, 0, this.size - this.head);
+                    java.util.Arrays.fill(this.values, this.size - this.head, this.size, null);
+                    this.size -= this.head;
+                    this.head = 0;
+                } else {
+                    this.keys = java.util.Arrays.copyOf(this.keys, this.size * 2);
+                    this.values = java.util.Arrays.copyOf(this.values, this.size * 2);
+                }
+            }
+            this.keys[this.size] = key;
+            this.values[this.size] = value;
+            this.size++;
+        }
+
+        private boolean isEmpty() {
+            return this.head == this.size;
+        }
+    }
+
+    public TimingWheel() {
+        this(0);
+    }
+
+    public TimingWheel(long startTime) {
+        if (startTime < 0) {
+            throw new IllegalArgumentException("Invalid start time " + startTime);
+        }
+        for (int level = 0; level < N_LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS_PER_LEVEL; slot++) {
+                this.wheels[level][slot] = new Bucket();
+            }
+        }
+        this.now = startTime;
+        this.size = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    // the current time, then one line of key=value pairs per non-empty slot
+    public void writeTo(Appendable out, int limit) throws IOException {
+        out.append("now: ");
+        Utils.appendNumber(out, this.now);
+        int written = 0;
+        for (int level = 0; level < N_LEVELS && written < limit; level++) {
+            for (int slot = 0; slot < SLOTS_PER_LEVEL && written < limit; slot++) {
+                Bucket bucket = this.wheels[level][slot];
+                if (!bucket.isEmpty()) {
+                    out.append("\nlevel ");
+                    Utils.appendNumber(out, level).append(" slot ");
+                    Utils.appendNumber(out, slot).append(":");
+                    for (int i = bucket.head; i < bucket.size && written < limit; i++, written++) {
+                        out.append(" ");
+                        Utils.appendNumber(out, bucket.keys[i]).append("=");
+                        Utils.appendValue(out, bucket.values[i]);
+                    }
+                }
+            }
+        }
+        if (written < this.size) {
+            out.append("\n... (");
+            Utils.appendNumber(out, this.size - written).append(" more)");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    private void put(long key, Object value) {
+        long diff = key ^ this.now;
+        int level = diff == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / BITS_PER_LEVEL;
+        int slot = (int) (key >>> (level * BITS_PER_LEVEL)) & (SLOTS_PER_LEVEL - 1);
+        this.wheels[level][slot].add(key, value);
+        this.occupied[level] |= 1L << slot;
+    }
+
+    public void add(long key, V value) { // O(1)
+        if (key < this.now) {
+            throw new IllegalArgumentException("Key " + key + " is earlier than the current time " + this.now);
+        }
+        this.put(key, value);
+        this.size++;
+    }
+
+    // advance the time until level 0 holds the earliest keys (if the wheel is non-empty)
+    private void cascade() {
+        while (this.occupied[0] == 0) {
+            int level = 1;
+            while (level < N_LEVELS && this.occupied[level] == 0) {
+                level++;
+            }
+            if (level == N_LEVELS) { // empty
+                return;
+            }
+            int slot = Long.numberOfTrailingZeros(this.occupied[level]);
+
+            // jump to the start of that slot: digits above 'level' are unchanged, lower digits are 0
+            int shift = (level + 1) * BITS_PER_LEVEL;
+            long high = shift >= 64 ? 0 : (this.now >>> shift) << shift;
+            this.now = high | ((long) slot << (level * BITS_PER_LEVEL));
+
+            // every element of the slot now lands on a lower level
+            Bucket bucket = this.wheels[level][slot];
+            this.occupied[level] &= ~(1L << slot);
+            for (int i = bucket.head; i < bucket.size; i++) {
+                this.put(bucket.keys[i], bucket.values[i]);
+                bucket.values[i] = null;
+            }
+            bucket.head = 0;
+            bucket.size = 0;
+        }
+    }
+
+    public V poll() {
+        if (this.size == 0) {
+            return null;
+        }
+        this.cascade();
+        int slot = Long.numberOfTrailingZeros(this.occupied[0]);
+        Bucket bucket = this.wheels[0][slot];
+        this.now = bucket.keys[bucket.head];
+        @SuppressWarnings("unchecked") // add() only stores values of type V
+        V value = (V) bucket.values[bucket.head];
+        bucket.values[bucket.head] = null;
+        bucket.head++;
+        if (bucket.isEmpty()) {
+            bucket.head = 0;
+            bucket.size = 0;
+            this.occupied[0] &= ~(1L << slot);
+        }
+        this.size--;
+        return value;
+    }
+
+    public long peekKey() {
+        if (this.size == 0) {
+            return -1;
+        }
+        this.cascade();
+        Bucket bucket = this.wheels[0][Long.numberOfTrailingZeros(this.occupied[0])];
+        return bucket.keys[bucket.head];
+    }
+
+    public long getCurrentTime() {
+        return this.now;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public static void main(String[] args) {
+        TimingWheel<String> wheel = new TimingWheel<>();
+        wheel.add(70, "timeout-70");
+        wheel.add(5, "timeout-5");
+        wheel.add(5000, "timeout-5000");
+        wheel.add(5, "timeout-5 (second)");
+        wheel.add(1L << 40, "timeout-2^40");
+        System.out.println(wheel);
+
+        System.out.println(wheel.poll() + " @ " + wheel.getCurrentTime());
+        System.out.println(wheel.peekKey());
+        wheel.add(64, "timeout-64");
+        while (!wheel.isEmpty()) {
+            String value = wheel.poll();
+            System.out.println(value + " @ " + wheel.getCurrentTime());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+// This program implements a bounded Top-K selection over a stream, using "PriorityQueue.java".
+
+// Only the K best elements seen so far are kept, in a min-heap whose root is the worst
+// of them. An incoming element that is not better than the root is rejected in O(1);
+// otherwise it replaces the root with a single sink. Memory is O(K) regardless of how
+// many elements are offered.
+
+// "Best" means largest by the comparator (natural ordering with create(k)); pass a reversed
+// comparator to select the K smallest.
+
+// For parallel streams, collector(k, comparator) builds one TopK per thread and merges
+// them, so memory stays O(K * threads).
+
+// Public Methods:
+// create(k)                    --> TopK                  : keeps the K largest elements by natural ordering (static)
+// TopK(k, comparator)          --> TopK                  : keeps the K largest elements by comparator
+// offer(element)               --> boolean  O(log(k))    : returns true if element was kept. O(1) if it is rejected
+// offerAll(elements)           --> void     O(n*log(k))
+// merge(other)                 --> TopK     O(k*log(k))  : offers all elements kept by other, returns this
+// peekWorst()                  --> element  O(1)         : returns the worst kept element, or null if empty
+// toSortedList()               --> list     O(k*log(k))  : returns the kept elements, best first
+// getSize()                    --> int      O(1)
+// parallelTopK(coll, k, cmp)   --> list                  : K best elements of coll, computed on all cores
+// collector(k, comparator)     --> Collector             : stream collector producing the sorted top-K list
+// writeTo(appendable, limit)   --> void     O(n)         : writes the kept elements, best first, at most 'limit' elements
+// writeTo(channel, limit)      --> void     O(n)         : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collector;
+
+class TopK<T> {
+    private final int k;
+    private final Comparator<? super T> comparator;
+    private PriorityQueue<T> heap; // min-heap, root is the worst kept element
+
+    public TopK(int k, Comparator<? super T> comparator) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Invalid k " + k);
+        }
+        this.k = k;
+        this.comparator = Objects.requireNonNull(comparator);
+        this.heap = new PriorityQueue<>(comparator);
+    }
+
+    // natural ordering; the bound keeps elements that are not Comparable out at compile time
+    public static <T extends Comparable<? super T>> TopK<T> create(int k) {
+        return new TopK<>(k, Comparator.<T>naturalOrder());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    // the kept elements, best first
+    public void writeTo(Appendable out, int limit) throws IOException {
+        List<T> sorted = this.toSortedList();
+        int n = Math.min(sorted.size(), Math.max(limit, 0));
+        out.append("[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            Utils.appendValue(out, sorted.get(i));
+        }
+        if (n < sorted.size()) {
+            out.append(n == 0 ? "... (" : ", ... (");
+            Utils.appendNumber(out, sorted.size() - n).append(" more)");
+        }
+        out.append("]");
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    public boolean offer(T elem) {
+        if (elem == null) {
+            throw new IllegalArgumentException();
+        }
+        if (this.heap.getSize() < this.k) {
+            this.heap.add(elem);
+            return true;
+        }
+        if (this.comparator.compare(elem, this.heap.peek()) <= 0) { // not better than the worst kept
+            return false;
+        }
+        this.heap.replace(elem);
+        return true;
+    }
+
+    public void offerAll(Iterable<? extends T> elems) {
+        for (T elem : elems) {
+            this.offer(elem);
+        }
+    }
+
+    public TopK<T> merge(TopK<? extends T> other) {
+        this.offerAll(other.heap.toList());
+        return this;
+    }
+
+    public T peekWorst() {
+        return this.heap.peek();
+    }
+
+    public List<T> toSortedList() {
+        List<T> sorted = this.heap.toList();
+        sorted.sort(Collections.reverseOrder(this.comparator));
+        return sorted;
+    }
+
+    public int getSize() {
+        return this.heap.getSize();
+    }
+
+    public static <T> Collector<T, TopK<T>, List<T>> collector(int k, Comparator<? super T> comparator) {
+        return Collector.of(
+                () -> new TopK<T>(k, comparator),
+                TopK::offer,
+                TopK::merge,
+                TopK::toSortedList);
+    }
+
+    public static <T> List<T> parallelTopK(Collection<? extends T> elems, int k, Comparator<? super T> comparator) {
+        return elems.parallelStream().collect(collector(k, comparator));
+    }
+
+    public static void main(String[] args) {
+        TopK<Integer> topK = TopK.create(3);
+        for (int i : new int[] { 5, 1, 9, 3, 7, 9, 2, 8 }) {
+            System.out.println("offer " + i + " : " + topK.offer(i));
+        }
+        System.out.println(topK);
+        System.out.println(topK.peekWorst());
+
+        List<Integer> stream = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++) {
+            stream.add((int) ((i * 2654435761L) % 1_000_003));
+        }
+        System.out.println(parallelTopK(stream, 5, Comparator.<Integer>naturalOrder()));
+        System.out.println(parallelTopK(stream, 5, Comparator.<Integer>reverseOrder())); // 5 smallest
+    }
+}
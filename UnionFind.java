@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
 
 // Unlike William Fiset's implementation, this implementation accepts the 
@@ -5,153 +8,257 @@ import java.util.*;
 // other words the bijection mapping from objects to indices in maintained
 // internally in the implementation of UnionFind itself 
 
+// Elements are numbered 0, 1, 2, ... in the order they are added. The element-to-id map is an
+// open-addressing hash with primitive int values ("ObjectIntHashMap.java") and the
+// id-to-element map is a plain array, so no Integer is boxed on any operation. The
+// union-find itself runs on the ids ("IntUnionFind.java").
+
+// Elements can be added at any time (the id-to-element array grows by doubling, like the
+// arrays of IntUnionFind). With autoRegister, unify() adds unseen elements as new singletons
+// instead of rejecting them, so a stream of records can be merged without knowing them upfront.
+
+// The bulk methods map all elements to their ids first, then hand the id arrays to the bulk
+// methods of IntUnionFind, including their parallel variants.
+
 // Public Methods: 
+// UnionFind()                    --> void     O(1)      : returns an empty instance of UnionFind
 // UnionFind(Set of elements)     --> void     O(n)      : returns an instance of UnionFind 
+// UnionFind(Set, autoRegister)   --> void     O(n)      : as above; if autoRegister, unify() adds unseen elements
+// add(elem)                      --> bool     O(1)+     : adds elem as a singleton component; false if already present
+// addAll(Collection of elements) --> int      O(k)+     : adds every new element; returns how many were added
+// contains(elem)                 --> bool     O(1)      : checks if elem has been added
 // unify(elem1, elem2)            --> void     O(n)+     : merge corresponding components. If they are already connected, do nothing. 
 // find(elem1)                    --> elem     O(n)+     : returns the root element of the component to which elem1 belongs
 // getComponentSize(elem)        --> int      O(n)+     : returns the size of the component to which elem belongs 
 // areConnected(elem1, elem2)     --> bool     O(n)+     : check if elem1 and elem2 are connected 
 // getComponentsCount()           --> int      O(1)      : return the total number of components 
+// getSize()                      --> int      O(1)      : return the total number of elements
+// unifyAll(list1, list2)         --> int      O(m)+     : unifies list1[i] with list2[i] for every i; returns the number of merges
+// unifyAll(list1, list2, parallel) --> int    O(m)+     : same, optionally filtering connected pairs in parallel
+// areConnectedBatch(list1, list2, parallel) --> boolean[] : out[i] = areConnected(list1[i], list2[i])
+// findAll(list, parallel)        --> List     O(m)+     : the root element of every element of list
+// components()                   --> List     O(n)      : returns the elements of every component, in the order they were added
+// writeTo(appendable, limit)     --> void     O(n*log(n)) : writes one line per component, members sorted, at most 'limit'
+//                                                        elements in total
+// writeTo(channel, limit)        --> void     O(n*log(n)) : same, streamed through one reusable buffer (see "Utils.java")
 
 class UnionFind<T> {
-    private final int N_ELEMS;
-    int nComp; // number of components
+    private int nElems;
+
+    // if true, unify() adds unseen elements instead of throwing
+    private final boolean autoRegister;
 
     // This implementation deals internally in indices rather than objects.
     // These two maps are for necessary conversions.
-    private Map<T, Integer> mapElemToIndex;
-    private Map<Integer, T> mapIndexToElem;
+    private ObjectIntHashMap<T> mapElemToIndex;
+    private T[] mapIndexToElem;
 
-    // parent[i] gives index of parent elem that maps to i by this.mapElemToIndex
-    private int[] parent;
+    // union-find over the indices
+    private IntUnionFind uf;
 
-    // size[i] gives the size of the component to which the element mapped to i
-    // (by this.mapElemToIndex) belongs.
-    // This is valid only for those indices which are still valid root indices.
-    private int[] size;
+    public UnionFind() {
+        this(Collections.emptySet(), false);
+    }
 
     public UnionFind(Set<T> elems) {
+        this(elems, false);
+    }
 
-        this.mapElemToIndex = new HashMap<>();
-        this.mapIndexToElem = new HashMap<>();
-
-        int i = 0;
-        for (T elem : elems) {
-            this.mapElemToIndex.put(elem, i);
-            this.mapIndexToElem.put(i, elem);
-            i++;
-        }
-        this.N_ELEMS = elems.size();
-        this.nComp = this.N_ELEMS;
-
-        // set parent of each element, which initially is itself for all elements
-        // set component size of all components to 1
-        this.parent = new int[this.N_ELEMS];
-        this.size = new int[this.N_ELEMS];
-        for (i = 0; i < this.parent.length; i++) {
-            this.parent[i] = i;
-            this.size[i] = 1;
-        }
+    public UnionFind(Set<T> elems, boolean autoRegister) {
+        this.autoRegister = autoRegister;
+        this.nElems = 0;
+        this.mapElemToIndex = new ObjectIntHashMap<>(elems.size());
+        @SuppressWarnings("unchecked") // only elements of type T are stored, and the array never escapes
+        T[] elemsByIndex = (T[]) new Object[Math.max(elems.size(), 2)];
+        this.mapIndexToElem = elemsByIndex;
+        this.uf = new IntUnionFind();
+        this.addAll(elems);
     }
 
     @Override
     public String toString() {
-        // key: root index
-        // value: set of elements
-        Map<Integer, Set<T>> map = new HashMap<>();
-
-        for (int i = 0; i < this.N_ELEMS; i++) {
-            T elem = this.mapIndexToElem.get(i);
-
-            int rootIndex = this.findRootElementIndexAndCompressPath(i);
-            if (map.containsKey(rootIndex)) {
-                map.get(rootIndex).add(elem);
-            } else {
-                Set<T> set = new TreeSet<>(Arrays.asList(elem));
-                map.put(rootIndex, set);
-            }
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
         }
+        return sb.toString();
+    }
 
-        String str = "";
-        for (Set<T> elems : map.values()) {
-            for (T elem : elems) {
-                str += elem + ", ";
+    // one line per component, members in their natural order when they are mutually Comparable,
+    // else in insertion order
+    public void writeTo(Appendable out, int limit) throws IOException {
+        int written = 0;
+        for (int[] indices : this.uf.components()) {
+            if (written >= limit) {
+                break;
+            }
+            Object[] members = new Object[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                members[i] = this.mapIndexToElem[indices[i]];
+            }
+            try {
+                Arrays.sort(members);
+            } catch (ClassCastException e) { // not mutually comparable: keep insertion order
+                for (int i = 0; i < indices.length; i++) {
+                    members[i] = this.mapIndexToElem[indices[i]];
+                }
             }
-            str += "\n";
+            for (Object member : members) {
+                if (written >= limit) {
+                    break;
+                }
+                Utils.appendValue(out, member).append(", ");
+                written++;
+            }
+            out.append("\n");
+        }
+        if (written < this.nElems) {
+            out.append("... (");
+            Utils.appendNumber(out, this.nElems - written).append(" more)\n");
         }
-        return str;
-
     }
 
-    public void unify(T elem1, T elem2) {
-        int index1 = this.mapElemToIndex.get(elem1);
-        int index2 = this.mapElemToIndex.get(elem2);
-
-        int rootIndex1 = this.findRootElementIndexAndCompressPath(index1);
-        int rootIndex2 = this.findRootElementIndexAndCompressPath(index2);
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
 
-        if (rootIndex1 == rootIndex2) { // already unified
-            return;
+    public List<List<T>> components() { // O(n)
+        int[][] indexComponents = this.uf.components();
+        List<List<T>> components = new ArrayList<>(indexComponents.length);
+        for (int[] indices : indexComponents) {
+            List<T> component = new ArrayList<>(indices.length);
+            for (int index : indices) {
+                component.add(this.mapIndexToElem[index]);
+            }
+            components.add(component);
         }
+        return components;
+    }
 
-        int size1 = this.size[rootIndex1];
-        int size2 = this.size[rootIndex2];
-
-        // merge smaller component into the larger component
-        if (size1 < size2) {
-            this.parent[rootIndex1] = rootIndex2;
-            this.size[rootIndex2] += this.size[rootIndex1];
-        } else {
-            this.parent[rootIndex2] = rootIndex1;
-            this.size[rootIndex1] += this.size[rootIndex2];
+    public boolean add(T elem) { // O(1)+
+        if (elem == null) {
+            throw new IllegalArgumentException();
+        }
+        if (this.mapElemToIndex.containsKey(elem)) {
+            return false;
         }
+        this.register(elem);
+        return true;
+    }
 
-        this.nComp--;
+    public int addAll(Collection<? extends T> elems) { // O(k)+
+        int added = 0;
+        for (T elem : elems) {
+            if (this.add(elem)) {
+                added++;
+            }
+        }
+        return added;
+    }
 
+    public boolean contains(T elem) {
+        return this.mapElemToIndex.containsKey(elem);
     }
 
-    private int findRootElementIndexAndCompressPath(int elemIndex) {
-        // return the index of root element,
-        // Additionally, perform path compression.
+    // assigns the next id to a new element
+    private int register(T elem) {
+        if (this.nElems == this.mapIndexToElem.length) {
+            this.mapIndexToElem = Arrays.copyOf(this.mapIndexToElem, this.nElems * 2);
+        }
+        int index = this.uf.add();
+        this.mapElemToIndex.put(elem, index);
+        this.mapIndexToElem[index] = elem;
+        this.nElems++;
+        return index;
+    }
 
-        // 'rootIndex' will take the value of rootIndex after while loop exits
-        int rootIndex = elemIndex;
-        while (rootIndex != this.parent[elemIndex]) {
-            rootIndex = this.parent[elemIndex];
+    // like indexOf(), but registers unseen elements if autoRegister is set
+    private int indexOrRegister(T elem) {
+        int index = this.mapElemToIndex.get(elem);
+        if (index != -1) {
+            return index;
         }
-        // Path compression: Set the parent of an element directly to the root element
-        // Necessary to reduce the complexity to O(n)+
-        while (elemIndex != rootIndex) {
-            int earlierParent = this.parent[elemIndex];
-            this.parent[elemIndex] = rootIndex;
-            elemIndex = earlierParent;
+        if (!this.autoRegister || elem == null) {
+            throw new IllegalArgumentException("Unknown element " + elem);
+        }
+        return this.register(elem);
+    }
+
+    private int indexOf(T elem) {
+        int index = this.mapElemToIndex.get(elem);
+        if (index == -1) {
+            throw new IllegalArgumentException("Unknown element " + elem);
         }
-        return rootIndex;
+        return index;
+    }
+
+    public void unify(T elem1, T elem2) {
+        this.uf.unify(this.indexOrRegister(elem1), this.indexOrRegister(elem2));
     }
 
     public T find(T elem) {
-        int elemIndex = this.mapElemToIndex.get(elem);
-        int rootIndex = this.findRootElementIndexAndCompressPath(elemIndex);
-        return this.mapIndexToElem.get(rootIndex);
+        return this.mapIndexToElem[this.uf.find(this.indexOf(elem))];
     }
 
     public int getComponentSize(T elem) {
-        int elemIndex = this.mapElemToIndex.get(elem);
-        int rootIndex = this.findRootElementIndexAndCompressPath(elemIndex);
-        return this.size[rootIndex];
+        return this.uf.getComponentSize(this.indexOf(elem));
     }
 
     public boolean areConnected(T elem1, T elem2) {
-        int elemIndex1 = this.mapElemToIndex.get(elem1);
-        int elemIndex2 = this.mapElemToIndex.get(elem2);
-        int rootIndex1 = this.findRootElementIndexAndCompressPath(elemIndex1);
-        int rootIndex2 = this.findRootElementIndexAndCompressPath(elemIndex2);
-        return rootIndex1 == rootIndex2;
-
+        return this.uf.areConnected(this.indexOf(elem1), this.indexOf(elem2));
     }
 
     public int getComponentCount() {
-        return this.nComp;
+        return this.uf.getComponentCount();
+    }
+
+    public int getSize() {
+        return this.nElems;
+    }
+
+    private int[] indicesOf(List<? extends T> elems, boolean register) {
+        int[] indices = new int[elems.size()];
+        int i = 0;
+        for (T elem : elems) {
+            indices[i++] = register ? this.indexOrRegister(elem) : this.indexOf(elem);
+        }
+        return indices;
+    }
+
+    private static void checkSizes(List<?> elems1, List<?> elems2) {
+        if (elems1.size() != elems2.size()) {
+            throw new IllegalArgumentException("List sizes differ: " + elems1.size() + ", " + elems2.size());
+        }
+    }
+
+    public int unifyAll(List<? extends T> elems1, List<? extends T> elems2) {
+        return this.unifyAll(elems1, elems2, false);
+    }
+
+    public int unifyAll(List<? extends T> elems1, List<? extends T> elems2, boolean parallel) {
+        checkSizes(elems1, elems2);
+        return this.uf.unifyAll(this.indicesOf(elems1, true), this.indicesOf(elems2, true), parallel);
+    }
+
+    public boolean[] areConnectedBatch(List<? extends T> elems1, List<? extends T> elems2, boolean parallel) {
+        checkSizes(elems1, elems2);
+        boolean[] connected = new boolean[elems1.size()];
+        this.uf.areConnectedBatch(this.indicesOf(elems1, false), this.indicesOf(elems2, false), connected, parallel);
+        return connected;
+    }
+
+    public List<T> findAll(List<? extends T> elems, boolean parallel) {
+        int[] indices = this.indicesOf(elems, false);
+        this.uf.findAll(indices, indices, parallel);
+        List<T> roots = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            roots.add(this.mapIndexToElem[index]);
+        }
+        return roots;
     }
 
     public static void main(String[] args) {
@@ -180,5 +287,22 @@ class UnionFind<T> {
         System.out.println(uf.getComponentSize("Apple"));
         System.out.println(uf.getComponentSize("Daddy"));
 
+        // records arriving one at a time
+        UnionFind<String> dedup = new UnionFind<>(new HashSet<>(), true);
+        dedup.unify("alice@example.com", "a.smith");
+        dedup.unify("bob@example.com", "b.jones");
+        dedup.unify("a.smith", "alice.smith@work.com");
+        dedup.add("carol@example.com");
+        System.out.println(dedup.getSize() + " elements, " + dedup.getComponentCount() + " components");
+        System.out.println(dedup.areConnected("alice@example.com", "alice.smith@work.com"));
+
+        // the same, as one batch
+        UnionFind<String> batch = new UnionFind<>(new HashSet<>(), true);
+        batch.unifyAll(Arrays.asList("alice@example.com", "bob@example.com", "a.smith"),
+                Arrays.asList("a.smith", "b.jones", "alice.smith@work.com"), true);
+        System.out.println(Arrays.toString(batch.areConnectedBatch(Arrays.asList("alice@example.com", "bob@example.com"),
+                Arrays.asList("alice.smith@work.com", "alice.smith@work.com"), false)));
+        System.out.println(batch.findAll(Arrays.asList("a.smith", "b.jones"), false));
+
     }
 }
\ No newline at end of file
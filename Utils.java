@@ -1,8 +1,228 @@
+// Helpers shared by the programs of this repository.
+
+// ChannelWriter is an Appendable that encodes text as UTF-8 straight into one direct
+// buffer and hands full buffers to a WritableByteChannel. It is what the writeTo(channel)
+// methods of the structures stream through: nothing is built up as a String, and
+// numbers are formatted digit by digit into the buffer. writer(channel) returns the
+// calling thread's ChannelWriter, so repeated dumps reuse the same buffer. The writer is
+// in use from writer() until its flush(); a dump started meanwhile on the same thread
+// (e.g. from an element's writeTo) gets a fresh ChannelWriter instead of sharing it.
+
+// Public Methods:
+// printAry(int[] / long[] / double[])  --> void           O(n)  : prints the elements on one line through a buffered writer
+// writer(channel)                      --> ChannelWriter  O(1)  : returns this thread's writer, pointed at channel, or a new
+//                                                                one if this thread's writer is in use
+// ChannelWriter.append(...)            --> ChannelWriter  O(k)  : appends text, a char or a number
+// ChannelWriter.flush()                --> void                 : writes out the buffered bytes and releases the writer
+// appendNumber(out, long)             --> out            O(k)  : appends a number, digit by digit if out is a ChannelWriter
+// appendValue(out, Object)             --> out            O(k)  : appends String.valueOf(value); boxed Integer, Long, Short,
+//                                                                Byte and Double go through appendNumber / append(double)
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
 public class Utils {
+    public static final class ChannelWriter implements Appendable, Flushable {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final byte[] digits = new byte[20];
+        private WritableByteChannel channel;
+        private char highSurrogate; // first half of a surrogate pair, or 0
+        private boolean inUse; // handed out by writer() and not flushed since
+
+        public ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        private ChannelWriter reset(WritableByteChannel channel) {
+            this.channel = channel;
+            this.buffer.clear();
+            this.highSurrogate = 0;
+            return this;
+        }
+
+        private void ensureRemaining(int n) throws IOException {
+            if (this.buffer.remaining() < n) {
+                this.drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+        @Override
+        public ChannelWriter append(char c) throws IOException {
+            this.ensureRemaining(4);
+            if (this.highSurrogate != 0) {
+                char high = this.highSurrogate;
+                this.highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    int codePoint = Character.toCodePoint(high, c);
+                    this.buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                    this.buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    this.buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    this.buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                    return this;
+                }
+                this.buffer.put((byte) '?'); // unpaired surrogate
+                this.ensureRemaining(4);
+            }
+            if (c < 0x80) {
+                this.buffer.put((byte) c);
+            } else if (c < 0x800) {
+                this.buffer.put((byte) (0xC0 | (c >> 6)));
+                this.buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c)) {
+                this.highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                this.buffer.put((byte) '?'); // unpaired surrogate
+            } else {
+                this.buffer.put((byte) (0xE0 | (c >> 12)));
+                this.buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                this.buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+            return this;
+        }
+
+        @Override
+        public ChannelWriter append(CharSequence csq) throws IOException {
+            return this.append(csq == null ? "null" : csq, 0, csq == null ? 4 : csq.length());
+        }
+
+        @Override
+        public ChannelWriter append(CharSequence csq, int start, int end) throws IOException {
+            if (csq == null) {
+                csq = "null";
+            }
+            for (int i = start; i < end; i++) {
+                char c = csq.charAt(i);
+                if (c < 0x80 && this.highSurrogate == 0 && this.buffer.hasRemaining()) { // fast path
+                    this.buffer.put((byte) c);
+                } else {
+                    this.append(c);
+                }
+            }
+            return this;
+        }
+
+        public ChannelWriter append(long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                return this.append("-9223372036854775808");
+            }
+            this.ensureRemaining(21);
+            if (value < 0) {
+                this.buffer.put((byte) '-');
+                value = -value;
+            }
+            int n = 0;
+            do {
+                this.digits[n++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            while (n > 0) {
+                this.buffer.put(this.digits[--n]);
+            }
+            return this;
+        }
+
+        public ChannelWriter append(double value) throws IOException {
+            return this.append(Double.toString(value));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            try {
+                if (this.highSurrogate != 0) {
+                    this.highSurrogate = 0;
+                    this.ensureRemaining(1);
+                    this.buffer.put((byte) '?');
+                }
+                this.drain();
+            } finally {
+                this.inUse = false;
+            }
+        }
+    }
+
+    private static final ThreadLocal<ChannelWriter> WRITER = ThreadLocal.withInitial(() -> new ChannelWriter(null));
+
+    public static ChannelWriter writer(WritableByteChannel channel) {
+        ChannelWriter writer = WRITER.get();
+        if (writer.inUse) { // a dump nested in another one; do not clobber its buffer
+            return new ChannelWriter(channel);
+        }
+        writer.inUse = true;
+        return writer.reset(channel);
+    }
+
+    public static Appendable appendNumber(Appendable out, long value) throws IOException {
+        if (out instanceof ChannelWriter) {
+            return ((ChannelWriter) out).append(value);
+        }
+        return out.append(Long.toString(value));
+    }
+
+    public static Appendable appendValue(Appendable out, Object value) throws IOException {
+        if (out instanceof ChannelWriter) {
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                return ((ChannelWriter) out).append(((Number) value).longValue());
+            }
+            if (value instanceof Double) {
+                return ((ChannelWriter) out).append(((Double) value).doubleValue());
+            }
+        }
+        return out.append(String.valueOf(value));
+    }
+
+    // System.out as a channel; PrintStream's own buffer is flushed first so output stays in order
+    private static ChannelWriter stdout() {
+        System.out.flush();
+        return writer(Channels.newChannel(System.out));
+    }
+
     public static void printAry(int[] ary) {
-        for (int i : ary) {
-            System.out.print(i + " ");
+        try {
+            ChannelWriter out = stdout();
+            for (int i : ary) {
+                out.append(i).append(' ');
+            }
+            out.append('\n').flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void printAry(long[] ary) {
+        try {
+            ChannelWriter out = stdout();
+            for (long i : ary) {
+                out.append(i).append(' ');
+            }
+            out.append('\n').flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void printAry(double[] ary) {
+        try {
+            ChannelWriter out = stdout();
+            for (double d : ary) {
+                out.append(d).append(' ');
+            }
+            out.append('\n').flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        System.out.println();
     }
-}
\ No newline at end of file
+}
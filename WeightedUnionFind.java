@@ -0,0 +1,180 @@
+// This program implements a weighted (potential) UnionFind on dense integer ids 0..n-1,
+// for systems of difference constraints "x[a] - x[b] = c" (e.g. clock offsets between hosts).
+
+// Each id stores its potential relative to its parent:
+//    potential[i] = x[i] - x[parent[i]]
+// so the potential of an id relative to its root is the sum along the path. find() uses
+// union by size and path compression like "IntUnionFind.java"; when it relinks an id
+// directly to the root, it replaces the id's potential with that sum, so potentials stay
+// correct. unify(a, b, c) links the two roots with the potential that makes x[a] - x[b] = c
+// hold; if a and b are already connected, it only checks the constraint against the
+// known difference and reports a contradiction.
+
+// Potentials are longs; sums that overflow a long wrap around.
+
+// Public Methods:
+// WeightedUnionFind(n)           --> WeightedUnionFind  O(n) : n singleton components with ids 0..n-1
+// unify(a, b, diff)              --> boolean   ~O(1)  : adds the constraint x[a] - x[b] = diff; false if it contradicts
+//                                                       the constraints added so far (the structure is then unchanged)
+// difference(a, b)               --> long      ~O(1)  : returns x[a] - x[b]; a and b must be connected
+// find(id)                       --> int       ~O(1)  : returns the root id of the component of id
+// areConnected(a, b)             --> boolean   ~O(1)  : checks if x[a] - x[b] is determined by the constraints
+// getComponentSize(id)           --> int       ~O(1)  : returns the size of the component of id
+// getComponentCount()            --> int       O(1)   : returns the number of components
+// getSize()                      --> int       O(1)   : returns the number of ids
+// writeTo(appendable, limit)     --> void      O(n)          : writes each id with its root and potential, at most 'limit' ids
+// writeTo(channel, limit)        --> void      O(n)          : same, streamed through one reusable buffer (see "Utils.java")
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+
+class WeightedUnionFind {
+    private final int nElems;
+    private int nComp; // number of components
+
+    // parent[i] is the parent id of i; i is a root if parent[i] == i
+    private final int[] parent;
+
+    // size[i] is the size of the component rooted at i; only valid for roots
+    private final int[] size;
+
+    // potential[i] = x[i] - x[parent[i]]; 0 for roots
+    private final long[] potential;
+
+    public WeightedUnionFind(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Invalid size " + n);
+        }
+        this.nElems = n;
+        this.nComp = n;
+        this.parent = new int[n];
+        this.size = new int[n];
+        this.potential = new long[n];
+        for (int i = 0; i < n; i++) {
+            this.parent[i] = i;
+            this.size[i] = 1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.writeTo(sb, Integer.MAX_VALUE);
+        } catch (IOException e) { // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    // each id with its root and its potential relative to the root
+    public void writeTo(Appendable out, int limit) throws IOException {
+        int n = Math.min(this.nElems, Math.max(limit, 0));
+        for (int i = 0; i < n; i++) {
+            int root = this.find(i); // links i straight to the root, so potential[i] is relative to it
+            Utils.appendNumber(out, i).append(" -> ");
+            Utils.appendNumber(out, root).append(" : ");
+            Utils.appendNumber(out, this.potential[i]).append("\n");
+        }
+        if (n < this.nElems) {
+            out.append("... (");
+            Utils.appendNumber(out, this.nElems - n).append(" more)\n");
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel, int limit) throws IOException {
+        Utils.ChannelWriter out = Utils.writer(channel);
+        this.writeTo(out, limit);
+        out.flush();
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= this.nElems) {
+            throw new IllegalArgumentException("Invalid id " + id);
+        }
+    }
+
+    public int find(int id) {
+        this.checkId(id);
+        int root = id;
+        long toRoot = 0; // x[id] - x[root]
+        while (root != this.parent[root]) {
+            toRoot += this.potential[root];
+            root = this.parent[root];
+        }
+        // Path compression: link every id on the path directly to the root, with its
+        // potential relative to the root
+        while (id != root) {
+            int next = this.parent[id];
+            long nextToRoot = toRoot - this.potential[id];
+            this.parent[id] = root;
+            this.potential[id] = toRoot;
+            id = next;
+            toRoot = nextToRoot;
+        }
+        return root;
+    }
+
+    public boolean unify(int a, int b, long diff) {
+        int rootA = this.find(a);
+        int rootB = this.find(b);
+        // after find(), potential[a] = x[a] - x[rootA] (0 if a is the root itself)
+        long potentialA = this.potential[a];
+        long potentialB = this.potential[b];
+        if (rootA == rootB) { // already related: check the constraint
+            return potentialA - potentialB == diff;
+        }
+
+        // x[rootA] - x[rootB] = diff - potentialA + potentialB
+        long rootDiff = diff - potentialA + potentialB;
+        // merge smaller component into the larger component
+        if (this.size[rootA] < this.size[rootB]) {
+            this.parent[rootA] = rootB;
+            this.potential[rootA] = rootDiff;
+            this.size[rootB] += this.size[rootA];
+        } else {
+            this.parent[rootB] = rootA;
+            this.potential[rootB] = -rootDiff;
+            this.size[rootA] += this.size[rootB];
+        }
+        this.nComp--;
+        return true;
+    }
+
+    public long difference(int a, int b) {
+        if (this.find(a) != this.find(b)) {
+            throw new IllegalArgumentException("Ids " + a + " and " + b + " are not connected");
+        }
+        return this.potential[a] - this.potential[b];
+    }
+
+    public boolean areConnected(int a, int b) {
+        return this.find(a) == this.find(b);
+    }
+
+    public int getComponentSize(int id) {
+        return this.size[this.find(id)];
+    }
+
+    public int getComponentCount() {
+        return this.nComp;
+    }
+
+    public int getSize() {
+        return this.nElems;
+    }
+
+    public static void main(String[] args) {
+        // clock offsets (in microseconds) between 5 hosts
+        WeightedUnionFind skew = new WeightedUnionFind(5);
+        System.out.println(skew.unify(0, 1, 120)); // host0 - host1 = 120
+        System.out.println(skew.unify(2, 1, -30)); // host2 - host1 = -30
+        System.out.println(skew.unify(3, 4, 7));
+        System.out.println(skew.difference(0, 2)); // 150
+        System.out.println(skew.unify(0, 2, 150)); // consistent
+        System.out.println(skew.unify(0, 2, 151)); // contradiction
+        System.out.println(skew.areConnected(0, 3) + " " + skew.getComponentCount());
+        System.out.print(skew);
+    }
+}
@@ -0,0 +1,75 @@
+// JMH benchmarks of DynamicArray against java.util.ArrayList.
+// Every benchmark method does 'size' operations, so the reported time is per 'size' operations.
+
+package datastructures;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArrayBench {
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000", "100000000"})
+    public int size;
+
+    private Integer[] elements;
+    private DynamicArray<Integer> dynamicArray; // filled, for the iterate benchmarks
+    private ArrayList<Integer> arrayList;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.elements = Inputs.randomElements(this.size);
+        this.dynamicArray = new DynamicArray<>();
+        this.arrayList = new ArrayList<>();
+        for (Integer elem : this.elements) {
+            this.dynamicArray.append(elem);
+            this.arrayList.add(elem);
+        }
+    }
+
+    @Benchmark
+    public int dynamicArrayAppend() {
+        DynamicArray<Integer> da = new DynamicArray<>();
+        for (int i = 0; i < this.size; i++) {
+            da.append(this.elements[i]);
+        }
+        return da.getSize();
+    }
+
+    @Benchmark
+    public int arrayListAdd() {
+        ArrayList<Integer> list = new ArrayList<>();
+        for (int i = 0; i < this.size; i++) {
+            list.add(this.elements[i]);
+        }
+        return list.size();
+    }
+
+    @Benchmark
+    public long dynamicArrayIterate() {
+        long sum = 0;
+        for (Integer elem : this.dynamicArray) {
+            sum += elem;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long arrayListIterate() {
+        long sum = 0;
+        for (Integer elem : this.arrayList) {
+            sum += elem;
+        }
+        return sum;
+    }
+}
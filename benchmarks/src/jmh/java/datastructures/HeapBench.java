@@ -0,0 +1,96 @@
+// JMH benchmarks of the heaps of this repository against java.util.PriorityQueue.
+// Every benchmark method adds 'size' elements and then polls them all, so the reported time
+// is per 2 * 'size' operations.
+
+package datastructures;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HeapBench {
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000", "100000000"})
+    public int size;
+
+    private Integer[] elements;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.elements = Inputs.randomElements(this.size);
+    }
+
+    @Benchmark
+    public long priorityQueueAddPoll() {
+        PriorityQueue<Integer> pq = PriorityQueue.create();
+        for (int i = 0; i < this.size; i++) {
+            pq.add(this.elements[i]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += pq.poll();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long quickRemovalAddPoll() {
+        PriorityQueueQuickRemoval<Integer> pq = new PriorityQueueQuickRemoval<>();
+        for (int i = 0; i < this.size; i++) {
+            pq.add(this.elements[i]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += pq.poll();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long pairingHeapAddPoll() {
+        PairingHeap<Integer> heap = PairingHeap.create();
+        for (int i = 0; i < this.size; i++) {
+            heap.add(this.elements[i]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += heap.poll();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long fibonacciHeapAddPoll() {
+        FibonacciHeap<Integer> heap = FibonacciHeap.create();
+        for (int i = 0; i < this.size; i++) {
+            heap.add(this.elements[i]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += heap.poll();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long javaUtilPriorityQueueAddPoll() {
+        java.util.PriorityQueue<Integer> pq = new java.util.PriorityQueue<>();
+        for (int i = 0; i < this.size; i++) {
+            pq.add(this.elements[i]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += pq.poll();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,29 @@
+// Random inputs shared by the JMH benchmarks; the same seeds as "Benchmark.java", so both
+// harnesses measure the same elements for the same size.
+
+package datastructures;
+
+import java.util.Random;
+
+final class Inputs {
+    private Inputs() {
+    }
+
+    static Integer[] randomElements(int n) {
+        Random random = new Random(n);
+        Integer[] elements = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            elements[i] = random.nextInt();
+        }
+        return elements;
+    }
+
+    static int[] randomInts(int count, int bound, long seed) {
+        Random random = new Random(seed);
+        int[] ints = new int[count];
+        for (int i = 0; i < count; i++) {
+            ints[i] = random.nextInt(bound);
+        }
+        return ints;
+    }
+}
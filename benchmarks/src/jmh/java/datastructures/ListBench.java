@@ -0,0 +1,130 @@
+// JMH benchmarks of DoublyLinkedList, Queue and Stack against java.util.LinkedList and
+// java.util.ArrayDeque.
+// Every benchmark method does 'size' operations of each kind it names, so the reported time
+// is per 'size' (append, iterate) or 2 * 'size' (add and remove) operations.
+
+package datastructures;
+
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ListBench {
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000", "100000000"})
+    public int size;
+
+    private Integer[] elements;
+    private DoublyLinkedList<Integer> doublyLinkedList; // filled, for the iterate benchmarks
+    private LinkedList<Integer> linkedList;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.elements = Inputs.randomElements(this.size);
+        this.doublyLinkedList = new DoublyLinkedList<>();
+        this.linkedList = new LinkedList<>();
+        for (Integer elem : this.elements) {
+            this.doublyLinkedList.append(elem);
+            this.linkedList.add(elem);
+        }
+    }
+
+    @Benchmark
+    public int doublyLinkedListAppend() {
+        DoublyLinkedList<Integer> dll = new DoublyLinkedList<>();
+        for (int i = 0; i < this.size; i++) {
+            dll.append(this.elements[i]);
+        }
+        return dll.getSize();
+    }
+
+    @Benchmark
+    public int linkedListAdd() {
+        LinkedList<Integer> list = new LinkedList<>();
+        for (int i = 0; i < this.size; i++) {
+            list.add(this.elements[i]);
+        }
+        return list.size();
+    }
+
+    @Benchmark
+    public long doublyLinkedListIterate() {
+        long sum = 0;
+        for (Integer elem : this.doublyLinkedList) {
+            sum += elem;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long linkedListIterate() {
+        long sum = 0;
+        for (Integer elem : this.linkedList) {
+            sum += elem;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long queueEnqueueDequeue() {
+        Queue<Integer> queue = new Queue<>();
+        for (int i = 0; i < this.size; i++) {
+            queue.enqueue(this.elements[i]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += queue.dequeue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long arrayDequeOfferPoll() {
+        ArrayDeque<Integer> deque = new ArrayDeque<>();
+        for (int i = 0; i < this.size; i++) {
+            deque.offer(this.elements[i]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += deque.poll();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long stackPushPop() {
+        Stack<Integer> stack = new Stack<>();
+        for (int i = 0; i < this.size; i++) {
+            stack.push(this.elements[i]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += stack.pop();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long arrayDequePushPop() {
+        ArrayDeque<Integer> deque = new ArrayDeque<>();
+        for (int i = 0; i < this.size; i++) {
+            deque.push(this.elements[i]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += deque.pop();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,94 @@
+// JMH benchmarks of UnionFind (boxed elements) against IntUnionFind (dense int ids); there
+// is no java.util equivalent. Both unify the same 'size' random pairs, then find 'size' ids,
+// so the reported time is per 2 * 'size' operations.
+// A union-find cannot be reset, so a fresh one is built before every invocation, outside of
+// the measurement (Level.Invocation). Even at 10^2 elements an invocation takes microseconds,
+// which keeps the timestamping overhead of that level small.
+
+package datastructures;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UnionFindBench {
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000", "100000000"})
+    public int size;
+
+    private int[] ids; // 2 * size random ids: the pairs to unify, then the ids to find
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.ids = Inputs.randomInts(2 * this.size, this.size, this.size);
+    }
+
+    // the boxed elements are only built for the UnionFind benchmark
+    @State(Scope.Benchmark)
+    public static class Boxed {
+        private Integer[] elements; // elements[i] == i
+        private Set<Integer> set;
+        private UnionFind<Integer> unionFind;
+
+        @Setup(Level.Trial)
+        public void setup(UnionFindBench bench) {
+            this.elements = new Integer[bench.size];
+            this.set = new HashSet<>();
+            for (int i = 0; i < bench.size; i++) {
+                this.elements[i] = i;
+                this.set.add(this.elements[i]);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void freshUnionFind() {
+            this.unionFind = new UnionFind<>(this.set);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Ints {
+        private IntUnionFind unionFind;
+
+        @Setup(Level.Invocation)
+        public void freshUnionFind(UnionFindBench bench) {
+            this.unionFind = new IntUnionFind(bench.size);
+        }
+    }
+
+    @Benchmark
+    public long unionFindUnifyFind(Boxed boxed) {
+        Integer[] elements = boxed.elements;
+        for (int i = 0; i < this.size; i++) {
+            boxed.unionFind.unify(elements[this.ids[2 * i]], elements[this.ids[2 * i + 1]]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += boxed.unionFind.find(elements[this.ids[i]]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long intUnionFindUnifyFind(Ints ints) {
+        for (int i = 0; i < this.size; i++) {
+            ints.unionFind.unify(this.ids[2 * i], this.ids[2 * i + 1]);
+        }
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += ints.unionFind.find(this.ids[i]);
+        }
+        return sum;
+    }
+}